@@ -10,6 +10,10 @@ USE `consume_enterprise`;
 SET NAMES utf8mb4;
 SET FOREIGN_KEY_CHECKS = 0;
 
+DROP TABLE IF EXISTS `stock_reconcile_batch`;
+DROP TABLE IF EXISTS `order_rollup_watermark`;
+DROP TABLE IF EXISTS `order_rollup_daily`;
+DROP TABLE IF EXISTS `order_rollup_hourly`;
 DROP TABLE IF EXISTS `order_operate_log`;
 DROP TABLE IF EXISTS `payment_record`;
 DROP TABLE IF EXISTS `consumption_order`;
@@ -35,7 +39,8 @@ CREATE TABLE `user` (
   PRIMARY KEY (`user_id`),
   UNIQUE KEY `uk_user_email` (`user_email`),
   KEY `idx_register_time` (`register_time`),
-  KEY `idx_user_status_userid` (`status`,`user_id`)
+  KEY `idx_user_status_userid` (`status`,`user_id`),
+  KEY `idx_user_status_login` (`status`,`last_login_time`,`user_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 
 CREATE TABLE `platform` (
@@ -120,6 +125,7 @@ CREATE TABLE `consumption_order` (
   `user_id` int unsigned NOT NULL COMMENT 'User id',
   `order_no` varchar(64) NOT NULL COMMENT 'Business order no',
   `product_id` bigint NOT NULL COMMENT 'Product id',
+  `platform_id` bigint NOT NULL DEFAULT '0' COMMENT 'Platform of the product, copied at insert for the platform feed',
   `city_id` bigint NOT NULL COMMENT 'City id',
   `quantity` int NOT NULL DEFAULT '1' COMMENT 'Order quantity',
   `amount` decimal(12,2) NOT NULL COMMENT 'Order amount',
@@ -141,6 +147,9 @@ CREATE TABLE `consumption_order` (
   KEY `idx_order_city_created` (`city_id`,`created_at`),
   KEY `idx_order_product_created` (`product_id`,`created_at`),
   KEY `idx_order_status_user` (`status`,`user_id`),
+  KEY `idx_order_created` (`created_at`),
+  KEY `idx_order_updated_created` (`updated_at`,`created_at`),
+  KEY `idx_order_platform_id_status` (`platform_id`,`id`,`status`),
   CONSTRAINT `fk_order_city` FOREIGN KEY (`city_id`) REFERENCES `city` (`id`) ON DELETE RESTRICT ON UPDATE CASCADE,
   CONSTRAINT `fk_order_product` FOREIGN KEY (`product_id`) REFERENCES `product` (`id`) ON DELETE RESTRICT ON UPDATE CASCADE,
   CONSTRAINT `fk_order_user` FOREIGN KEY (`user_id`) REFERENCES `user` (`user_id`) ON DELETE RESTRICT ON UPDATE CASCADE
@@ -185,6 +194,57 @@ CREATE TABLE `order_operate_log` (
   CONSTRAINT `fk_order_log_user` FOREIGN KEY (`user_id`) REFERENCES `user` (`user_id`) ON DELETE RESTRICT ON UPDATE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 
+CREATE TABLE `order_rollup_hourly` (
+  `bucket_hour` datetime NOT NULL COMMENT 'Hour of order created_at',
+  `platform_id` bigint NOT NULL COMMENT 'Platform id',
+  `province_id` bigint NOT NULL COMMENT 'Province id',
+  `category` varchar(100) NOT NULL DEFAULT '' COMMENT 'Product category, empty if none',
+  `total_orders` bigint NOT NULL DEFAULT '0',
+  `unpaid_orders` bigint NOT NULL DEFAULT '0',
+  `paid_orders` bigint NOT NULL DEFAULT '0',
+  `timeout_orders` bigint NOT NULL DEFAULT '0',
+  `canceled_orders` bigint NOT NULL DEFAULT '0',
+  `gross_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `unpaid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `paid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `refreshed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`bucket_hour`,`platform_id`,`province_id`,`category`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE `order_rollup_daily` (
+  `biz_date` date NOT NULL COMMENT 'Date of order created_at',
+  `platform_id` bigint NOT NULL COMMENT 'Platform id',
+  `province_id` bigint NOT NULL COMMENT 'Province id',
+  `category` varchar(100) NOT NULL DEFAULT '' COMMENT 'Product category, empty if none',
+  `total_orders` bigint NOT NULL DEFAULT '0',
+  `unpaid_orders` bigint NOT NULL DEFAULT '0',
+  `paid_orders` bigint NOT NULL DEFAULT '0',
+  `timeout_orders` bigint NOT NULL DEFAULT '0',
+  `canceled_orders` bigint NOT NULL DEFAULT '0',
+  `gross_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `unpaid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `paid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `refreshed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`biz_date`,`platform_id`,`province_id`,`category`),
+  KEY `idx_rollup_daily_platform` (`platform_id`,`biz_date`),
+  KEY `idx_rollup_daily_province` (`province_id`,`biz_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE `order_rollup_watermark` (
+  `name` varchar(32) NOT NULL,
+  `watermark` datetime NOT NULL COMMENT 'Orders updated before this time are in the rollups',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE `stock_reconcile_batch` (
+  `batch_id` varchar(64) NOT NULL COMMENT 'Id of a drained Redis stock delta batch',
+  `product_count` int NOT NULL DEFAULT '0',
+  `applied_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`batch_id`),
+  KEY `idx_stock_batch_applied` (`applied_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
 INSERT INTO `platform` (`id`, `code`, `name`, `status`)
 VALUES
   (1, 'douyin', '抖音', 1),
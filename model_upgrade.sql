@@ -0,0 +1,77 @@
+-- Upgrade an existing consume_enterprise schema to the current model.sql
+-- Date: 2026-10-18
+-- Run once, before deploying the new backend. Fresh installs only need model.sql.
+
+USE `consume_enterprise`;
+
+SET NAMES utf8mb4;
+
+-- consumption_order.platform_id: copied from product at insert, used by the platform feed
+ALTER TABLE `consumption_order`
+  ADD COLUMN `platform_id` bigint NOT NULL DEFAULT '0' COMMENT 'Platform of the product, copied at insert for the platform feed' AFTER `product_id`;
+
+-- Backfill history; new orders written by the upgraded backend already carry platform_id.
+-- On large tables run it in id ranges (append AND co.id BETWEEN ? AND ?) to keep each transaction short.
+UPDATE `consumption_order` co
+  JOIN `product` p ON p.id = co.product_id
+SET co.platform_id = p.platform_id
+WHERE co.platform_id = 0;
+
+ALTER TABLE `consumption_order`
+  ADD KEY `idx_order_created` (`created_at`),
+  ADD KEY `idx_order_updated_created` (`updated_at`,`created_at`),
+  ADD KEY `idx_order_platform_id_status` (`platform_id`,`id`,`status`);
+
+ALTER TABLE `user`
+  ADD KEY `idx_user_status_login` (`status`,`last_login_time`,`user_id`);
+
+CREATE TABLE IF NOT EXISTS `order_rollup_hourly` (
+  `bucket_hour` datetime NOT NULL COMMENT 'Hour of order created_at',
+  `platform_id` bigint NOT NULL COMMENT 'Platform id',
+  `province_id` bigint NOT NULL COMMENT 'Province id',
+  `category` varchar(100) NOT NULL DEFAULT '' COMMENT 'Product category, empty if none',
+  `total_orders` bigint NOT NULL DEFAULT '0',
+  `unpaid_orders` bigint NOT NULL DEFAULT '0',
+  `paid_orders` bigint NOT NULL DEFAULT '0',
+  `timeout_orders` bigint NOT NULL DEFAULT '0',
+  `canceled_orders` bigint NOT NULL DEFAULT '0',
+  `gross_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `unpaid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `paid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `refreshed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`bucket_hour`,`platform_id`,`province_id`,`category`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE IF NOT EXISTS `order_rollup_daily` (
+  `biz_date` date NOT NULL COMMENT 'Date of order created_at',
+  `platform_id` bigint NOT NULL COMMENT 'Platform id',
+  `province_id` bigint NOT NULL COMMENT 'Province id',
+  `category` varchar(100) NOT NULL DEFAULT '' COMMENT 'Product category, empty if none',
+  `total_orders` bigint NOT NULL DEFAULT '0',
+  `unpaid_orders` bigint NOT NULL DEFAULT '0',
+  `paid_orders` bigint NOT NULL DEFAULT '0',
+  `timeout_orders` bigint NOT NULL DEFAULT '0',
+  `canceled_orders` bigint NOT NULL DEFAULT '0',
+  `gross_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `unpaid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `paid_amount` decimal(18,2) NOT NULL DEFAULT '0.00',
+  `refreshed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`biz_date`,`platform_id`,`province_id`,`category`),
+  KEY `idx_rollup_daily_platform` (`platform_id`,`biz_date`),
+  KEY `idx_rollup_daily_province` (`province_id`,`biz_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE IF NOT EXISTS `order_rollup_watermark` (
+  `name` varchar(32) NOT NULL,
+  `watermark` datetime NOT NULL COMMENT 'Orders updated before this time are in the rollups',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+CREATE TABLE IF NOT EXISTS `stock_reconcile_batch` (
+  `batch_id` varchar(64) NOT NULL COMMENT 'Id of a drained Redis stock delta batch',
+  `product_count` int NOT NULL DEFAULT '0',
+  `applied_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`batch_id`),
+  KEY `idx_stock_batch_applied` (`applied_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
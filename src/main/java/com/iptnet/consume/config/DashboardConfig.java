@@ -1,22 +1,94 @@
 package com.iptnet.consume.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.service.dashboard.DashboardEventBus;
+import com.iptnet.consume.service.dashboard.DashboardEventLog;
 import com.iptnet.consume.service.dashboard.DashboardEventStore;
 import com.iptnet.consume.service.dashboard.DashboardStreamService;
+import com.iptnet.consume.service.dashboard.LocalDashboardEventBus;
+import com.iptnet.consume.service.dashboard.RedisDashboardEventBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
 
 @Configuration
 @EnableScheduling
 public class DashboardConfig {
 
     @Bean
-    public DashboardEventStore dashboardEventStore() {
-        return new DashboardEventStore(20000); // 保留 2w 条事件用于 delta
+    public DashboardEventStore dashboardEventStore(ObjectMapper objectMapper,
+                                                   @Value("${dashboard.event-store.max-events:20000}") int maxEvents,
+                                                   @Value("${dashboard.event-store.max-bytes:33554432}") int maxBytes,
+                                                   @Value("${dashboard.event-store.off-heap:false}") boolean offHeap,
+                                                   @Value("${dashboard.event-log.dir:data/dashboard-events}") String logDir,
+                                                   @Value("${dashboard.event-log.segment-bytes:67108864}") int segmentBytes,
+                                                   @Value("${dashboard.event-log.retention-ms:86400000}") long retentionMs,
+                                                   @Value("${dashboard.event-log.max-bytes:1073741824}") long logMaxBytes) {
+        // 按条数和字节数双上限保留事件用于 delta，超出任意一个就淘汰最旧的；
+        // 配了日志目录时同时落盘，重启后 cursor 连续、/delta 仍可回放
+        DashboardEventLog eventLog = logDir == null || logDir.isBlank()
+                ? null
+                : new DashboardEventLog(Path.of(logDir), segmentBytes, retentionMs, logMaxBytes);
+        return new DashboardEventStore(maxEvents, maxBytes, offHeap, objectMapper, eventLog);
+    }
+
+    /**
+     * 单节点（默认）：本地序列 + 本机推送
+     */
+    @Bean
+    @ConditionalOnProperty(name = "dashboard.cluster.mode", havingValue = "local", matchIfMissing = true)
+    public DashboardEventBus localDashboardEventBus(DashboardEventStore store, DashboardStreamService streamService,
+                                                    ObjectMapper objectMapper) {
+        return new LocalDashboardEventBus(store, streamService, objectMapper);
+    }
+
+    /**
+     * 多节点：Redis 全局序列 + pub/sub 广播，每个节点都订阅并维护自己的回放缓存
+     */
+    @Bean
+    @ConditionalOnProperty(name = "dashboard.cluster.mode", havingValue = "redis")
+    public RedisDashboardEventBus redisDashboardEventBus(DashboardEventStore store, DashboardStreamService streamService,
+                                                         ObjectMapper objectMapper, StringRedisTemplate redis,
+                                                         @Value("${dashboard.cluster.channel:dash:v3:events}") String channel,
+                                                         @Value("${dashboard.cluster.sequence-key:dash:v3:cursor}") String sequenceKey,
+                                                         @Value("${dashboard.cluster.reorder-window-ms:500}") long reorderWindowMs) {
+        return new RedisDashboardEventBus(store, streamService, objectMapper, redis, channel, sequenceKey,
+                reorderWindowMs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dashboard.cluster.mode", havingValue = "redis")
+    public RedisMessageListenerContainer dashboardEventListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         RedisDashboardEventBus eventBus,
+                                                                         @Value("${dashboard.cluster.channel:dash:v3:events}") String channel) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 订阅回调只用一个线程派发：默认的 SimpleAsyncTaskExecutor 每条消息一个新线程，回调顺序和频道顺序对不上。
+        // 不注册成 bean，免得顶掉 Spring Boot 默认的 applicationTaskExecutor
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("dash-bus-");
+        executor.initialize();
+        container.setTaskExecutor(executor);
+        container.addMessageListener(eventBus, new ChannelTopic(channel));
+        return container;
     }
 
     @Bean
-    public DashboardStreamService dashboardStreamService(DashboardEventStore store) {
-        return new DashboardStreamService(store, 0L); // 0=不超时（代理可能会断，前端可重连）
+    public DashboardStreamService dashboardStreamService(DashboardEventStore store, ObjectMapper objectMapper,
+                                                         @Value("${dashboard.sse.queue-capacity:256}") int queueCapacity) {
+        // 0=不超时（代理可能会断，前端可重连）；每个连接最多积压 queueCapacity 帧
+        return new DashboardStreamService(store, objectMapper, 0L, queueCapacity);
     }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import com.iptnet.consume.utils.ThreadLocalUtil;
 import jakarta.servlet.ServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -25,6 +26,9 @@ public class ShowConsumeAnalyse {
 
     @Autowired
     private RedisTemplate<Object,Object> redisTemplate;
+    @Value("${business.feed.page-size:200}")
+    private int feedPageSize;
+
     @Qualifier("httpServletRequest")
     @Autowired
     private ServletRequest httpServletRequest;
@@ -35,18 +39,21 @@ public class ShowConsumeAnalyse {
         Map<String,Object> map = ThreadLocalUtil.get();
         String user_email = map.get("email").toString();
         String newOrderId = "newOrderId"+platformId+user_email;
-        // 判断redis中订单id字符串是否存在，不存在则调用所有数据，存在则调用新数据
+        // 判断redis中订单id字符串是否存在，不存在则取最新一页，存在则取之后的新数据；两种都按 feedPageSize 封顶
         if (!redisTemplate.hasKey(newOrderId)) {
-            // 不存在，先查询所有数据
-            List<ConsumeOrderDTO> provinceProductList = consumeService.orderByOrigen(platformId);
+            // 不存在，先查询最新一页
+            List<ConsumeOrderDTO> provinceProductList = consumeService.orderByOrigen(platformId, feedPageSize);
+            if (provinceProductList.isEmpty()) {
+                return Result.fail("暂未获取到订单");
+            }
             // 将数据最新的订单id存入redis，设置过期时间，避免查询用户过多redis内存oom
             redisTemplate.opsForValue().set(newOrderId,provinceProductList.getFirst().getCoId(),5, TimeUnit.MINUTES);
             return Result.success(provinceProductList);
         }else {
             String oldIdStr = redisTemplate.opsForValue().get(newOrderId).toString();
-            Integer oldId = Integer.parseInt(oldIdStr);
-            // redis中存在订单id字符串，则用订单id字符串调用最新数据
-            List<ConsumeOrderDTO> newOrders = consumeService.orderNewByOrigen(platformId, oldId);
+            Long oldId = Long.parseLong(oldIdStr);
+            // redis中存在订单id字符串，则用订单id字符串调用最新数据；一次没取完的下次轮询接着取
+            List<ConsumeOrderDTO> newOrders = consumeService.orderNewByOrigen(platformId, oldId, feedPageSize);
             //将新数据中的最新订单id重新赋值给redis，同时刷新过期时间
             if (newOrders.isEmpty()) {
                 return Result.fail("暂未获取到最新订单");
@@ -2,18 +2,26 @@ package com.iptnet.consume.controller.analytics;
 
 import com.iptnet.consume.common.Result;
 import com.iptnet.consume.service.analytics.EnterpriseAnalyticsService;
+import com.iptnet.consume.service.analytics.OrderFactStore;
+import com.iptnet.consume.service.analytics.OrderRollupService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+
 @RestController
 @RequestMapping("/analytics")
 @RequiredArgsConstructor
 public class EnterpriseAnalyticsController {
 
     private final EnterpriseAnalyticsService enterpriseAnalyticsService;
+    private final OrderRollupService orderRollupService;
+    private final OrderFactStore orderFactStore;
 
     @GetMapping("/overview")
     public Result overview() {
@@ -25,6 +33,11 @@ public class EnterpriseAnalyticsController {
         return Result.success(enterpriseAnalyticsService.trend(days == null ? 30 : days));
     }
 
+    @GetMapping("/trend/hourly")
+    public Result hourlyTrend(@RequestParam(defaultValue = "24") Integer hours) {
+        return Result.success(enterpriseAnalyticsService.hourlyTrend(hours == null ? 24 : hours));
+    }
+
     @GetMapping("/rank/platform")
     public Result platformRank(@RequestParam(defaultValue = "10") Integer limit) {
         return Result.success(enterpriseAnalyticsService.platformRank(limit == null ? 10 : limit));
@@ -44,4 +57,44 @@ public class EnterpriseAnalyticsController {
     public Result paymentChannelRank(@RequestParam(defaultValue = "10") Integer limit) {
         return Result.success(enterpriseAnalyticsService.paymentChannelRank(limit == null ? 10 : limit));
     }
+
+    @GetMapping("/rollup/status")
+    public Result rollupStatus() {
+        return Result.success(orderRollupService.stats());
+    }
+
+    @GetMapping("/cache/status")
+    public Result cacheStatus() {
+        return Result.success(enterpriseAnalyticsService.cacheStats());
+    }
+
+    /**
+     * 多维切片，例：/analytics/slice?groupBy=province&platformId=1&category=手机&from=2026-01-01&to=2026-01-31
+     */
+    @GetMapping("/slice")
+    public Result slice(@RequestParam(defaultValue = "platform") String groupBy,
+                        @RequestParam(required = false) Integer platformId,
+                        @RequestParam(required = false) Integer provinceId,
+                        @RequestParam(required = false) String category,
+                        @RequestParam(required = false) Integer status,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                        @RequestParam(defaultValue = "100") Integer limit) {
+        return Result.success(enterpriseAnalyticsService.slice(groupBy, platformId, provinceId, category, status,
+                from, to, limit == null ? 100 : limit));
+    }
+
+    @GetMapping("/facts/status")
+    public Result factStatus() {
+        return Result.success(orderFactStore.stats());
+    }
+
+    /**
+     * 手动触发内存列存全量重建，后台执行；已经在同步或重建时直接返回
+     */
+    @PostMapping("/facts/rebuild")
+    public Result rebuildFacts() {
+        Thread.ofVirtual().name("order-fact-rebuild").start(orderFactStore::rebuild);
+        return Result.success(orderFactStore.stats());
+    }
 }
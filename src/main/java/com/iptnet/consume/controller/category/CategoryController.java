@@ -2,11 +2,11 @@ package com.iptnet.consume.controller.category;
 
 
 import com.iptnet.consume.common.Result;
+import com.iptnet.consume.dto.OrderFeedRow;
 import com.iptnet.consume.service.category.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
 
 @RestController
@@ -18,7 +18,7 @@ public class CategoryController {
 
     @GetMapping("/{platformId}/{categoryName}")
     public Result getCategoryData(@PathVariable("platformId") Integer platformId, @PathVariable("categoryName") String categoryName) {
-        List<HashMap<String, Object>> categoryData = categoryService.getCategoryData(platformId, categoryName);
+        List<OrderFeedRow> categoryData = categoryService.getCategoryData(platformId, categoryName);
 //        System.out.println("platformId=" + platformId + ", categoryName=" + categoryName);
         return Result.success(categoryData);
     }
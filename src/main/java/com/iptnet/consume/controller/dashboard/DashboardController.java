@@ -2,6 +2,8 @@ package com.iptnet.consume.controller.dashboard;
 
 import com.iptnet.consume.dao.*;
 import com.iptnet.consume.service.dashboard.*;
+import com.iptnet.consume.service.rocketmq.impl.MqProducer;
+import com.iptnet.consume.service.transactionOrder.TransactionOrderService;
 import com.iptnet.consume.utils.ThreadLocalUtil;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -11,6 +13,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,13 +25,28 @@ public class DashboardController {
     private final DashboardEventStore eventStore;
     private final DashboardStreamService streamService;
     private final DashboardQueryService queryService;
+    private final DashboardAggregateService aggregateService;
+    private final MqProducer mqProducer;
+    private final DashboardWarmupService warmupService;
+    private final RecentOrdersCacheService recentOrdersCacheService;
+    private final TransactionOrderService transactionOrderService;
 
     public DashboardController(DashboardEventStore eventStore,
                                DashboardStreamService streamService,
-                               DashboardQueryService queryService) {
+                               DashboardQueryService queryService,
+                               DashboardAggregateService aggregateService,
+                               MqProducer mqProducer,
+                               DashboardWarmupService warmupService,
+                               RecentOrdersCacheService recentOrdersCacheService,
+                               TransactionOrderService transactionOrderService) {
         this.eventStore = eventStore;
         this.streamService = streamService;
         this.queryService = queryService;
+        this.aggregateService = aggregateService;
+        this.mqProducer = mqProducer;
+        this.warmupService = warmupService;
+        this.recentOrdersCacheService = recentOrdersCacheService;
+        this.transactionOrderService = transactionOrderService;
     }
 
     // 1) 首屏全量
@@ -62,6 +80,10 @@ public class DashboardController {
             @RequestParam(defaultValue = "500") int limit
     ) {
         Set<String> t = TopicMatcher.parseTopics(topics);
+        long current = eventStore.currentCursor();
+        if (!eventStore.canReplayAfter(since)) {
+            return ApiResponse.ok(String.valueOf(current), new DeltaResponse(List.of(), String.valueOf(current), false, true));
+        }
         var events = eventStore.readAfter(since, limit).stream()
                 .filter(e -> TopicMatcher.match(t, e.topic()) || "system".equals(e.topic()))
                 .toList();
@@ -71,7 +93,7 @@ public class DashboardController {
         boolean hasMore = !eventStore.readAfter(next, 1).isEmpty();
 
         return ApiResponse.ok(String.valueOf(eventStore.currentCursor()),
-                new DeltaResponse(events, String.valueOf(next), hasMore));
+                new DeltaResponse(events, String.valueOf(next), hasMore, false));
     }
 
     // 4) meta：下发配置（可选）
@@ -85,6 +107,21 @@ public class DashboardController {
         return ApiResponse.ok(String.valueOf(eventStore.currentCursor()), meta);
     }
 
+    // 5) metrics：聚合触发次数 vs 实际重建次数、SSE 发送队列、事件缓存/日志、快照命中与合并、预热进度、最近订单缓存、超时关单吞吐
+    @GetMapping("/metrics")
+    public ApiResponse<Map<String, Object>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("aggregateProducer", mqProducer.aggregateStats());
+        metrics.put("aggregateRebuild", aggregateService.stats());
+        metrics.put("stream", streamService.stats());
+        metrics.put("eventStore", eventStore.stats());
+        metrics.put("snapshot", queryService.snapshotStats());
+        metrics.put("warmup", warmupService.stats());
+        metrics.put("recentOrders", recentOrdersCacheService.stats());
+        metrics.put("timeoutClose", transactionOrderService.closeStats());
+        return ApiResponse.ok(String.valueOf(eventStore.currentCursor()), metrics);
+    }
+
     private Integer currentUidOrNull() {
         try {
             Map<String, Object> claims = ThreadLocalUtil.get();
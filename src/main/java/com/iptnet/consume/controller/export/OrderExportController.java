@@ -0,0 +1,69 @@
+package com.iptnet.consume.controller.export;
+
+import com.iptnet.consume.dto.OrderExportFilter;
+import com.iptnet.consume.service.export.OrderExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+@RestController
+@RequestMapping("/export")
+@RequiredArgsConstructor
+public class OrderExportController {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final OrderExportService orderExportService;
+
+    /**
+     * 订单明细导出：format=ndjson|csv，gzip=true 时下载 .gz；日期按 [from, to] 闭区间，都可不传
+     * 例：/export/orders?format=csv&platformId=1&from=2026-01-01&to=2026-01-31&gzip=true
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) Integer platformId,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Integer provinceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from 不能晚于 to");
+        }
+        OrderExportService.Format exportFormat = OrderExportService.Format.of(format);
+        OrderExportFilter filter = new OrderExportFilter(
+                platformId,
+                category == null || category.isBlank() ? null : category.trim(),
+                provinceId,
+                from == null ? null : from.atStartOfDay(),
+                to == null ? null : to.plusDays(1).atStartOfDay());
+        StreamingResponseBody body = orderExportService.export(filter, exportFormat, gzip);
+
+        String fileName = "orders-" + FILE_TIME.format(LocalDateTime.now()) + "." + exportFormat.extension()
+                + (gzip ? ".gz" : "");
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : new MediaType(MediaType.parseMediaType(exportFormat.contentType()), StandardCharsets.UTF_8);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+    }
+}
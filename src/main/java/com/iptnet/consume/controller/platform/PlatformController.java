@@ -1,6 +1,7 @@
 package com.iptnet.consume.controller.platform;
 
 import com.iptnet.consume.common.Result;
+import com.iptnet.consume.dto.OrderFeedPage;
 import com.iptnet.consume.service.platform.PlatformService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -17,10 +18,11 @@ public class PlatformController {
 
 
     @GetMapping("/{platformId}")
-    public Result getPlatformData(@PathVariable("platformId") Integer platformId) {
-        List<HashMap<String, Object>> objectHashMap = platformService.platformData(platformId);
-//        System.out.println("objectHashMap = " + objectHashMap);
-        return Result.success(objectHashMap);
+    public Result getPlatformData(@PathVariable("platformId") Integer platformId,
+                                  @RequestParam(required = false) String cursor,
+                                  @RequestParam(required = false) Integer limit) {
+        OrderFeedPage page = platformService.platformData(platformId, cursor, limit);
+        return Result.success(page);
     }
     @GetMapping("/list")
     public Result getPlatformList() {
@@ -2,6 +2,7 @@ package com.iptnet.consume.controller.province;
 
 
 import com.iptnet.consume.common.Result;
+import com.iptnet.consume.dto.OrderFeedRow;
 import com.iptnet.consume.service.province.ProvinceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,7 +22,7 @@ public class ProvinceController {
 
     @GetMapping("/{provinceId}/{cityId}")
     public Result provinceData(@PathVariable("provinceId")Integer provinceId, @PathVariable("cityId") Integer cityId) {
-        List<HashMap<String, Object>> hashMaps = provinceService.provinceData(provinceId, cityId);
+        List<OrderFeedRow> hashMaps = provinceService.provinceData(provinceId, cityId);
         return Result.success(hashMaps);
     }
 
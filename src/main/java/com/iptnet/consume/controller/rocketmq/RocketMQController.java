@@ -2,6 +2,7 @@ package com.iptnet.consume.controller.rocketmq;
 
 import com.iptnet.consume.common.Result;
 import com.iptnet.consume.dto.OrderEvent;
+import com.iptnet.consume.dto.OrderView;
 import com.iptnet.consume.dto.ToItemReq;
 import com.iptnet.consume.service.product.ProductService;
 import com.iptnet.consume.service.transactionOrder.TransactionOrderService;
@@ -26,7 +27,7 @@ public class RocketMQController {
 
     @PostMapping("/addOrders")
     public Result addOrders(@RequestBody List<OrderEvent> orders) {
-        List<HashMap<String, Object>> createdOrders = transactionOrderService.insertOrder(orders);
+        List<OrderView> createdOrders = transactionOrderService.insertOrder(orders);
         return Result.success(createdOrders);
     }
 
@@ -70,7 +71,7 @@ public class RocketMQController {
     @PostMapping("/orderSubmit")
     public Result orderSubmit(@RequestBody List<OrderEvent> orderEvents) {
         Integer uid = currentUid();
-        List<HashMap<String, Object>> createdOrders = transactionOrderService.insertOrder(orderEvents);
+        List<OrderView> createdOrders = transactionOrderService.insertOrder(orderEvents);
 
         Set<String> seen = new HashSet<>();
         if (orderEvents != null) {
@@ -98,38 +99,38 @@ public class RocketMQController {
 
     @PostMapping("/paySubmit")
     public Result paySubmit(@RequestBody List<OrderEvent> orders) {
-        List<HashMap<String, Object>> paidOrders = transactionOrderService.updateOrder(orders);
+        List<OrderView> paidOrders = transactionOrderService.updateOrder(orders);
         return Result.success(paidOrders);
     }
 
     @PostMapping("/cancelOrder")
     public Result cancelOrder(@RequestParam String orderNo) {
         Integer uid = currentUid();
-        HashMap<String, Object> canceledOrder = transactionOrderService.cancelOrder(uid, orderNo);
+        OrderView canceledOrder = transactionOrderService.cancelOrder(uid, orderNo);
         return Result.success(canceledOrder);
     }
 
     @GetMapping("/selectAllOrders")
-    public Result<List<HashMap<String, Object>>> selectAllOrder() {
+    public Result<List<OrderView>> selectAllOrder() {
         Integer uid = currentUid();
-        List<HashMap<String, Object>> orders = transactionOrderService.selectAllOrders(uid);
+        List<OrderView> orders = transactionOrderService.selectAllOrders(uid);
         return Result.success(orders);
     }
 
     @GetMapping("/selectRecentOrders")
-    public Result<List<HashMap<String, Object>>> selectRecentOrders(
+    public Result<List<OrderView>> selectRecentOrders(
             @RequestParam(defaultValue = "30") Integer limit,
             @RequestParam(required = false) Integer status
     ) {
         Integer uid = currentUid();
-        List<HashMap<String, Object>> orders = transactionOrderService.selectRecentOrders(uid, limit, status);
+        List<OrderView> orders = transactionOrderService.selectRecentOrders(uid, limit, status);
         return Result.success(orders);
     }
 
     @GetMapping("/selectOneOrder")
-    public Result<HashMap<String, Object>> selectOneOrder(@RequestParam String orderNo) {
+    public Result<OrderView> selectOneOrder(@RequestParam String orderNo) {
         Integer uid = currentUid();
-        HashMap<String, Object> order = transactionOrderService.selectOneOrder(uid, orderNo);
+        OrderView order = transactionOrderService.selectOneOrder(uid, orderNo);
         return Result.success(order);
     }
 
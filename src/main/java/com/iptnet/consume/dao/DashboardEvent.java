@@ -7,7 +7,7 @@ public record DashboardEvent(
         long cursor,           // 递增游标
         String type,           // hello|patch|invalidate|heartbeat|error
         String topic,          // home / platform:2 / category:phone / province:江西 等
-        String op,             // merge|replace|remove|noop...
+        String op,             // merge|diff|replace|remove|noop...
         String ts,             // ISO 时间
         Object payload         // 事件内容（任意对象，自动 JSON）
 ) {
@@ -19,6 +19,10 @@ public record DashboardEvent(
         return new DashboardEvent(cursor, "heartbeat", "system", "noop", Instant.now().toString(), null);
     }
 
+    public static DashboardEvent invalidate(long cursor, String reason) {
+        return new DashboardEvent(cursor, "invalidate", "system", "resync", Instant.now().toString(), reason);
+    }
+
     public static DashboardEvent hello(long cursor) {
         return new DashboardEvent(cursor, "hello", "system", "noop", Instant.now().toString(), null);
     }
@@ -5,5 +5,6 @@ import java.util.List;
 public record DeltaResponse(
         List<DashboardEvent> events,
         String nextCursor,
-        boolean hasMore
+        boolean hasMore,
+        boolean resync         // since 已不在保留范围内（或来自另一份日志），只能重新拉快照
 ) {}
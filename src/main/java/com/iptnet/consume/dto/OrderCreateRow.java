@@ -0,0 +1,26 @@
+package com.iptnet.consume.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * consumption_order 批量插入行（checkout 一次提交多条）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCreateRow {
+    private Integer userId;
+    private String orderNo;
+    private Integer productId;
+    private Integer cityId;
+    private Integer quantity;
+    private BigDecimal amount;
+    private String remark;
+    private LocalDateTime createdAt;
+    private LocalDateTime payDeadline;
+}
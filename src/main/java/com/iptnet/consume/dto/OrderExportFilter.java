@@ -0,0 +1,15 @@
+package com.iptnet.consume.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单导出的筛选条件，字段为空表示不限；下单时间按 [createdFrom, createdTo) 过滤
+ */
+public record OrderExportFilter(
+        Integer platformId,
+        String category,
+        Integer provinceId,
+        LocalDateTime createdFrom,
+        LocalDateTime createdTo
+) {
+}
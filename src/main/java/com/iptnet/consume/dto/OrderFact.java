@@ -0,0 +1,19 @@
+package com.iptnet.consume.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 列式事实表的一行来源：订单 + 所属平台 / 品类 / 省份，只留分析用得到的列
+ */
+public record OrderFact(
+        Long id,
+        Integer platformId,
+        String category,
+        Integer provinceId,
+        Integer status,
+        BigDecimal amount,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
@@ -0,0 +1,9 @@
+package com.iptnet.consume.dto;
+
+import java.util.List;
+
+/**
+ * 订单明细的一页：rows 按 co.id 倒序；nextToken 原样带回即可取下一页，hasMore 为 false 时为 null
+ */
+public record OrderFeedPage(List<OrderFeedRow> rows, String nextToken, boolean hasMore) {
+}
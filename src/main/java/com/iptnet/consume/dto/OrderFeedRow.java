@@ -0,0 +1,39 @@
+package com.iptnet.consume.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 平台 / 省份城市 / 品类明细列表的行投影：订单 + 商品 + 城市省份 + 下单用户。
+ * 组件名与 SQL 列别名一一对应，JSON 仍输出原来的下划线字段名
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OrderFeedRow(
+        Long coId,
+        String coOrderNo,
+        Integer productId,
+        String pBrand,
+        String category,
+        String productName,
+        String pfName,
+        BigDecimal amount,
+        String coRemark,
+        LocalDateTime coCreatedAt,
+        Integer cId,
+        String cName,
+        String cCode,
+        Integer prId,
+        String prName,
+        Integer prType,
+        Integer userId,
+        String userEmail,
+        String userName,
+        String uPhone,
+        Integer uStatus
+) {
+}
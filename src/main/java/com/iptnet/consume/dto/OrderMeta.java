@@ -0,0 +1,20 @@
+package com.iptnet.consume.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 支付 / 取消 / 关单前要看的订单字段，只查 consumption_order 单表
+ */
+public record OrderMeta(
+        Long id,
+        String orderNo,
+        Integer userId,
+        Integer productId,
+        Integer cityId,
+        Integer quantity,
+        BigDecimal amount,
+        Integer status,
+        LocalDateTime payDeadline
+) {
+}
@@ -0,0 +1,22 @@
+package com.iptnet.consume.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * order_operate_log 批量插入行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOperateLogRow {
+    private String orderNo;
+    private Integer userId;
+    private String operation;
+    private Integer fromStatus;
+    private Integer toStatus;
+    private String operatorType;
+    private String operatorId;
+    private String detail;
+}
@@ -0,0 +1,9 @@
+package com.iptnet.consume.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单汇总表刷新完成且有小时被重算时发布（回填完成也算），读汇总表的缓存据此刷新
+ */
+public record OrderRollupRefreshedEvent(LocalDateTime watermark, int hours, int days, boolean backfill) {
+}
@@ -0,0 +1,24 @@
+package com.iptnet.consume.dto;
+
+import java.util.List;
+
+/**
+ * 订单状态流转事件，同一事务里的多笔流转合成一个事件发布，提交后再消费
+ */
+public record OrderTransitionEvent(String reason, List<Transition> transitions) {
+
+    /**
+     * @param fromStatus 新建订单为 null
+     */
+    public record Transition(String orderNo, Integer userId, Integer productId, Integer cityId, Integer fromStatus, int toStatus) {
+
+        /** 看板只统计未支付(1)和已支付(2)的订单 */
+        public int countDelta() {
+            return (counted(toStatus) ? 1 : 0) - (counted(fromStatus) ? 1 : 0);
+        }
+
+        private static boolean counted(Integer status) {
+            return status != null && (status == 1 || status == 2);
+        }
+    }
+}
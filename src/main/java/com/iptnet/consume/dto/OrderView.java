@@ -0,0 +1,54 @@
+package com.iptnet.consume.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单列表 / 详情的行投影：consumption_order 关联城市、省份、商品、平台。
+ * 组件名与 SQL 列别名一一对应（MyBatis 按参数名走构造器映射），JSON 仍输出原来的下划线字段名；
+ * version 只给写穿缓存判断新旧，不对外输出
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OrderView(
+        Long coId,
+        String coOrderNo,
+        Integer userId,
+        Integer productId,
+        Integer cityId,
+        Integer quantity,
+        String cityName,
+        String provinceName,
+        String brand,
+        String productName,
+        String category,
+        String platformName,
+        BigDecimal amount,
+        Integer status,
+        String coRemark,
+        LocalDateTime coCreatedAt,
+        LocalDateTime coUpdatedAt,
+        @JsonIgnore Integer version,
+        LocalDateTime payDeadline,
+        LocalDateTime payTime,
+        String paymentMethod,
+        String paymentNo
+) {
+
+    /**
+     * 已过 pay_deadline 但还没被后台关单的未支付订单，对外按超时(3)展示；其它情况返回自身
+     */
+    public OrderView withEffectiveStatus(LocalDateTime now) {
+        if (status == null || status != 1 || payDeadline == null || !now.isAfter(payDeadline)) {
+            return this;
+        }
+        return new OrderView(coId, coOrderNo, userId, productId, cityId, quantity, cityName, provinceName, brand,
+                productName, category, platformName, amount, 3, coRemark, coCreatedAt, coUpdatedAt, version, payDeadline,
+                payTime, paymentMethod, paymentNo);
+    }
+}
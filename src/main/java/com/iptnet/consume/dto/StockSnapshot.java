@@ -0,0 +1,10 @@
+package com.iptnet.consume.dto;
+
+/**
+ * 加载库存账本时读到的数据库状态：库存，以及当前 inflight 批次是否已写回
+ */
+public record StockSnapshot(
+        Integer stock,
+        Boolean batchApplied
+) {
+}
@@ -0,0 +1,34 @@
+package com.iptnet.consume.job;
+
+import com.iptnet.consume.service.dashboard.DashboardAggregateService;
+import com.iptnet.consume.service.dashboard.DashboardCounterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 看板计数的全量对账：只用来纠正漂移，平时图表完全靠增量计数
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardCounterReconcileJob {
+
+    private final DashboardCounterService dashboardCounterService;
+    private final DashboardAggregateService dashboardAggregateService;
+
+    @Scheduled(initialDelayString = "${business.dashboard.counter-reconcile-ms:600000}",
+            fixedDelayString = "${business.dashboard.counter-reconcile-ms:600000}")
+    public void reconcileCounters() {
+        try {
+            if (dashboardCounterService.reconcile()) {
+                dashboardAggregateService.requestRebuild(List.of(), "COUNTER_RECONCILE");
+            }
+        } catch (Exception e) {
+            log.warn("reconcile dashboard counters failed", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.iptnet.consume.job;
+
+import com.iptnet.consume.service.analytics.OrderFactStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 内存列存的同步：启动后第一次全量加载，之后按 updated_at 水位线增量追；全量重建默认不定时跑，
+ * 需要时配 fact-rebuild-cron 或调 POST /analytics/facts/rebuild。全量加载和重建都在虚拟线程里跑，不占调度线程
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderFactSyncJob {
+
+    private final OrderFactStore orderFactStore;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    @Scheduled(initialDelayString = "${business.analytics.fact-initial-delay-ms:5000}",
+            fixedDelayString = "${business.analytics.fact-sync-ms:60000}")
+    public void syncFacts() {
+        if (!orderFactStore.isReady()) {
+            // 第一次全量加载（或超限后放弃的表）按全表流式读，放到后台
+            runAsync("order-fact-load", orderFactStore::sync);
+            return;
+        }
+        try {
+            orderFactStore.sync();
+        } catch (Exception e) {
+            log.warn("sync order fact store failed", e);
+        }
+    }
+
+    @Scheduled(cron = "${business.analytics.fact-rebuild-cron:-}")
+    public void rebuildFacts() {
+        runAsync("order-fact-rebuild", orderFactStore::rebuild);
+    }
+
+    private void runAsync(String name, Runnable task) {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name(name).start(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.warn("{} failed", name, e);
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+}
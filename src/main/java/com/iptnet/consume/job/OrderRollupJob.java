@@ -0,0 +1,65 @@
+package com.iptnet.consume.job;
+
+import com.iptnet.consume.service.analytics.OrderRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 订单汇总表的增量刷新；第一次运行（没有水位线）会从头回填。另有一个低频任务把最近几天整天重算。
+ *
+ * <p>从头回填可能跑很久，放到单独的虚拟线程里做，不占调度线程（关单时间轮、库存回写也在调度池里跑）。</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderRollupJob {
+
+    private final OrderRollupService orderRollupService;
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    @Scheduled(initialDelayString = "${business.analytics.rollup-initial-delay-ms:10000}",
+            fixedDelayString = "${business.analytics.rollup-ms:60000}")
+    public void refreshRollups() {
+        if (backfilling.get()) {
+            return;
+        }
+        try {
+            if (!orderRollupService.isReady()) {
+                backfillAsync();
+                return;
+            }
+            orderRollupService.refresh();
+        } catch (Exception e) {
+            log.warn("refresh order rollups failed", e);
+        }
+    }
+
+    private void backfillAsync() {
+        if (!backfilling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("order-rollup-backfill").start(() -> {
+            try {
+                orderRollupService.refresh();
+            } catch (Exception e) {
+                log.warn("backfill order rollups failed, retry next round", e);
+            } finally {
+                backfilling.set(false);
+            }
+        });
+    }
+
+    @Scheduled(initialDelayString = "${business.analytics.rollup-reconcile-ms:3600000}",
+            fixedDelayString = "${business.analytics.rollup-reconcile-ms:3600000}")
+    public void reconcileRollups() {
+        try {
+            orderRollupService.reconcile();
+        } catch (Exception e) {
+            log.warn("reconcile order rollups failed", e);
+        }
+    }
+}
@@ -13,7 +13,7 @@ public class OrderTimeoutCloseJob {
 
     private final TransactionOrderService transactionOrderService;
 
-    @Scheduled(fixedDelayString = "${business.order.close-scan-ms:30000}")
+    @Scheduled(fixedDelayString = "${business.order.close-scan-ms:300000}")
     public void closeExpiredOrders() {
         int rows = transactionOrderService.closeExpiredOrders();
         if (rows > 0) {
@@ -0,0 +1,134 @@
+package com.iptnet.consume.job;
+
+import com.iptnet.consume.mapper.TransactionOrderMapper;
+import com.iptnet.consume.service.transactionOrder.TransactionOrderService;
+import com.iptnet.consume.utils.HierarchicalTimingWheel;
+import com.iptnet.consume.utils.ListUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 按 pay_deadline 精确关单：下单时登记到分层时间轮，启动时按 idx_order_status_deadline 重建，
+ * 每个 tick 把到期的订单成批关闭。{@link OrderTimeoutCloseJob} 的全表扫描只作为兜底。
+ */
+@Component
+@Slf4j
+public class OrderTimeoutWheel implements ApplicationRunner {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int CLOSE_BATCH_SIZE = 200;
+    private static final int REBUILD_PAGE_SIZE = 2000;
+    private static final long RETRY_DELAY_MS = 5000L;
+
+    private final TransactionOrderMapper transactionOrderMapper;
+    private final ObjectProvider<TransactionOrderService> transactionOrderService;
+    private final HierarchicalTimingWheel<String> wheel;
+    private final ConcurrentLinkedQueue<String> overdue = new ConcurrentLinkedQueue<>();
+
+    public OrderTimeoutWheel(TransactionOrderMapper transactionOrderMapper,
+                             ObjectProvider<TransactionOrderService> transactionOrderService,
+                             @Value("${business.order.wheel-tick-ms:200}") long tickMs) {
+        this.transactionOrderMapper = transactionOrderMapper;
+        this.transactionOrderService = transactionOrderService;
+        this.wheel = new HierarchicalTimingWheel<>(Math.max(10L, tickMs), WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    public void schedule(String orderNo, LocalDateTime payDeadline) {
+        if (orderNo == null || orderNo.isBlank() || payDeadline == null) {
+            return;
+        }
+        long deadlineMs = payDeadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (!wheel.schedule(orderNo, deadlineMs)) {
+            overdue.add(orderNo);
+        }
+    }
+
+    public int pendingSize() {
+        return wheel.size() + overdue.size();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("rebuild order timeout wheel failed, fallback to scheduled scan", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${business.order.wheel-tick-ms:200}")
+    public void tick() {
+        List<String> expired = wheel.advance(System.currentTimeMillis());
+        for (String orderNo = overdue.poll(); orderNo != null; orderNo = overdue.poll()) {
+            expired.add(orderNo);
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        int closed = 0;
+        for (List<String> chunk : ListUtils.partition(expired, CLOSE_BATCH_SIZE)) {
+            try {
+                closed += transactionOrderService.getObject().closeTimedOutOrders(chunk, "JOB", "timeout-wheel");
+            } catch (Exception e) {
+                log.warn("timing wheel close orders failed, retry later, orders={}", chunk.size(), e);
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+                for (String orderNo : chunk) {
+                    if (!wheel.schedule(orderNo, retryAt)) {
+                        overdue.add(orderNo);
+                    }
+                }
+            }
+        }
+        if (closed > 0) {
+            log.info("timing wheel timeout close finished, due={}, closed={}", expired.size(), closed);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        LocalDateTime afterDeadline = LocalDateTime.of(1970, 1, 1, 0, 0);
+        long afterId = 0L;
+        int loaded = 0;
+
+        while (true) {
+            List<HashMap<String, Object>> page =
+                    transactionOrderMapper.selectUnpaidDeadlines(afterDeadline, afterId, REBUILD_PAGE_SIZE);
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            for (HashMap<String, Object> row : page) {
+                LocalDateTime deadline = asLocalDateTime(row.get("pay_deadline"));
+                schedule(String.valueOf(row.get("order_no")), deadline);
+                afterDeadline = deadline;
+                afterId = ((Number) row.get("id")).longValue();
+            }
+            loaded += page.size();
+            if (page.size() < REBUILD_PAGE_SIZE) {
+                break;
+            }
+        }
+        log.info("order timeout wheel rebuilt, unpaidOrders={}, costMs={}", loaded, System.currentTimeMillis() - start);
+    }
+
+    private LocalDateTime asLocalDateTime(Object value) {
+        if (value instanceof LocalDateTime localDateTime) {
+            return localDateTime;
+        }
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return LocalDateTime.parse(String.valueOf(value).replace(" ", "T"));
+    }
+}
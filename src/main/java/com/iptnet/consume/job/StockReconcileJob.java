@@ -0,0 +1,33 @@
+package com.iptnet.consume.job;
+
+import com.iptnet.consume.service.stock.StockReservationService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockReconcileJob {
+
+    private final StockReservationService stockReservationService;
+
+    @Scheduled(fixedDelayString = "${business.stock.reconcile-ms:1000}")
+    public void reconcileStock() {
+        int products = stockReservationService.reconcile();
+        if (products > 0) {
+            log.debug("stock ledger reconciled, products={}", products);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            stockReservationService.reconcile();
+        } catch (Exception e) {
+            log.warn("flush stock ledger on shutdown failed", e);
+        }
+    }
+}
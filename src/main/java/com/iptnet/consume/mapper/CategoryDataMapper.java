@@ -1,10 +1,10 @@
 package com.iptnet.consume.mapper;
 
+import com.iptnet.consume.dto.OrderFeedRow;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
-import java.util.HashMap;
 import java.util.List;
 
 @Mapper
@@ -13,7 +13,9 @@ public interface CategoryDataMapper {
     @Select("SELECT\n" +
             "  co.id AS co_id,\n" +
             "  co.order_no AS co_order_no,\n" +
+            "  p.id AS product_id,\n" +
             "  p.brand AS p_brand,\n" +
+            "  p.category AS category,\n" +
             "  p.product_name AS product_name,\n" +
             "  pf.`name` AS pf_name,\n" +
             "  co.amount AS amount,\n" +
@@ -39,7 +41,7 @@ public interface CategoryDataMapper {
             "  JOIN platform pf ON pf.id = p.platform_id\n" +
             "WHERE\n" +
             "  p.platform_id = #{platformId} and p.category=#{categoryName} AND co.`status` IN (1, 2) ORDER BY co.id desc;")
-    List<HashMap<String, Object>> getCategoryData(
+    List<OrderFeedRow> getCategoryData(
             @Param("platformId") Integer platformId,
             @Param("categoryName") String categoryName
     );
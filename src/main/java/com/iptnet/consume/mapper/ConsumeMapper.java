@@ -16,20 +16,24 @@ import java.util.Map;
 public interface ConsumeMapper {
 
 //    自动插入消费数据
-    @Insert("INSERT INTO consumption_order (user_id, order_no, product_id, city_id, amount, remark) Values (#{user_id},#{order_no},#{product_id},#{city_id},#{amount},#{remark})")
+    @Insert("INSERT INTO consumption_order (user_id, order_no, product_id, platform_id, city_id, amount, remark) Values (#{user_id},#{order_no},#{product_id},(SELECT p.platform_id FROM product p WHERE p.id = #{product_id}),#{city_id},#{amount},#{remark})")
     void insertConsume(Integer user_id, String order_no, Integer product_id, Integer city_id, BigDecimal amount, String remark);
 
 //    按照地区id查询所有消费记录
 
     /**
      * @param platformId, 平台id
+     * @param limit 最多返回的行数，最新的在前
      * 请求方式http://localhost:8080/show/province/platform/rank?provinceId=13&platformId=1
      */
-    @Select("SELECT co.id AS co_id,co.order_no AS co_order_no ,p.brand AS p_brand,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id AND u.`status` = 1 JOIN platform pf ON pf.id = p.platform_id WHERE p.platform_id = #{platformId} AND co.`status` IN (1, 2) ORDER BY co.id desc;")
-    List<ConsumeOrderDTO> orderByOrigen(Integer platformId);
+    @Select("SELECT STRAIGHT_JOIN co.id AS co_id,co.order_no AS co_order_no ,p.brand AS p_brand,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id AND u.`status` = 1 JOIN platform pf ON pf.id = p.platform_id WHERE co.platform_id = #{platformId} AND co.`status` IN (1, 2) ORDER BY co.id desc LIMIT #{limit};")
+    List<ConsumeOrderDTO> orderByOrigen(@Param("platformId") Integer platformId, @Param("limit") int limit);
 
-    @Select("SELECT co.id AS co_id,co.order_no AS co_order_no ,p.brand AS p_brand,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id AND u.`status` = 1 JOIN platform pf ON pf.id = p.platform_id WHERE p.platform_id = #{platformId} AND co.id > #{id} AND co.`status` IN (1, 2) ORDER BY co.id desc;")
-    List<ConsumeOrderDTO> orderNewByOrigen(Integer platformId, Integer id);
+    /**
+     * id 之后新增的订单，按 co.id 正序取最早的 limit 条，调用方翻转成倒序；超出的留给下一次轮询接着取
+     */
+    @Select("SELECT STRAIGHT_JOIN co.id AS co_id,co.order_no AS co_order_no ,p.brand AS p_brand,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id AND u.`status` = 1 JOIN platform pf ON pf.id = p.platform_id WHERE co.platform_id = #{platformId} AND co.id > #{id} AND co.`status` IN (1, 2) ORDER BY co.id asc LIMIT #{limit};")
+    List<ConsumeOrderDTO> orderNewByOrigen(@Param("platformId") Integer platformId, @Param("id") Long id, @Param("limit") int limit);
 
 //    平台消费数据
     @Select("SELECT JSON_ARRAY(SUM(CASE WHEN p.platform_id = 1 THEN 1 ELSE 0 END),SUM(CASE WHEN p.platform_id = 2 THEN 1 ELSE 0 END),SUM(CASE WHEN p.platform_id = 3 THEN 1 ELSE 0 END),SUM(CASE WHEN p.platform_id = 4 THEN 1 ELSE 0 END),SUM(CASE WHEN p.platform_id = 5 THEN 1 ELSE 0 END)) AS counts FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1 WHERE p.platform_id IN (1,2,3,4,5) AND co.`status` IN (1, 2);")
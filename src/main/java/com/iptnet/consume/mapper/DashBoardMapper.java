@@ -1,6 +1,7 @@
 package com.iptnet.consume.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.HashMap;
@@ -19,4 +20,44 @@ public interface DashBoardMapper {
 //    GET /api/v2/dashboard/delta?since=cursor（断线补偿）
 
 
+//    看板增量计数的全量对账，统计口径与 ConsumeMapper 的图表查询一致
+    @Select("""
+        SELECT p.platform_id, COUNT(*) AS cnt
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1
+        WHERE co.`status` IN (1, 2)
+        GROUP BY p.platform_id
+    """)
+    List<HashMap<String, Object>> countOrdersByPlatform();
+
+    @Select("""
+        SELECT c.province_id, COUNT(*) AS cnt
+        FROM consumption_order co
+        JOIN city c ON c.id = co.city_id
+        JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1
+        WHERE co.`status` IN (1, 2)
+        GROUP BY c.province_id
+    """)
+    List<HashMap<String, Object>> countOrdersByProvince();
+
+    @Select("""
+        SELECT p.platform_id, p.category, COUNT(*) AS cnt
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1
+        WHERE co.`status` IN (1, 2)
+        GROUP BY p.platform_id, p.category
+    """)
+    List<HashMap<String, Object>> countOrdersByPlatformCategory();
+
+//    增量计数用到的维度
+    @Select("SELECT p.id, p.platform_id, p.category FROM product p WHERE p.id = #{productId}")
+    HashMap<String, Object> selectProductDimension(@Param("productId") Integer productId);
+
+    @Select("SELECT c.province_id FROM city c WHERE c.id = #{cityId}")
+    Integer selectCityProvinceId(@Param("cityId") Integer cityId);
+
+    @Select("SELECT pr.id, pr.`name` FROM province pr")
+    List<HashMap<String, Object>> selectProvinceNames();
 }
@@ -96,4 +96,92 @@ public interface EnterpriseAnalyticsMapper {
         LIMIT #{limit}
     """)
     List<HashMap<String, Object>> paymentChannelRank(@Param("limit") int limit);
+
+    // 以下从 order_rollup_daily / order_rollup_hourly 读，口径与上面的实时查询一致
+
+    @Select("""
+        SELECT
+          COALESCE(SUM(r.total_orders), 0) AS total_orders,
+          COALESCE(SUM(r.paid_orders), 0) AS paid_orders,
+          COALESCE(SUM(r.unpaid_orders), 0) AS unpaid_orders,
+          COALESCE(SUM(r.timeout_orders), 0) AS timeout_orders,
+          COALESCE(SUM(r.gross_amount), 0) AS gross_amount,
+          COALESCE(SUM(r.paid_amount), 0) AS paid_amount,
+          COALESCE(SUM(r.unpaid_amount), 0) AS unpaid_amount,
+          COALESCE(SUM(r.paid_amount) / NULLIF(SUM(r.paid_orders), 0), 0) AS paid_avg_ticket
+        FROM order_rollup_daily r
+    """)
+    HashMap<String, Object> overviewFromRollup();
+
+    @Select("""
+        SELECT
+          DATE_FORMAT(r.biz_date, '%Y-%m-%d') AS biz_date,
+          SUM(r.total_orders) AS total_orders,
+          SUM(r.paid_orders) AS paid_orders,
+          SUM(r.gross_amount) AS gross_amount,
+          SUM(r.paid_amount) AS paid_amount
+        FROM order_rollup_daily r
+        WHERE r.biz_date >= DATE_SUB(CURDATE(), INTERVAL #{lookbackDays} DAY)
+        GROUP BY r.biz_date
+        ORDER BY r.biz_date ASC
+    """)
+    List<HashMap<String, Object>> trendFromRollup(@Param("lookbackDays") int lookbackDays);
+
+    @Select("""
+        SELECT
+          DATE_FORMAT(h.bucket_hour, '%Y-%m-%d %H:00') AS biz_hour,
+          SUM(h.total_orders) AS total_orders,
+          SUM(h.paid_orders) AS paid_orders,
+          SUM(h.gross_amount) AS gross_amount,
+          SUM(h.paid_amount) AS paid_amount
+        FROM order_rollup_hourly h
+        WHERE h.bucket_hour >= DATE_SUB(CAST(DATE_FORMAT(NOW(), '%Y-%m-%d %H:00:00') AS DATETIME),
+                                        INTERVAL #{lookbackHours} HOUR)
+        GROUP BY h.bucket_hour
+        ORDER BY h.bucket_hour ASC
+    """)
+    List<HashMap<String, Object>> hourlyTrendFromRollup(@Param("lookbackHours") int lookbackHours);
+
+    @Select("""
+        SELECT
+          pf.id AS platform_id,
+          pf.name AS platform_name,
+          SUM(r.total_orders) AS order_count,
+          SUM(r.gross_amount) AS gross_amount,
+          SUM(r.paid_amount) AS paid_amount
+        FROM order_rollup_daily r
+        JOIN platform pf ON r.platform_id = pf.id
+        GROUP BY pf.id, pf.name
+        ORDER BY paid_amount DESC, order_count DESC
+        LIMIT #{limit}
+    """)
+    List<HashMap<String, Object>> platformRankFromRollup(@Param("limit") int limit);
+
+    @Select("""
+        SELECT
+          pr.id AS province_id,
+          pr.name AS province_name,
+          SUM(r.total_orders) AS order_count,
+          SUM(r.gross_amount) AS gross_amount,
+          SUM(r.paid_amount) AS paid_amount
+        FROM order_rollup_daily r
+        JOIN province pr ON r.province_id = pr.id
+        GROUP BY pr.id, pr.name
+        ORDER BY paid_amount DESC, order_count DESC
+        LIMIT #{limit}
+    """)
+    List<HashMap<String, Object>> provinceRankFromRollup(@Param("limit") int limit);
+
+    @Select("""
+        SELECT
+          NULLIF(r.category, '') AS category,
+          SUM(r.total_orders) AS order_count,
+          SUM(r.gross_amount) AS gross_amount,
+          SUM(r.paid_amount) AS paid_amount
+        FROM order_rollup_daily r
+        GROUP BY r.category
+        ORDER BY paid_amount DESC, order_count DESC
+        LIMIT #{limit}
+    """)
+    List<HashMap<String, Object>> categoryRankFromRollup(@Param("limit") int limit);
 }
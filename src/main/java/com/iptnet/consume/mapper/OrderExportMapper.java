@@ -0,0 +1,70 @@
+package com.iptnet.consume.mapper;
+
+import com.iptnet.consume.dto.OrderExportFilter;
+import com.iptnet.consume.dto.OrderFeedRow;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+@Mapper
+public interface OrderExportMapper {
+
+    /**
+     * 按筛选条件逐行流式读出订单明细（列与平台 / 省份 / 品类明细一致），fetchSize=MIN_VALUE 让驱动不把结果集整个读进内存；
+     * 必须在同一个事务里读完并关闭
+     */
+    @Select("""
+        <script>
+        SELECT
+          co.id AS co_id,
+          co.order_no AS co_order_no,
+          p.id AS product_id,
+          p.brand AS p_brand,
+          p.category AS category,
+          p.product_name AS product_name,
+          pf.`name` AS pf_name,
+          co.amount AS amount,
+          co.remark AS co_remark,
+          co.created_at AS co_created_at,
+          c.id AS c_id,
+          c.`name` AS c_name,
+          c.`code` AS c_code,
+          pr.id AS pr_id,
+          pr.`name` AS pr_name,
+          pr.type AS pr_type,
+          u.user_id AS user_id,
+          u.user_email AS user_email,
+          u.user_name AS user_name,
+          u.phone AS u_phone,
+          u.`status` AS u_status
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        JOIN province pr ON pr.id = c.province_id
+        JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1
+        JOIN platform pf ON pf.id = p.platform_id
+        WHERE co.`status` IN (1, 2)
+          <if test="f.platformId != null">
+            AND p.platform_id = #{f.platformId}
+          </if>
+          <if test="f.category != null and f.category != ''">
+            AND p.category = #{f.category}
+          </if>
+          <if test="f.provinceId != null">
+            AND c.province_id = #{f.provinceId}
+          </if>
+          <if test="f.createdFrom != null">
+            AND co.created_at &gt;= #{f.createdFrom}
+          </if>
+          <if test="f.createdTo != null">
+            AND co.created_at &lt; #{f.createdTo}
+          </if>
+        ORDER BY co.id
+        </script>
+    """)
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<OrderFeedRow> streamOrders(@Param("f") OrderExportFilter filter);
+}
@@ -0,0 +1,87 @@
+package com.iptnet.consume.mapper;
+
+import com.iptnet.consume.dto.OrderFact;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface OrderFactMapper {
+
+    @Select("SELECT COUNT(*) FROM consumption_order")
+    long countFacts();
+
+    /**
+     * 全量事实按 co.id 正序流式读出，用于整表重建；必须在同一个事务里读完并关闭
+     */
+    @Select("""
+        SELECT
+          co.id,
+          p.platform_id,
+          COALESCE(p.category, '') AS category,
+          c.province_id,
+          co.status,
+          co.amount,
+          co.created_at,
+          co.updated_at
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        ORDER BY co.id
+    """)
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<OrderFact> streamFacts();
+
+    @Select("""
+        <script>
+        SELECT
+          co.id,
+          p.platform_id,
+          COALESCE(p.category, '') AS category,
+          c.province_id,
+          co.status,
+          co.amount,
+          co.created_at,
+          co.updated_at
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        WHERE co.order_no IN
+        <foreach collection="orderNos" item="orderNo" open="(" separator="," close=")">
+          #{orderNo}
+        </foreach>
+        </script>
+    """)
+    List<OrderFact> selectFactsByOrderNos(@Param("orderNos") List<String> orderNos);
+
+    /**
+     * 按 (updated_at, id) 键集分页读 (since, afterId) 之后有变动的事实，走 idx_order_updated_created
+     */
+    @Select("""
+        SELECT
+          co.id,
+          p.platform_id,
+          COALESCE(p.category, '') AS category,
+          c.province_id,
+          co.status,
+          co.amount,
+          co.created_at,
+          co.updated_at
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        WHERE co.updated_at > #{since}
+           OR (co.updated_at = #{since} AND co.id > #{afterId})
+        ORDER BY co.updated_at, co.id
+        LIMIT #{limit}
+    """)
+    List<OrderFact> selectFactsUpdatedAfter(@Param("since") LocalDateTime since,
+                                            @Param("afterId") long afterId,
+                                            @Param("limit") int limit);
+}
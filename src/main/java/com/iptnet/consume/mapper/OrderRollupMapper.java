@@ -0,0 +1,105 @@
+package com.iptnet.consume.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单汇总表的维护：小时表从 consumption_order 按小时重算，日表从小时表重算；都是先删后插，重跑结果不变
+ */
+@Mapper
+public interface OrderRollupMapper {
+
+    @Select("SELECT NOW()")
+    LocalDateTime dbNow();
+
+    @Select("SELECT watermark FROM order_rollup_watermark WHERE name = #{name}")
+    LocalDateTime selectWatermark(@Param("name") String name);
+
+    @Insert("""
+        INSERT INTO order_rollup_watermark (name, watermark)
+        VALUES (#{name}, #{watermark})
+        ON DUPLICATE KEY UPDATE watermark = VALUES(watermark)
+    """)
+    int upsertWatermark(@Param("name") String name, @Param("watermark") LocalDateTime watermark);
+
+    /**
+     * since 之后实际读到的最大 updated_at；水位线按它推进，和写 updated_at 的一方用同一个时钟
+     */
+    @Select("SELECT MAX(updated_at) FROM consumption_order WHERE updated_at >= #{since}")
+    LocalDateTime selectMaxUpdatedAt(@Param("since") LocalDateTime since);
+
+    /**
+     * [since, until] 之间有变动（新建或改状态）的订单落在哪些小时，只扫 idx_order_updated_created
+     */
+    @Select("""
+        SELECT DISTINCT CAST(DATE_FORMAT(co.created_at, '%Y-%m-%d %H:00:00') AS DATETIME) AS bucket_hour
+        FROM consumption_order co
+        WHERE co.updated_at >= #{since}
+          AND co.updated_at <= #{until}
+        ORDER BY bucket_hour
+    """)
+    List<LocalDateTime> selectDirtyHours(@Param("since") LocalDateTime since, @Param("until") LocalDateTime until);
+
+    @Delete("DELETE FROM order_rollup_hourly WHERE bucket_hour >= #{from} AND bucket_hour < #{to}")
+    int deleteHourly(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Insert("""
+        INSERT INTO order_rollup_hourly (bucket_hour, platform_id, province_id, category,
+          total_orders, unpaid_orders, paid_orders, timeout_orders, canceled_orders,
+          gross_amount, unpaid_amount, paid_amount)
+        SELECT
+          CAST(DATE_FORMAT(co.created_at, '%Y-%m-%d %H:00:00') AS DATETIME) AS bucket_hour,
+          p.platform_id,
+          c.province_id,
+          COALESCE(p.category, '') AS category,
+          COUNT(*),
+          SUM(CASE WHEN co.status = 1 THEN 1 ELSE 0 END),
+          SUM(CASE WHEN co.status = 2 THEN 1 ELSE 0 END),
+          SUM(CASE WHEN co.status = 3 THEN 1 ELSE 0 END),
+          SUM(CASE WHEN co.status = 4 THEN 1 ELSE 0 END),
+          COALESCE(SUM(co.amount), 0),
+          COALESCE(SUM(CASE WHEN co.status = 1 THEN co.amount ELSE 0 END), 0),
+          COALESCE(SUM(CASE WHEN co.status = 2 THEN co.amount ELSE 0 END), 0)
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        WHERE co.created_at >= #{from}
+          AND co.created_at < #{to}
+        GROUP BY bucket_hour, p.platform_id, c.province_id, COALESCE(p.category, '')
+    """)
+    int insertHourly(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Delete("DELETE FROM order_rollup_daily WHERE biz_date = #{day}")
+    int deleteDaily(@Param("day") LocalDate day);
+
+    @Insert("""
+        INSERT INTO order_rollup_daily (biz_date, platform_id, province_id, category,
+          total_orders, unpaid_orders, paid_orders, timeout_orders, canceled_orders,
+          gross_amount, unpaid_amount, paid_amount)
+        SELECT
+          #{day},
+          h.platform_id,
+          h.province_id,
+          h.category,
+          SUM(h.total_orders),
+          SUM(h.unpaid_orders),
+          SUM(h.paid_orders),
+          SUM(h.timeout_orders),
+          SUM(h.canceled_orders),
+          SUM(h.gross_amount),
+          SUM(h.unpaid_amount),
+          SUM(h.paid_amount)
+        FROM order_rollup_hourly h
+        WHERE h.bucket_hour >= #{day}
+          AND h.bucket_hour < DATE_ADD(#{day}, INTERVAL 1 DAY)
+        GROUP BY h.platform_id, h.province_id, h.category
+    """)
+    int insertDaily(@Param("day") LocalDate day);
+}
@@ -1,6 +1,8 @@
 package com.iptnet.consume.mapper;
 
+import com.iptnet.consume.dto.OrderFeedRow;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.HashMap;
@@ -9,8 +11,55 @@ import java.util.List;
 @Mapper
 public interface PlatformDataMapper {
 
-    @Select("SELECT co.id AS co_id,co.order_no AS co_order_no ,p.id AS product_id,p.brand AS p_brand,p.category AS category,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id AND u.`status` = 1 JOIN platform pf ON pf.id = p.platform_id WHERE p.platform_id = #{platformId} AND co.`status` IN (1, 2) ORDER BY co.id desc;")
-    List<HashMap<String, Object>> platformData(Integer platformId);
+    /**
+     * 平台订单明细按 co.id 倒序的一页：beforeId 为空取最新一页，否则取 id 小于 beforeId 的一页。
+     * 平台按下单时冗余在订单上的 co.platform_id 过滤，STRAIGHT_JOIN 固定从订单表起，走
+     * idx_order_platform_id_status (platform_id, id, status)：只在本平台的索引区间里按 id 倒序扫，
+     * status 在索引里就过滤掉，扫够 limit 行即停。最后一页扫到区间头就结束，不存在的平台是空区间。
+     * 索引不按 (platform_id, status, id) 建：status IN (1, 2) 是两段区间，按 id 排序还得 filesort
+     */
+    @Select("""
+        <script>
+        SELECT STRAIGHT_JOIN
+          co.id AS co_id,
+          co.order_no AS co_order_no,
+          p.id AS product_id,
+          p.brand AS p_brand,
+          p.category AS category,
+          p.product_name AS product_name,
+          pf.`name` AS pf_name,
+          co.amount AS amount,
+          co.remark AS co_remark,
+          co.created_at AS co_created_at,
+          c.id AS c_id,
+          c.`name` AS c_name,
+          c.`code` AS c_code,
+          pr.id AS pr_id,
+          pr.`name` AS pr_name,
+          pr.type AS pr_type,
+          u.user_id AS user_id,
+          u.user_email AS user_email,
+          u.user_name AS user_name,
+          u.phone AS u_phone,
+          u.`status` AS u_status
+        FROM consumption_order co
+        JOIN product p ON p.id = co.product_id
+        JOIN city c ON c.id = co.city_id
+        JOIN province pr ON pr.id = c.province_id
+        JOIN `user` u ON u.user_id = co.user_id AND u.`status` = 1
+        JOIN platform pf ON pf.id = p.platform_id
+        WHERE co.platform_id = #{platformId}
+          AND co.`status` IN (1, 2)
+          <if test="beforeId != null">
+            AND co.id &lt; #{beforeId}
+          </if>
+        ORDER BY co.id DESC
+        LIMIT #{limit}
+        </script>
+    """)
+    List<OrderFeedRow> pagePlatformOrders(@Param("platformId") Integer platformId,
+                                          @Param("beforeId") Long beforeId,
+                                          @Param("limit") int limit);
 
     @Select("select * from platform")
     List<HashMap<String, Object>> platformList();
@@ -18,4 +67,7 @@ public interface PlatformDataMapper {
     @Select("SELECT id FROM platform WHERE status = 1 ORDER BY id")
     List<Integer> platformIds();
 
+    @Select("SELECT COUNT(*) FROM platform WHERE id = #{platformId} AND status = 1")
+    int countActivePlatform(@Param("platformId") Integer platformId);
+
 }
@@ -1,6 +1,13 @@
 package com.iptnet.consume.mapper;
 
+import com.iptnet.consume.dto.OrderCreateRow;
+import com.iptnet.consume.dto.OrderMeta;
+import com.iptnet.consume.dto.OrderOperateLogRow;
+import com.iptnet.consume.dto.OrderView;
+import com.iptnet.consume.dto.StockSnapshot;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -103,6 +110,7 @@ public interface TransactionOrderMapper {
           co.remark AS co_remark,
           co.created_at AS co_created_at,
           co.updated_at AS co_updated_at,
+          co.version,
           co.pay_deadline,
           co.pay_time,
           co.payment_method,
@@ -116,8 +124,8 @@ public interface TransactionOrderMapper {
           AND co.user_id = #{uid}
         LIMIT 1
     """)
-    HashMap<String, Object> selectOneOrder(@Param("uid") Integer uid,
-                                           @Param("orderNo") String orderNo);
+    OrderView selectOneOrder(@Param("uid") Integer uid,
+                             @Param("orderNo") String orderNo);
 
     @Select("""
         SELECT
@@ -138,6 +146,7 @@ public interface TransactionOrderMapper {
           co.remark AS co_remark,
           co.created_at AS co_created_at,
           co.updated_at AS co_updated_at,
+          co.version,
           co.pay_deadline,
           co.pay_time,
           co.payment_method,
@@ -150,7 +159,7 @@ public interface TransactionOrderMapper {
         WHERE co.user_id = #{uid}
         ORDER BY co.created_at DESC, co.id DESC LIMIT 30;
     """)
-    List<HashMap<String, Object>> selectAllOrders(@Param("uid") Integer uid);
+    List<OrderView> selectAllOrders(@Param("uid") Integer uid);
 
     @Select("""
         <script>
@@ -172,6 +181,7 @@ public interface TransactionOrderMapper {
           co.remark AS co_remark,
           co.created_at AS co_created_at,
           co.updated_at AS co_updated_at,
+          co.version,
           co.pay_deadline,
           co.pay_time,
           co.payment_method,
@@ -182,16 +192,77 @@ public interface TransactionOrderMapper {
         JOIN product p ON co.product_id = p.id
         JOIN platform pf ON p.platform_id = pf.id
         WHERE co.user_id = #{uid}
-        <if test='status != null'>
-          AND co.status = #{status}
-        </if>
+        <choose>
+          <when test='status == 1'>
+            AND co.status = 1
+            AND co.pay_deadline &gt;= #{now}
+          </when>
+          <when test='status == 3'>
+            AND (co.status = 3 OR (co.status = 1 AND co.pay_deadline &lt; #{now}))
+          </when>
+          <when test='status != null'>
+            AND co.status = #{status}
+          </when>
+        </choose>
         ORDER BY co.created_at DESC, co.id DESC
         LIMIT #{limit}
         </script>
     """)
-    List<HashMap<String, Object>> selectRecentOrders(@Param("uid") Integer uid,
-                                                      @Param("limit") Integer limit,
-                                                      @Param("status") Integer status);
+    List<OrderView> selectRecentOrders(@Param("uid") Integer uid,
+                                       @Param("limit") Integer limit,
+                                       @Param("status") Integer status,
+                                       @Param("now") LocalDateTime now);
+
+    /**
+     * 批量取多个用户各自最近 limit 条订单（列与 selectRecentOrders 一致），按 user_id、时间倒序流式返回。
+     * 先在订单表上按用户开窗取前 limit 条，再去关联维表，维表只关联被选中的行
+     */
+    @Select("""
+        <script>
+        SELECT
+          ranked.id AS co_id,
+          ranked.order_no AS co_order_no,
+          ranked.user_id,
+          ranked.product_id,
+          ranked.city_id,
+          ranked.quantity,
+          c.name AS city_name,
+          pv.name AS province_name,
+          p.brand,
+          p.product_name,
+          p.category,
+          pf.name AS platform_name,
+          ranked.amount,
+          ranked.status,
+          ranked.remark AS co_remark,
+          ranked.created_at AS co_created_at,
+          ranked.updated_at AS co_updated_at,
+          ranked.version,
+          ranked.pay_deadline,
+          ranked.pay_time,
+          ranked.payment_method,
+          ranked.payment_no
+        FROM (
+          SELECT co.id, co.order_no, co.user_id, co.product_id, co.city_id, co.quantity, co.amount, co.status,
+                 co.remark, co.created_at, co.updated_at, co.version, co.pay_deadline, co.pay_time, co.payment_method, co.payment_no,
+                 ROW_NUMBER() OVER (PARTITION BY co.user_id ORDER BY co.created_at DESC, co.id DESC) AS rn
+          FROM consumption_order co
+          WHERE co.user_id IN
+          <foreach collection="userIds" item="uid" open="(" separator="," close=")">
+            #{uid}
+          </foreach>
+        ) ranked
+        JOIN city c ON ranked.city_id = c.id
+        JOIN province pv ON c.province_id = pv.id
+        JOIN product p ON ranked.product_id = p.id
+        JOIN platform pf ON p.platform_id = pf.id
+        WHERE ranked.rn &lt;= #{limit}
+        ORDER BY ranked.user_id, ranked.rn
+        </script>
+    """)
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<OrderView> streamRecentOrdersByUsers(@Param("userIds") List<Integer> userIds,
+                                                @Param("limit") int limit);
 
     @Select("""
         <script>
@@ -213,6 +284,7 @@ public interface TransactionOrderMapper {
           co.remark AS co_remark,
           co.created_at AS co_created_at,
           co.updated_at AS co_updated_at,
+          co.version,
           co.pay_deadline,
           co.pay_time,
           co.payment_method,
@@ -232,14 +304,56 @@ public interface TransactionOrderMapper {
         ORDER BY co.created_at DESC, co.id DESC
         </script>
     """)
-    List<HashMap<String, Object>> selectOrdersByNos(@Param("uid") Integer uid,
-                                                     @Param("orderNos") List<String> orderNos);
+    List<OrderView> selectOrdersByNos(@Param("uid") Integer uid,
+                                      @Param("orderNos") List<String> orderNos);
+
+    /**
+     * 按订单号批量取整行（列与 selectRecentOrders 一致），不限用户；走 uk_order_no，供订单流转后回写缓存
+     */
+    @Select("""
+        <script>
+        SELECT
+          co.id AS co_id,
+          co.order_no AS co_order_no,
+          co.user_id,
+          co.product_id,
+          co.city_id,
+          co.quantity,
+          c.name AS city_name,
+          pv.name AS province_name,
+          p.brand,
+          p.product_name,
+          p.category,
+          pf.name AS platform_name,
+          co.amount,
+          co.status,
+          co.remark AS co_remark,
+          co.created_at AS co_created_at,
+          co.updated_at AS co_updated_at,
+          co.version,
+          co.pay_deadline,
+          co.pay_time,
+          co.payment_method,
+          co.payment_no
+        FROM consumption_order co
+        JOIN city c ON co.city_id = c.id
+        JOIN province pv ON c.province_id = pv.id
+        JOIN product p ON co.product_id = p.id
+        JOIN platform pf ON p.platform_id = pf.id
+        WHERE co.order_no IN
+        <foreach collection='orderNos' item='orderNo' open='(' separator=',' close=')'>
+          #{orderNo}
+        </foreach>
+        </script>
+    """)
+    List<OrderView> selectOrderRowsByNos(@Param("orderNos") List<String> orderNos);
 
     @Insert("""
         INSERT INTO consumption_order
-          (user_id, order_no, product_id, city_id, quantity, amount, remark, status, pay_deadline, created_at, updated_at)
+          (user_id, order_no, product_id, platform_id, city_id, quantity, amount, remark, status, pay_deadline, created_at, updated_at)
         VALUES
-          (#{userId}, #{orderNo}, #{productId}, #{cityId}, #{quantity}, #{amount}, #{remark}, 1, #{payDeadline}, #{createdAt}, #{createdAt})
+          (#{userId}, #{orderNo}, #{productId}, (SELECT p.platform_id FROM product p WHERE p.id = #{productId}),
+           #{cityId}, #{quantity}, #{amount}, #{remark}, 1, #{payDeadline}, #{createdAt}, #{createdAt})
     """)
     int insertOrder(@Param("userId") Integer userId,
                     @Param("orderNo") String orderNo,
@@ -251,6 +365,19 @@ public interface TransactionOrderMapper {
                     @Param("createdAt") LocalDateTime createdAt,
                     @Param("payDeadline") LocalDateTime payDeadline);
 
+    @Insert("""
+        <script>
+        INSERT INTO consumption_order
+          (user_id, order_no, product_id, platform_id, city_id, quantity, amount, remark, status, pay_deadline, created_at, updated_at)
+        VALUES
+        <foreach collection='orders' item='o' separator=','>
+          (#{o.userId}, #{o.orderNo}, #{o.productId}, (SELECT p.platform_id FROM product p WHERE p.id = #{o.productId}),
+           #{o.cityId}, #{o.quantity}, #{o.amount}, #{o.remark}, 1, #{o.payDeadline}, #{o.createdAt}, #{o.createdAt})
+        </foreach>
+        </script>
+    """)
+    int insertOrders(@Param("orders") List<OrderCreateRow> orders);
+
     @Update("""
         UPDATE product
         SET stock = stock - #{quantity},
@@ -271,6 +398,43 @@ public interface TransactionOrderMapper {
     int releaseProductStock(@Param("productId") Integer productId,
                             @Param("quantity") Integer quantity);
 
+    /**
+     * 同一条语句读库存和某一批 delta 是否已写回，两者来自同一个一致性读快照
+     */
+    @Select("""
+        SELECT p.stock AS stock,
+               EXISTS(SELECT 1 FROM stock_reconcile_batch b WHERE b.batch_id = #{batchId}) AS batchApplied
+        FROM product p
+        WHERE p.id = #{productId}
+          AND p.status = 1
+    """)
+    StockSnapshot selectStockSnapshot(@Param("productId") Integer productId,
+                                      @Param("batchId") String batchId);
+
+    @Insert("""
+        INSERT IGNORE INTO stock_reconcile_batch (batch_id, product_count, applied_at)
+        VALUES (#{batchId}, #{productCount}, NOW())
+    """)
+    int insertStockBatch(@Param("batchId") String batchId,
+                         @Param("productCount") int productCount);
+
+    @Delete("""
+        DELETE FROM stock_reconcile_batch
+        WHERE applied_at < #{before}
+        LIMIT #{limit}
+    """)
+    int deleteStockBatchesBefore(@Param("before") LocalDateTime before,
+                                 @Param("limit") int limit);
+
+    @Update("""
+        UPDATE product
+        SET stock = stock + #{delta},
+            updated_at = NOW()
+        WHERE id = #{productId}
+    """)
+    int applyStockDelta(@Param("productId") Integer productId,
+                        @Param("delta") Integer delta);
+
     @Update("""
         UPDATE consumption_order
         SET status = 2,
@@ -300,6 +464,19 @@ public interface TransactionOrderMapper {
     """)
     int closeIfUnpaid(@Param("orderNo") String orderNo);
 
+    @Update("""
+        <script>
+        UPDATE consumption_order
+        SET status = 3,
+            updated_at = NOW(),
+            version = version + 1
+        WHERE id IN
+          <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>
+          AND status = 1
+        </script>
+    """)
+    int closeUnpaidByIds(@Param("ids") List<Long> ids);
+
     @Update("""
         UPDATE consumption_order
         SET status = 4,
@@ -340,21 +517,80 @@ public interface TransactionOrderMapper {
 
     @Select("""
         SELECT
+          co.id,
           co.order_no,
           co.user_id,
           co.product_id,
+          co.city_id,
           co.quantity,
           co.amount,
           co.status,
-          co.pay_deadline,
-          co.pay_time,
-          co.payment_method,
-          co.payment_no
+          co.pay_deadline
+        FROM consumption_order co
+        WHERE co.status = 1
+          AND co.pay_deadline < #{now}
+        ORDER BY co.pay_deadline ASC, co.id ASC
+        LIMIT #{limit}
+        FOR UPDATE SKIP LOCKED
+    """)
+    List<OrderMeta> claimExpiredUnpaidOrders(@Param("now") LocalDateTime now,
+                                             @Param("limit") Integer limit);
+
+    @Select("""
+        <script>
+        SELECT
+          co.id,
+          co.order_no,
+          co.user_id,
+          co.product_id,
+          co.city_id,
+          co.quantity,
+          co.amount,
+          co.status,
+          co.pay_deadline
+        FROM consumption_order co
+        WHERE co.order_no IN
+          <foreach collection='orderNos' item='no' open='(' separator=',' close=')'>#{no}</foreach>
+          AND co.status = 1
+          AND co.pay_deadline &lt; #{now}
+        FOR UPDATE
+        </script>
+    """)
+    List<OrderMeta> selectExpiredUnpaidOrdersByNos(@Param("orderNos") List<String> orderNos,
+                                                   @Param("now") LocalDateTime now);
+
+    @Select("""
+        SELECT
+          co.id,
+          co.order_no,
+          co.pay_deadline
+        FROM consumption_order co
+        WHERE co.status = 1
+          AND (co.pay_deadline > #{afterDeadline}
+               OR (co.pay_deadline = #{afterDeadline} AND co.id > #{afterId}))
+        ORDER BY co.pay_deadline ASC, co.id ASC
+        LIMIT #{limit}
+    """)
+    List<HashMap<String, Object>> selectUnpaidDeadlines(@Param("afterDeadline") LocalDateTime afterDeadline,
+                                                         @Param("afterId") long afterId,
+                                                         @Param("limit") int limit);
+
+    @Select("""
+        SELECT
+          co.id,
+          co.order_no,
+          co.user_id,
+          co.product_id,
+          co.city_id,
+          co.quantity,
+          co.amount,
+          co.status,
+          co.pay_deadline
         FROM consumption_order co
         WHERE co.order_no = #{orderNo}
         LIMIT 1
     """)
-    HashMap<String, Object> selectOrderMeta(@Param("orderNo") String orderNo);
+    OrderMeta selectOrderMeta(@Param("orderNo") String orderNo);
 
     @Insert("""
         INSERT INTO payment_record
@@ -386,4 +622,16 @@ public interface TransactionOrderMapper {
                               @Param("operatorType") String operatorType,
                               @Param("operatorId") String operatorId,
                               @Param("detail") String detail);
+
+    @Insert("""
+        <script>
+        INSERT INTO order_operate_log
+          (order_no, user_id, operation, from_status, to_status, operator_type, operator_id, detail)
+        VALUES
+        <foreach collection='logs' item='l' separator=','>
+          (#{l.orderNo}, #{l.userId}, #{l.operation}, #{l.fromStatus}, #{l.toStatus}, #{l.operatorType}, #{l.operatorId}, #{l.detail})
+        </foreach>
+        </script>
+    """)
+    int insertOrderOperateLogs(@Param("logs") List<OrderOperateLogRow> logs);
 }
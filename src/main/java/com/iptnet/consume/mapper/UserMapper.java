@@ -5,10 +5,13 @@ import com.iptnet.consume.dto.RegisterRequest;
 import com.iptnet.consume.dto.UserInfo;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 
@@ -45,6 +48,37 @@ public interface UserMapper {
     @Select("SELECT user_id FROM `user` WHERE status = 1 ORDER BY user_id")
     List<Integer> listActiveUserIds();
 
+    @Select("SELECT COUNT(*) FROM `user` WHERE status = 1")
+    long countActiveUsers();
+
+    // 预热按最近登录优先：(last_login_time, user_id) 倒序 keyset 分页；条件展开成 OR，MySQL 才会按 idx_user_status_login 做范围扫描
+    @Select("""
+        SELECT user_id, last_login_time
+        FROM `user`
+        WHERE status = 1
+          AND last_login_time IS NOT NULL
+          AND (last_login_time < #{beforeLogin}
+               OR (last_login_time = #{beforeLogin} AND user_id < #{beforeUserId}))
+        ORDER BY last_login_time DESC, user_id DESC
+        LIMIT #{limit}
+    """)
+    List<HashMap<String, Object>> pageActiveUsersByLogin(@Param("beforeLogin") LocalDateTime beforeLogin,
+                                                         @Param("beforeUserId") long beforeUserId,
+                                                         @Param("limit") int limit);
+
+    // 从未登录过的用户排在最后
+    @Select("""
+        SELECT user_id
+        FROM `user`
+        WHERE status = 1
+          AND last_login_time IS NULL
+          AND user_id < #{beforeUserId}
+        ORDER BY user_id DESC
+        LIMIT #{limit}
+    """)
+    List<Integer> pageActiveUsersNeverLoggedIn(@Param("beforeUserId") long beforeUserId,
+                                               @Param("limit") int limit);
+
 //    用户id消费数据  (HashTable线程安全,且用于查询用户订单，一般用户订单量不会太大，所以查询效率不会太差)
     @Select("SELECT co.id AS co_id,co.order_no AS co_order_no ,p.brand AS p_brand,p.product_name as product_name,pf.`name` as pf_name,co.amount AS amount,co.remark AS co_remark,co.created_at AS co_created_at,c.id AS c_id,c.`name` as c_name,c.`code` AS c_code,pr.id AS pr_id,pr.`name` as pr_name,pr.type as pr_type,u.user_id AS user_id,u.user_email AS user_email,u.user_name AS user_name,u.phone AS u_phone,u.`status` AS u_status FROM consumption_order co JOIN product p ON p.id = co.product_id JOIN city c ON c.id = co.city_id JOIN province pr ON pr.id = c.province_id JOIN `user` u on u.user_id = co.user_id JOIN platform pf ON pf.id = p.platform_id WHERE u.user_id = #{user_id} ORDER BY co.id desc;")
     Hashtable<String,Object> consumeDataByUser();
@@ -1,5 +1,6 @@
 package com.iptnet.consume.service.analytics;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,6 +11,11 @@ public interface EnterpriseAnalyticsService {
 
     List<HashMap<String, Object>> trend(int days);
 
+    /**
+     * 最近 hours 个小时（含当前小时）的逐小时趋势，只读小时汇总表，回填完成前返回空
+     */
+    List<HashMap<String, Object>> hourlyTrend(int hours);
+
     List<HashMap<String, Object>> platformRank(int limit);
 
     List<HashMap<String, Object>> provinceRank(int limit);
@@ -17,4 +23,16 @@ public interface EnterpriseAnalyticsService {
     List<HashMap<String, Object>> categoryRank(int limit);
 
     List<HashMap<String, Object>> paymentChannelRank(int limit);
+
+    /**
+     * 内存列存上的任意切片：按 groupBy（platform / province / category / day / status）分组，
+     * 其余参数为过滤条件（为空不限，日期闭区间）；列存未加载完成时抛 IllegalStateException
+     */
+    List<HashMap<String, Object>> slice(String groupBy, Integer platformId, Integer provinceId, String category,
+                                        Integer status, LocalDate from, LocalDate to, int limit);
+
+    /**
+     * 结果缓存的命中、回源、后台刷新次数
+     */
+    Map<String, Object> cacheStats();
 }
@@ -0,0 +1,603 @@
+package com.iptnet.consume.service.analytics;
+
+import com.iptnet.consume.dto.OrderFact;
+import com.iptnet.consume.dto.OrderTransitionEvent;
+import com.iptnet.consume.mapper.DashBoardMapper;
+import com.iptnet.consume.mapper.OrderFactMapper;
+import com.iptnet.consume.mapper.PlatformDataMapper;
+import com.iptnet.consume.utils.ListUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 订单事实的进程内列式存储：每一列是一个原始类型数组（平台、品类编码、省份、状态、金额分、下单日），
+ * 排名 / 趋势 / 任意维度组合的切片都是对这几个数组的一次顺序扫描，不碰 MySQL。
+ *
+ * <p>第一次同步从 consumption_order 流式全量加载，之后和汇总表一样按 (updated_at, id) 水位线增量追：
+ * 每轮从 [水位线 - 迟到窗口] 往后分页读有变动的订单，已有的行原地改，没有的追加；订单事件只是让变化更早可见。
+ * 全量重建只在配置了 fact-rebuild-cron 或手动触发时做，重建前先释放旧表（期间走 SQL），峰值内存只有一份。
+ * 只有一个写线程（持 writeLock），读方拿到的 {@link Columns} 是不可变视图，扫描过程中不加锁。</p>
+ *
+ * <p>每行约 36 字节（id 8 + 五个 int 列 20 + 金额 8），千万级订单约 360MB。默认关闭
+ * （business.analytics.fact-enabled），超过 fact-max-rows 时放弃内存表，分析接口回到 SQL。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderFactStore {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int FETCH_BATCH = 200;
+    private static final int SYNC_PAGE = 2000;
+
+    private final OrderFactMapper orderFactMapper;
+    private final PlatformDataMapper platformDataMapper;
+    private final DashBoardMapper dashBoardMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${business.analytics.fact-enabled:false}")
+    private boolean enabled;
+
+    @Value("${business.analytics.fact-max-rows:5000000}")
+    private long maxRows;
+
+    @Value("${business.analytics.fact-late-ms:300000}")
+    private long lateMs;
+
+    public enum Dimension {
+        PLATFORM, PROVINCE, CATEGORY, DAY, STATUS;
+
+        public static Dimension of(String value) {
+            if (value == null || value.isBlank()) {
+                return PLATFORM;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的分组维度: " + value);
+            }
+        }
+    }
+
+    /**
+     * 切片条件，字段为空表示不限；日期为闭区间
+     */
+    public record Filter(Integer platformId, Integer provinceId, String category, Integer status,
+                         LocalDate from, LocalDate to) {
+
+        public static Filter all() {
+            return new Filter(null, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * 一个分组的汇总：key 是维度值（DAY 为 epochDay、CATEGORY 为字典编码），label 是可读名
+     */
+    public record Group(int key, String label, long orders, long paidOrders, long grossCents, long paidCents) {
+
+        public BigDecimal grossAmount() {
+            return BigDecimal.valueOf(grossCents, 2);
+        }
+
+        public BigDecimal paidAmount() {
+            return BigDecimal.valueOf(paidCents, 2);
+        }
+    }
+
+    /**
+     * 品类字典：编码只增不减；codes 给过滤用，names 按编码取名，追加时整体换新数组
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[0];
+
+        int codeOf(String name) {
+            Integer code = codes.get(name);
+            return code == null ? -1 : code;
+        }
+
+        int intern(String name) {
+            Integer code = codes.get(name);
+            if (code != null) {
+                return code;
+            }
+            String[] current = names;
+            String[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = name;
+            names = next;
+            codes.put(name, current.length);
+            return current.length;
+        }
+
+        String nameOf(int code) {
+            String[] current = names;
+            return code >= 0 && code < current.length ? current[code] : "";
+        }
+
+        int size() {
+            return names.length;
+        }
+    }
+
+    /**
+     * 某一时刻的列视图：字段全是 final，数组里下标 < size 的部分对持有者可见且不再追加；
+     * 追加新行时生成新的视图（容量够就共用数组），状态变化原地写
+     */
+    private record Columns(long[] ids, int[] platform, int[] province, int[] category, int[] status, int[] day,
+                           long[] amountCents, int size, int sortedUpTo,
+                           int maxPlatform, int maxProvince, int minDay, int maxDay,
+                           Dictionary categories, Map<Integer, String> platformNames,
+                           Map<Integer, String> provinceNames) {
+
+        static Columns empty(int capacity, Dictionary categories, Map<Integer, String> platformNames,
+                             Map<Integer, String> provinceNames) {
+            int cap = Math.max(INITIAL_CAPACITY, capacity);
+            return new Columns(new long[cap], new int[cap], new int[cap], new int[cap], new int[cap], new int[cap],
+                    new long[cap], 0, 0, -1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                    categories, platformNames, provinceNames);
+        }
+
+        int capacity() {
+            return ids.length;
+        }
+
+        /**
+         * 按 id 找行：id 有序的前缀二分，之后乱序追加的尾巴线性找（两次重建之间的新单，量不大）
+         */
+        int indexOf(long id) {
+            int found = Arrays.binarySearch(ids, 0, sortedUpTo, id);
+            if (found >= 0) {
+                return found;
+            }
+            for (int i = sortedUpTo; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Columns append(OrderFact fact) {
+            Columns target = this;
+            if (size == capacity()) {
+                int cap = capacity() * 2;
+                target = new Columns(Arrays.copyOf(ids, cap), Arrays.copyOf(platform, cap),
+                        Arrays.copyOf(province, cap), Arrays.copyOf(category, cap), Arrays.copyOf(status, cap),
+                        Arrays.copyOf(day, cap), Arrays.copyOf(amountCents, cap), size, sortedUpTo,
+                        maxPlatform, maxProvince, minDay, maxDay, categories, platformNames, provinceNames);
+            }
+            int i = size;
+            long id = fact.id();
+            int platformId = asInt(fact.platformId());
+            int provinceId = asInt(fact.provinceId());
+            int createdDay = fact.createdAt() == null ? 0 : (int) fact.createdAt().toLocalDate().toEpochDay();
+            target.ids[i] = id;
+            target.platform[i] = platformId;
+            target.province[i] = provinceId;
+            target.category[i] = categories.intern(fact.category() == null ? "" : fact.category());
+            target.status[i] = asInt(fact.status());
+            target.day[i] = createdDay;
+            target.amountCents[i] = cents(fact.amount());
+            boolean sorted = sortedUpTo == size && (size == 0 || ids[size - 1] < id);
+            return new Columns(target.ids, target.platform, target.province, target.category, target.status,
+                    target.day, target.amountCents, size + 1, sorted ? size + 1 : sortedUpTo,
+                    Math.max(maxPlatform, platformId), Math.max(maxProvince, provinceId),
+                    Math.min(minDay, createdDay), Math.max(maxDay, createdDay),
+                    categories, platformNames, provinceNames);
+        }
+    }
+
+    private final Object writeLock = new Object();
+    // 全量重建和增量同步互斥，抢不到的一方直接跳过这一轮
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile Columns columns;
+    private volatile boolean ready;
+    // 重建期间到达的订单号，换表后按数据库最新状态补一遍；null 表示当前没在重建。由 writeLock 保护
+    private Set<String> pendingDuringRebuild;
+    private volatile LocalDateTime syncedUpTo;
+    private volatile boolean overLimit;
+    private volatile long lastRebuildAtMs;
+    private volatile long lastRebuildCostMs;
+    private volatile long lastSyncAtMs;
+    private volatile int lastSyncRows;
+    private volatile long appliedEvents;
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 增量同步一轮：还没加载过时做第一次全量加载，之后只读水位线之后有变动的订单
+     */
+    public void sync() {
+        if (!enabled || overLimit || !syncLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!ready) {
+                rebuildLocked();
+                return;
+            }
+            catchUpLocked();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 从 consumption_order 流式读全量事实重建整张表；只由 fact-rebuild-cron 或手动触发，
+     * 正在同步 / 重建时返回 false
+     */
+    public boolean rebuild() {
+        if (!enabled || !syncLock.tryLock()) {
+            return false;
+        }
+        try {
+            overLimit = false;
+            rebuildLocked();
+            return true;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void rebuildLocked() {
+        long total = orderFactMapper.countFacts();
+        if (total > maxRows) {
+            dropOverLimit(total);
+            return;
+        }
+        synchronized (writeLock) {
+            pendingDuringRebuild = new LinkedHashSet<>();
+            // 先放掉旧表再建新表，内存里同时只有一份；这段时间 isReady 为 false，分析接口走 SQL
+            columns = null;
+            ready = false;
+        }
+        long startMs = System.currentTimeMillis();
+        List<String> replay = List.of();
+        LocalDateTime[] maxUpdated = new LocalDateTime[1];
+        try {
+            Columns built = transactionTemplate.execute(status -> {
+                // 按行数预留容量，流式追加过程中不再翻倍拷贝
+                Columns next = Columns.empty((int) Math.min(maxRows, total + total / 8), new Dictionary(),
+                        loadNames(platformDataMapper.platformList()),
+                        loadNames(dashBoardMapper.selectProvinceNames()));
+                try (Cursor<OrderFact> cursor = orderFactMapper.streamFacts()) {
+                    for (OrderFact fact : cursor) {
+                        if (next.size() >= maxRows) {
+                            // 计数之后又涨过了上限，丢掉半成品
+                            return null;
+                        }
+                        next = next.append(fact);
+                        maxUpdated[0] = later(maxUpdated[0], fact.updatedAt());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Close order fact cursor failed", e);
+                }
+                return next;
+            });
+            if (built == null) {
+                dropOverLimit(maxRows + 1);
+                return;
+            }
+            synchronized (writeLock) {
+                columns = built;
+                replay = new ArrayList<>(pendingDuringRebuild);
+                pendingDuringRebuild = null;
+            }
+            syncedUpTo = maxUpdated[0] == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : maxUpdated[0];
+            ready = true;
+            lastRebuildAtMs = startMs;
+            lastRebuildCostMs = System.currentTimeMillis() - startMs;
+            log.info("order fact store rebuilt, rows={}, categories={}, replay={}, syncedUpTo={}, costMs={}",
+                    built.size(), built.categories().size(), replay.size(), syncedUpTo, lastRebuildCostMs);
+        } finally {
+            synchronized (writeLock) {
+                pendingDuringRebuild = null;
+            }
+        }
+        applyOrderNos(replay);
+    }
+
+    /**
+     * 从 [水位线 - 迟到窗口] 开始按 (updated_at, id) 分页读，窗口内重复读到的行原地覆盖，结果不变
+     */
+    private void catchUpLocked() {
+        long startMs = System.currentTimeMillis();
+        LocalDateTime since = syncedUpTo.minus(Duration.ofMillis(lateMs));
+        long afterId = 0L;
+        LocalDateTime maxSeen = syncedUpTo;
+        int rows = 0;
+        while (ready) {
+            List<OrderFact> page = orderFactMapper.selectFactsUpdatedAfter(since, afterId, SYNC_PAGE);
+            if (page.isEmpty()) {
+                break;
+            }
+            upsert(page);
+            rows += page.size();
+            OrderFact last = page.getLast();
+            since = last.updatedAt();
+            afterId = last.id();
+            maxSeen = later(maxSeen, last.updatedAt());
+            if (page.size() < SYNC_PAGE) {
+                break;
+            }
+        }
+        syncedUpTo = maxSeen;
+        lastSyncAtMs = startMs;
+        lastSyncRows = rows;
+    }
+
+    private void dropOverLimit(long rows) {
+        synchronized (writeLock) {
+            columns = null;
+            ready = false;
+        }
+        overLimit = true;
+        log.warn("order facts exceed fact-max-rows, fall back to SQL, rows={}, maxRows={}", rows, maxRows);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderTransition(OrderTransitionEvent event) {
+        if (!enabled || event == null || event.transitions() == null || event.transitions().isEmpty()) {
+            return;
+        }
+        Set<String> orderNos = new LinkedHashSet<>();
+        for (OrderTransitionEvent.Transition transition : event.transitions()) {
+            if (transition.orderNo() != null) {
+                orderNos.add(transition.orderNo());
+            }
+        }
+        synchronized (writeLock) {
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.addAll(orderNos);
+                return;
+            }
+        }
+        if (!ready) {
+            return;
+        }
+        try {
+            applyOrderNos(new ArrayList<>(orderNos));
+        } catch (Exception e) {
+            // 订单已经提交，这里不能往外抛；漏掉的变化等下次重建纠正
+            log.warn("apply order facts failed, reason={}, orders={}", event.reason(), orderNos.size(), e);
+        }
+    }
+
+    /**
+     * 按订单号回库取最新的事实，已有的行原地改状态和金额，没有的追加
+     */
+    private void applyOrderNos(List<String> orderNos) {
+        if (orderNos.isEmpty()) {
+            return;
+        }
+        for (List<String> batch : ListUtils.partition(orderNos, FETCH_BATCH)) {
+            List<OrderFact> facts = orderFactMapper.selectFactsByOrderNos(batch);
+            if (!upsert(facts)) {
+                return;
+            }
+            synchronized (writeLock) {
+                appliedEvents += facts.size();
+            }
+        }
+    }
+
+    /**
+     * 已有的行原地改状态和金额，没有的按 id 升序追加（尽量延长有序前缀）；表不存在或超限返回 false
+     */
+    private boolean upsert(List<OrderFact> facts) {
+        synchronized (writeLock) {
+            Columns current = columns;
+            if (current == null) {
+                return false;
+            }
+            List<OrderFact> added = new ArrayList<>();
+            for (OrderFact fact : facts) {
+                int row = current.indexOf(fact.id());
+                if (row >= 0) {
+                    current.status()[row] = asInt(fact.status());
+                    current.amountCents()[row] = cents(fact.amount());
+                } else {
+                    added.add(fact);
+                }
+            }
+            if (current.size() + added.size() > maxRows) {
+                dropOverLimit(current.size() + added.size());
+                return false;
+            }
+            added.sort(Comparator.comparingLong(OrderFact::id));
+            for (OrderFact fact : added) {
+                current = current.append(fact);
+            }
+            columns = current;
+            return true;
+        }
+    }
+
+    /**
+     * 一次顺序扫描完成过滤 + 分组汇总。分组键先折算成从 0 开始的下标，累加到按下标排的原始数组里；
+     * DAY / STATUS 按键升序返回，其余按已支付金额、订单数倒序
+     */
+    public List<Group> aggregate(Filter filter, Dimension groupBy) {
+        Columns c = columns;
+        if (c == null || c.size() == 0) {
+            return List.of();
+        }
+        Filter f = filter == null ? Filter.all() : filter;
+        int fPlatform = f.platformId() == null ? -1 : f.platformId();
+        int fProvince = f.provinceId() == null ? -1 : f.provinceId();
+        int fStatus = f.status() == null ? -1 : f.status();
+        int fCategory = -1;
+        if (f.category() != null && !f.category().isBlank()) {
+            fCategory = c.categories().codeOf(f.category().trim());
+            if (fCategory < 0) {
+                return List.of();
+            }
+        }
+        int fromDay = f.from() == null ? Integer.MIN_VALUE : (int) f.from().toEpochDay();
+        int toDay = f.to() == null ? Integer.MAX_VALUE : (int) f.to().toEpochDay();
+
+        int[] keys;
+        int base = 0;
+        int space;
+        switch (groupBy) {
+            case PLATFORM -> {
+                keys = c.platform();
+                space = c.maxPlatform() + 1;
+            }
+            case PROVINCE -> {
+                keys = c.province();
+                space = c.maxProvince() + 1;
+            }
+            case CATEGORY -> {
+                keys = c.category();
+                space = c.categories().size();
+            }
+            case STATUS -> {
+                keys = c.status();
+                space = 5;
+            }
+            default -> {
+                keys = c.day();
+                base = Math.max(fromDay, c.minDay());
+                int last = Math.min(toDay, c.maxDay());
+                if (last < base) {
+                    return List.of();
+                }
+                space = last - base + 1;
+            }
+        }
+        if (space <= 0) {
+            return List.of();
+        }
+
+        long[] orders = new long[space];
+        long[] paidOrders = new long[space];
+        long[] gross = new long[space];
+        long[] paid = new long[space];
+        int[] platform = c.platform();
+        int[] province = c.province();
+        int[] category = c.category();
+        int[] status = c.status();
+        int[] day = c.day();
+        long[] amount = c.amountCents();
+        int n = c.size();
+        for (int i = 0; i < n; i++) {
+            if ((fPlatform >= 0 && platform[i] != fPlatform)
+                    || (fProvince >= 0 && province[i] != fProvince)
+                    || (fCategory >= 0 && category[i] != fCategory)
+                    || (fStatus >= 0 && status[i] != fStatus)
+                    || day[i] < fromDay || day[i] > toDay) {
+                continue;
+            }
+            int k = keys[i] - base;
+            if (k < 0 || k >= space) {
+                continue;
+            }
+            // 已支付用乘法累加而不是分支，循环体里少一个难预测的跳转
+            int isPaid = status[i] == 2 ? 1 : 0;
+            orders[k]++;
+            paidOrders[k] += isPaid;
+            gross[k] += amount[i];
+            paid[k] += amount[i] * isPaid;
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (int k = 0; k < space; k++) {
+            if (orders[k] == 0) {
+                continue;
+            }
+            int key = k + base;
+            groups.add(new Group(key, label(c, groupBy, key), orders[k], paidOrders[k], gross[k], paid[k]));
+        }
+        if (groupBy != Dimension.DAY && groupBy != Dimension.STATUS) {
+            groups.sort(Comparator.comparingLong(Group::paidCents).reversed()
+                    .thenComparing(Comparator.comparingLong(Group::orders).reversed()));
+        }
+        return groups;
+    }
+
+    public Map<String, Object> stats() {
+        Columns c = columns;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", isReady());
+        stats.put("overLimit", overLimit);
+        stats.put("maxRows", maxRows);
+        stats.put("syncedUpTo", syncedUpTo == null ? "" : syncedUpTo.toString());
+        stats.put("lastSyncAtMs", lastSyncAtMs);
+        stats.put("lastSyncRows", lastSyncRows);
+        stats.put("rows", c == null ? 0 : c.size());
+        stats.put("capacity", c == null ? 0 : c.capacity());
+        stats.put("categories", c == null ? 0 : c.categories().size());
+        stats.put("appliedEvents", appliedEvents);
+        stats.put("lastRebuildAtMs", lastRebuildAtMs);
+        stats.put("lastRebuildCostMs", lastRebuildCostMs);
+        return stats;
+    }
+
+    private static String label(Columns c, Dimension groupBy, int key) {
+        return switch (groupBy) {
+            case PLATFORM -> c.platformNames().getOrDefault(key, "");
+            case PROVINCE -> c.provinceNames().getOrDefault(key, "");
+            case CATEGORY -> c.categories().nameOf(key);
+            case DAY -> LocalDate.ofEpochDay(key).toString();
+            case STATUS -> String.valueOf(key);
+        };
+    }
+
+    private static Map<Integer, String> loadNames(List<HashMap<String, Object>> rows) {
+        Map<Integer, String> names = new HashMap<>();
+        if (rows == null) {
+            return names;
+        }
+        for (HashMap<String, Object> row : rows) {
+            Object id = row.get("id");
+            if (id instanceof Number number) {
+                names.put(number.intValue(), String.valueOf(row.getOrDefault("name", "")));
+            }
+        }
+        return names;
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || !b.isAfter(a) ? a : b;
+    }
+
+    private static int asInt(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0L : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,240 @@
+package com.iptnet.consume.service.analytics;
+
+import com.iptnet.consume.dto.OrderRollupRefreshedEvent;
+import com.iptnet.consume.mapper.OrderRollupMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 订单汇总表（小时 / 日）的增量维护。
+ *
+ * <p>水位线记的是上一轮实际读到的最大 updated_at，而不是数据库或本机的当前时间：updated_at 有的由 SQL
+ * 写、有的由应用按 JVM 时钟写，水位线只跟数据本身比较就不受两边时钟偏差影响。每轮找出 updated_at 落在
+ * [水位线 - 迟到窗口, 本轮最大 updated_at] 的订单所在的小时，把这些小时从明细重算一遍，再用小时表重算涉及到的日期。
+ * 订单改状态会刷新 updated_at，所以支付、超时关单也会让对应小时重算；迟到窗口兜住扫描时还没提交、
+ * 提交后 updated_at 却早于水位线的长事务。没有水位线时从头回填一遍，回填完成前分析接口走实时查询。</p>
+ *
+ * <p>{@link #reconcile()} 定期把最近几天整天重算一遍，兜住超出迟到窗口的延迟提交和绕过 updated_at 的改动。
+ * 多节点用 Redis 锁互斥，每提交一段就续期，回填跑得再久锁也不会中途过期。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderRollupService {
+
+    private static final String WATERMARK = "order";
+    private static final String KEY_LOCK = "analytics:rollup:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+    private static final LocalDateTime BACKFILL_FROM = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // 连续的脏小时合并成一段重算，但一段不跨天，单条 INSERT ... SELECT 扫的行数有上限
+    private static final int MAX_RANGE_HOURS = 24;
+
+    /** 锁还是自己的才续期，返回 0 表示锁已丢 */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            return redis.call('DEL', KEYS[1])
+            """, Long.class);
+
+    private final OrderRollupMapper orderRollupMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redis;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${business.analytics.rollup-late-ms:300000}")
+    private long lateMs;
+
+    @Value("${business.analytics.rollup-reconcile-days:2}")
+    private int reconcileDays;
+
+    private volatile boolean ready;
+    private volatile LocalDateTime watermark;
+    private volatile long lastRunAtMs;
+    private volatile long lastCostMs;
+    private volatile int lastHours;
+    private volatile int lastDays;
+    private volatile long lastReconcileAtMs;
+    private volatile long lastReconcileCostMs;
+
+    /**
+     * 汇总表是否已经回填完成，可以替代实时查询
+     */
+    public boolean isReady() {
+        if (ready) {
+            return true;
+        }
+        LocalDateTime current = orderRollupMapper.selectWatermark(WATERMARK);
+        if (current != null) {
+            watermark = current;
+            ready = true;
+        }
+        return ready;
+    }
+
+    /**
+     * 刷新一轮；多节点部署时用 Redis 锁保证同一时间只有一个节点在跑，抢不到直接返回
+     */
+    public void refresh() {
+        withLock(this::refreshLocked);
+    }
+
+    /**
+     * 把最近 rollup-reconcile-days 天（含今天）按天整体重算；汇总表还没回填时跳过
+     */
+    public void reconcile() {
+        if (!isReady()) {
+            return;
+        }
+        withLock(this::reconcileLocked);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("watermark", watermark == null ? "" : watermark.toString());
+        stats.put("lastRunAtMs", lastRunAtMs);
+        stats.put("lastCostMs", lastCostMs);
+        stats.put("lastHours", lastHours);
+        stats.put("lastDays", lastDays);
+        stats.put("lastReconcileAtMs", lastReconcileAtMs);
+        stats.put("lastReconcileCostMs", lastReconcileCostMs);
+        return stats;
+    }
+
+    private void withLock(Consumer<String> task) {
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(KEY_LOCK, token, LOCK_TTL))) {
+            return;
+        }
+        try {
+            task.accept(token);
+        } finally {
+            redis.execute(UNLOCK_SCRIPT, List.of(KEY_LOCK), token);
+        }
+    }
+
+    /** 每段重算之间续期；锁已经被别人拿走就停下，避免两个节点同时改汇总表 */
+    private void renewLock(String token) {
+        Long renewed = redis.execute(RENEW_SCRIPT, List.of(KEY_LOCK), token, String.valueOf(LOCK_TTL.toMillis()));
+        if (renewed == null || renewed != 1L) {
+            throw new IllegalStateException("order rollup lock lost");
+        }
+    }
+
+    private void refreshLocked(String token) {
+        long startMs = System.currentTimeMillis();
+        LocalDateTime previous = orderRollupMapper.selectWatermark(WATERMARK);
+        LocalDateTime since = previous == null ? BACKFILL_FROM : previous.minus(Duration.ofMillis(lateMs));
+        LocalDateTime maxSeen = orderRollupMapper.selectMaxUpdatedAt(since);
+        // 水位线之后没有新变动就不重算，空闲时不反复刷同一个窗口；窗口里的迟到提交留给 reconcile。
+        // 空表回填也要落一个水位线，标记回填完成
+        boolean advanced = maxSeen != null && (previous == null || maxSeen.isAfter(previous));
+        LocalDateTime until = advanced ? maxSeen : (previous == null ? BACKFILL_FROM : previous);
+
+        List<LocalDateTime> hours = advanced ? orderRollupMapper.selectDirtyHours(since, until) : List.of();
+        TreeSet<LocalDate> days = new TreeSet<>();
+        for (LocalDateTime[] range : mergeRanges(hours)) {
+            rebuildHours(token, range[0], range[1]);
+            days.add(range[0].toLocalDate());
+        }
+        for (LocalDate day : days) {
+            rebuildDay(token, day);
+        }
+
+        if (!until.equals(previous)) {
+            orderRollupMapper.upsertWatermark(WATERMARK, until);
+        }
+        watermark = until;
+        ready = true;
+        lastRunAtMs = startMs;
+        lastCostMs = System.currentTimeMillis() - startMs;
+        lastHours = hours.size();
+        lastDays = days.size();
+        if (previous == null || !hours.isEmpty()) {
+            log.info("order rollup refreshed, backfill={}, hours={}, days={}, watermark={}, costMs={}",
+                    previous == null, hours.size(), days.size(), until, lastCostMs);
+            eventPublisher.publishEvent(new OrderRollupRefreshedEvent(until, hours.size(), days.size(), previous == null));
+        }
+    }
+
+    private void reconcileLocked(String token) {
+        long startMs = System.currentTimeMillis();
+        LocalDate today = orderRollupMapper.dbNow().toLocalDate();
+        int days = Math.max(1, reconcileDays);
+        for (int i = days - 1; i >= 0; i--) {
+            LocalDate day = today.minusDays(i);
+            rebuildHours(token, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+            rebuildDay(token, day);
+        }
+        lastReconcileAtMs = startMs;
+        lastReconcileCostMs = System.currentTimeMillis() - startMs;
+        log.info("order rollup reconciled, days={}, costMs={}", days, lastReconcileCostMs);
+        eventPublisher.publishEvent(new OrderRollupRefreshedEvent(watermark, days * 24, days, false));
+    }
+
+    private void rebuildHours(String token, LocalDateTime from, LocalDateTime to) {
+        transactionTemplate.executeWithoutResult(status -> {
+            orderRollupMapper.deleteHourly(from, to);
+            orderRollupMapper.insertHourly(from, to);
+        });
+        renewLock(token);
+    }
+
+    private void rebuildDay(String token, LocalDate day) {
+        transactionTemplate.executeWithoutResult(status -> {
+            orderRollupMapper.deleteDaily(day);
+            orderRollupMapper.insertDaily(day);
+        });
+        renewLock(token);
+    }
+
+    /**
+     * 有序的小时列表合并成 [from, to) 区间：相邻且同一天的小时并成一段
+     */
+    private static List<LocalDateTime[]> mergeRanges(List<LocalDateTime> hours) {
+        List<LocalDateTime[]> ranges = new ArrayList<>();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (LocalDateTime hour : hours) {
+            boolean extend = to != null
+                    && hour.equals(to)
+                    && hour.toLocalDate().equals(from.toLocalDate())
+                    && Duration.between(from, hour).toHours() < MAX_RANGE_HOURS;
+            if (extend) {
+                to = hour.plusHours(1);
+                continue;
+            }
+            if (from != null) {
+                ranges.add(new LocalDateTime[]{from, to});
+            }
+            from = hour;
+            to = hour.plusHours(1);
+        }
+        if (from != null) {
+            ranges.add(new LocalDateTime[]{from, to});
+        }
+        return ranges;
+    }
+}
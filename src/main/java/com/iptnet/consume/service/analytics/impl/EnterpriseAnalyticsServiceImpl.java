@@ -1,25 +1,213 @@
 package com.iptnet.consume.service.analytics.impl;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iptnet.consume.dto.OrderRollupRefreshedEvent;
+import com.iptnet.consume.dto.OrderTransitionEvent;
 import com.iptnet.consume.mapper.EnterpriseAnalyticsMapper;
 import com.iptnet.consume.service.analytics.EnterpriseAnalyticsService;
+import com.iptnet.consume.service.analytics.OrderFactStore;
+import com.iptnet.consume.service.analytics.OrderRollupService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 @RequiredArgsConstructor
 public class EnterpriseAnalyticsServiceImpl implements EnterpriseAnalyticsService {
 
     private final EnterpriseAnalyticsMapper enterpriseAnalyticsMapper;
+    private final OrderRollupService orderRollupService;
+    private final OrderFactStore orderFactStore;
+
+    @Value("${business.analytics.cache-refresh-ms:5000}")
+    private long refreshMs;
+
+    @Value("${business.analytics.cache-ttl-ms:60000}")
+    private long ttlMs;
+
+    /**
+     * 缓存键：接口名 + 已经 clamp 过的参数（天数 / 条数），overview 参数固定为 0
+     */
+    private record CacheKey(String method, int arg) {}
+
+    /**
+     * 分析结果缓存：同一个键同时只有一个请求回源，其余等它的结果；写入超过 refreshMs 后再被读到，
+     * 先返回旧值、后台重算（stale-while-revalidate）；写入后 ttlMs 内一直没被刷新的（没人读）直接过期。
+     * 回源是阻塞的 JDBC，放虚拟线程上跑
+     */
+    private LoadingCache<CacheKey, Object> cache;
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean ordersChanged = new AtomicBoolean();
+    private final LongAdder refreshes = new LongAdder();
+
+    @PostConstruct
+    void initCache() {
+        // 过期时间必须长于刷新时间，否则条目总是先过期、读的人只能同步等回源
+        long refresh = Math.max(1000L, refreshMs);
+        long ttl = Math.max(refresh * 2, ttlMs);
+        cache = Caffeine.newBuilder()
+                .maximumSize(512)
+                .refreshAfterWrite(Duration.ofMillis(refresh))
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(this::load);
+    }
+
+    @PreDestroy
+    void closeCache() {
+        refreshExecutor.close();
+    }
 
     @Override
     public Map<String, Object> overview() {
-        HashMap<String, Object> raw = enterpriseAnalyticsMapper.overview();
+        return cached("overview", 0);
+    }
+
+    @Override
+    public List<HashMap<String, Object>> trend(int days) {
+        return cached("trend", clamp(days, 1, 180));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> hourlyTrend(int hours) {
+        return cached("hourlyTrend", clamp(hours, 1, 24 * 7));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> platformRank(int limit) {
+        return cached("platformRank", clamp(limit, 1, 100));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> provinceRank(int limit) {
+        return cached("provinceRank", clamp(limit, 1, 100));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> categoryRank(int limit) {
+        return cached("categoryRank", clamp(limit, 1, 100));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> paymentChannelRank(int limit) {
+        return cached("paymentChannelRank", clamp(limit, 1, 100));
+    }
+
+    @Override
+    public List<HashMap<String, Object>> slice(String groupBy, Integer platformId, Integer provinceId, String category,
+                                               Integer status, LocalDate from, LocalDate to, int limit) {
+        if (!orderFactStore.isReady()) {
+            throw new IllegalStateException("内存分析数据尚未加载完成，请稍后再试");
+        }
+        OrderFactStore.Dimension dimension = OrderFactStore.Dimension.of(groupBy);
+        OrderFactStore.Filter filter = new OrderFactStore.Filter(platformId, provinceId, category, status, from, to);
+        return sliceRows(orderFactStore.aggregate(filter, dimension), dimension, clamp(limit, 1, 5000));
+    }
+
+    @Override
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("loads", stats.loadCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("avgLoadMs", stats.averageLoadPenalty() / 1_000_000D);
+        result.put("refreshes", refreshes.sum());
+        return result;
+    }
+
+    /**
+     * 汇总表刷新完成：缓存里的结果都可能变了，全部后台重算；重算期间照常返回旧值
+     */
+    @EventListener
+    public void onRollupRefreshed(OrderRollupRefreshedEvent event) {
+        refreshAll();
+    }
+
+    /**
+     * 订单变动只打标记，真正的刷新按时间桶合并
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderTransition(OrderTransitionEvent event) {
+        // 内存列存由订单事件实时维护，汇总表还没就绪时走实时查询，这两种情况结果都会随订单变
+        if (orderFactStore.isReady() || !orderRollupService.isReady()) {
+            ordersChanged.set(true);
+        }
+    }
+
+    /**
+     * 每个时间桶最多刷新一次：桶内来再多订单事件，也只让每个缓存结果重算一遍
+     */
+    @Scheduled(fixedDelayString = "${business.analytics.cache-invalidate-ms:2000}")
+    public void flushOrderChanges() {
+        if (ordersChanged.getAndSet(false)) {
+            refreshAll();
+        }
+    }
+
+    private void refreshAll() {
+        Set<CacheKey> keys = cache.asMap().keySet();
+        if (keys.isEmpty()) {
+            return;
+        }
+        refreshes.increment();
+        cache.refreshAll(List.copyOf(keys));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String method, int arg) {
+        return (T) cache.get(new CacheKey(method, arg));
+    }
+
+    private Object load(CacheKey key) {
+        return switch (key.method()) {
+            case "overview" -> loadOverview();
+            case "trend" -> loadTrend(key.arg());
+            case "hourlyTrend" -> loadHourlyTrend(key.arg());
+            case "platformRank" -> loadPlatformRank(key.arg());
+            case "provinceRank" -> loadProvinceRank(key.arg());
+            case "categoryRank" -> loadCategoryRank(key.arg());
+            case "paymentChannelRank" -> loadPaymentChannelRank(key.arg());
+            default -> throw new IllegalStateException("unknown analytics method: " + key.method());
+        };
+    }
+
+    private Map<String, Object> loadOverview() {
+        // 优先扫内存列存；没加载好时汇总表回填完成后从汇总表读，再之前走实时查询
+        HashMap<String, Object> raw;
+        if (orderFactStore.isReady()) {
+            raw = overviewFromFacts();
+        } else {
+            raw = orderRollupService.isReady()
+                    ? enterpriseAnalyticsMapper.overviewFromRollup()
+                    : enterpriseAnalyticsMapper.overview();
+        }
 
         long totalOrders = asLong(raw.get("total_orders"));
         long paidOrders = asLong(raw.get("paid_orders"));
@@ -54,31 +242,144 @@ public class EnterpriseAnalyticsServiceImpl implements EnterpriseAnalyticsServic
         return result;
     }
 
-    @Override
-    public List<HashMap<String, Object>> trend(int days) {
-        int safeDays = clamp(days, 1, 180);
+    private List<HashMap<String, Object>> loadTrend(int safeDays) {
         int lookbackDays = Math.max(0, safeDays - 1);
-        return enterpriseAnalyticsMapper.trend(lookbackDays);
+        if (orderFactStore.isReady()) {
+            LocalDate today = LocalDate.now();
+            OrderFactStore.Filter filter =
+                    new OrderFactStore.Filter(null, null, null, null, today.minusDays(lookbackDays), today);
+            List<HashMap<String, Object>> rows = new ArrayList<>();
+            for (OrderFactStore.Group group : orderFactStore.aggregate(filter, OrderFactStore.Dimension.DAY)) {
+                HashMap<String, Object> row = new LinkedHashMap<>();
+                row.put("biz_date", group.label());
+                row.put("total_orders", group.orders());
+                row.put("paid_orders", group.paidOrders());
+                row.put("gross_amount", group.grossAmount());
+                row.put("paid_amount", group.paidAmount());
+                rows.add(row);
+            }
+            return rows;
+        }
+        return orderRollupService.isReady()
+                ? enterpriseAnalyticsMapper.trendFromRollup(lookbackDays)
+                : enterpriseAnalyticsMapper.trend(lookbackDays);
     }
 
-    @Override
-    public List<HashMap<String, Object>> platformRank(int limit) {
-        return enterpriseAnalyticsMapper.platformRank(clamp(limit, 1, 100));
+    private List<HashMap<String, Object>> loadHourlyTrend(int safeHours) {
+        if (!orderRollupService.isReady()) {
+            return List.of();
+        }
+        return enterpriseAnalyticsMapper.hourlyTrendFromRollup(Math.max(0, safeHours - 1));
     }
 
-    @Override
-    public List<HashMap<String, Object>> provinceRank(int limit) {
-        return enterpriseAnalyticsMapper.provinceRank(clamp(limit, 1, 100));
+    private List<HashMap<String, Object>> loadPlatformRank(int safeLimit) {
+        if (orderFactStore.isReady()) {
+            return sliceRows(orderFactStore.aggregate(OrderFactStore.Filter.all(), OrderFactStore.Dimension.PLATFORM),
+                    OrderFactStore.Dimension.PLATFORM, safeLimit);
+        }
+        return orderRollupService.isReady()
+                ? enterpriseAnalyticsMapper.platformRankFromRollup(safeLimit)
+                : enterpriseAnalyticsMapper.platformRank(safeLimit);
     }
 
-    @Override
-    public List<HashMap<String, Object>> categoryRank(int limit) {
-        return enterpriseAnalyticsMapper.categoryRank(clamp(limit, 1, 100));
+    private List<HashMap<String, Object>> loadProvinceRank(int safeLimit) {
+        if (orderFactStore.isReady()) {
+            return sliceRows(orderFactStore.aggregate(OrderFactStore.Filter.all(), OrderFactStore.Dimension.PROVINCE),
+                    OrderFactStore.Dimension.PROVINCE, safeLimit);
+        }
+        return orderRollupService.isReady()
+                ? enterpriseAnalyticsMapper.provinceRankFromRollup(safeLimit)
+                : enterpriseAnalyticsMapper.provinceRank(safeLimit);
     }
 
-    @Override
-    public List<HashMap<String, Object>> paymentChannelRank(int limit) {
-        return enterpriseAnalyticsMapper.paymentChannelRank(clamp(limit, 1, 100));
+    private List<HashMap<String, Object>> loadCategoryRank(int safeLimit) {
+        if (orderFactStore.isReady()) {
+            return sliceRows(orderFactStore.aggregate(OrderFactStore.Filter.all(), OrderFactStore.Dimension.CATEGORY),
+                    OrderFactStore.Dimension.CATEGORY, safeLimit);
+        }
+        return orderRollupService.isReady()
+                ? enterpriseAnalyticsMapper.categoryRankFromRollup(safeLimit)
+                : enterpriseAnalyticsMapper.categoryRank(safeLimit);
+    }
+
+    private List<HashMap<String, Object>> loadPaymentChannelRank(int safeLimit) {
+        return enterpriseAnalyticsMapper.paymentChannelRank(safeLimit);
+    }
+
+    /**
+     * 内存列存的状态分组拼成与 overview 查询相同的列
+     */
+    private HashMap<String, Object> overviewFromFacts() {
+        long total = 0;
+        long paidOrders = 0;
+        long unpaidOrders = 0;
+        long timeoutOrders = 0;
+        long grossCents = 0;
+        long paidCents = 0;
+        long unpaidCents = 0;
+        for (OrderFactStore.Group group : orderFactStore.aggregate(OrderFactStore.Filter.all(),
+                OrderFactStore.Dimension.STATUS)) {
+            total += group.orders();
+            grossCents += group.grossCents();
+            switch (group.key()) {
+                case 1 -> {
+                    unpaidOrders += group.orders();
+                    unpaidCents += group.grossCents();
+                }
+                case 2 -> {
+                    paidOrders += group.orders();
+                    paidCents += group.grossCents();
+                }
+                case 3 -> timeoutOrders += group.orders();
+                default -> {
+                }
+            }
+        }
+        HashMap<String, Object> raw = new HashMap<>();
+        raw.put("total_orders", total);
+        raw.put("paid_orders", paidOrders);
+        raw.put("unpaid_orders", unpaidOrders);
+        raw.put("timeout_orders", timeoutOrders);
+        raw.put("gross_amount", BigDecimal.valueOf(grossCents, 2));
+        raw.put("paid_amount", BigDecimal.valueOf(paidCents, 2));
+        raw.put("unpaid_amount", BigDecimal.valueOf(unpaidCents, 2));
+        raw.put("paid_avg_ticket", paidOrders == 0
+                ? BigDecimal.ZERO
+                : BigDecimal.valueOf(paidCents, 2).divide(BigDecimal.valueOf(paidOrders), 2, RoundingMode.HALF_UP));
+        return raw;
+    }
+
+    /**
+     * 分组结果转成与各排名查询相同的列：维度列 + order_count / paid_orders / gross_amount / paid_amount
+     */
+    private List<HashMap<String, Object>> sliceRows(List<OrderFactStore.Group> groups,
+                                                    OrderFactStore.Dimension groupBy, int limit) {
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (OrderFactStore.Group group : groups) {
+            if (rows.size() >= limit) {
+                break;
+            }
+            HashMap<String, Object> row = new LinkedHashMap<>();
+            switch (groupBy) {
+                case PLATFORM -> {
+                    row.put("platform_id", group.key());
+                    row.put("platform_name", group.label());
+                }
+                case PROVINCE -> {
+                    row.put("province_id", group.key());
+                    row.put("province_name", group.label());
+                }
+                case CATEGORY -> row.put("category", group.label().isEmpty() ? null : group.label());
+                case DAY -> row.put("biz_date", group.label());
+                case STATUS -> row.put("status", group.key());
+            }
+            row.put("order_count", group.orders());
+            row.put("paid_orders", group.paidOrders());
+            row.put("gross_amount", group.grossAmount());
+            row.put("paid_amount", group.paidAmount());
+            rows.add(row);
+        }
+        return rows;
     }
 
     private int clamp(int value, int min, int max) {
@@ -1,10 +1,11 @@
 package com.iptnet.consume.service.category;
 
-import java.util.HashMap;
+import com.iptnet.consume.dto.OrderFeedRow;
+
 import java.util.List;
 
 public interface CategoryService {
 
-    List<HashMap<String, Object>> getCategoryData(Integer platformId, String categoryName);
+    List<OrderFeedRow> getCategoryData(Integer platformId, String categoryName);
 
 }
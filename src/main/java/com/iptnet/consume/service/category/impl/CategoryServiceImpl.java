@@ -1,11 +1,11 @@
 package com.iptnet.consume.service.category.impl;
 
+import com.iptnet.consume.dto.OrderFeedRow;
 import com.iptnet.consume.mapper.CategoryDataMapper;
 import com.iptnet.consume.service.category.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.List;
 
 @Service
@@ -15,7 +15,7 @@ public class CategoryServiceImpl implements CategoryService {
     CategoryDataMapper categoryDataMapper;
 
     @Override
-    public List<HashMap<String, Object>> getCategoryData(Integer platformId, String categoryName) {
+    public List<OrderFeedRow> getCategoryData(Integer platformId, String categoryName) {
         return categoryDataMapper.getCategoryData(platformId,categoryName);
     }
 }
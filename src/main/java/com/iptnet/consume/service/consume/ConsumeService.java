@@ -15,9 +15,12 @@ public interface ConsumeService {
 
     void autoInsert(Integer userId, String orderNo, Integer productId, Integer cityId, BigDecimal amount, String remark);
 
-    List<ConsumeOrderDTO> orderByOrigen(Integer platformId);
+    List<ConsumeOrderDTO> orderByOrigen(Integer platformId, int limit);
 
-    List<ConsumeOrderDTO> orderNewByOrigen(Integer platformId, Integer id);
+    /**
+     * id 之后新增的订单，最多 limit 条，按 co.id 倒序返回
+     */
+    List<ConsumeOrderDTO> orderNewByOrigen(Integer platformId, Long id, int limit);
 
     List<String> showBarByPlatform();
 
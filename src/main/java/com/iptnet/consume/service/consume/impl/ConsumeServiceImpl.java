@@ -13,6 +13,8 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -57,13 +59,15 @@ public class ConsumeServiceImpl implements ConsumeService {
     }
 
     @Override
-    public List<ConsumeOrderDTO> orderByOrigen(Integer platformId) {
-        return consumeMapper.orderByOrigen(platformId);
+    public List<ConsumeOrderDTO> orderByOrigen(Integer platformId, int limit) {
+        return consumeMapper.orderByOrigen(platformId, limit);
     }
 
     @Override
-    public List<ConsumeOrderDTO> orderNewByOrigen(Integer platformId, Integer id) {
-        return consumeMapper.orderNewByOrigen(platformId,id);
+    public List<ConsumeOrderDTO> orderNewByOrigen(Integer platformId, Long id, int limit) {
+        List<ConsumeOrderDTO> rows = new ArrayList<>(consumeMapper.orderNewByOrigen(platformId, id, limit));
+        Collections.reverse(rows);
+        return rows;
     }
 
     @Override
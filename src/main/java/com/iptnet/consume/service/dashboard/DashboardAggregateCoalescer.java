@@ -0,0 +1,131 @@
+package com.iptnet.consume.service.dashboard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 看板聚合触发合并器：窗口内的多次触发合并成一次下游调用，涉及的用户取并集。
+ *
+ * <p>窗口从第一次触发开始计时而不是每次顺延，持续有订单事件时也能保证至多 windowMs 的延迟。
+ * 下游调用在单线程里串行执行，不会出现两次重建并发跑。</p>
+ */
+@Slf4j
+public class DashboardAggregateCoalescer implements AutoCloseable {
+
+    public record Batch(Set<Integer> userIds, Set<String> reasons, int triggers) {
+
+        public String reason() {
+            return String.join(",", reasons);
+        }
+    }
+
+    private final String name;
+    private final long windowMs;
+    private final Consumer<Batch> sink;
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    private Set<Integer> pendingUserIds = new LinkedHashSet<>();
+    private Set<String> pendingReasons = new LinkedHashSet<>();
+    private int pendingTriggers;
+    private boolean flushScheduled;
+
+    private final AtomicLong triggers = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastFlushCostMs;
+    private volatile int lastBatchTriggers;
+
+    public DashboardAggregateCoalescer(String name, long windowMs, Consumer<Batch> sink) {
+        this.name = name;
+        this.windowMs = Math.max(0L, windowMs);
+        this.sink = sink;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dashboard-coalesce-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void submit(Collection<Integer> userIds, String reason) {
+        triggers.incrementAndGet();
+        synchronized (lock) {
+            if (userIds != null) {
+                for (Integer userId : userIds) {
+                    if (userId != null && userId > 0) {
+                        pendingUserIds.add(userId);
+                    }
+                }
+            }
+            pendingReasons.add(reason == null || reason.isBlank() ? "UNKNOWN" : reason);
+            pendingTriggers += 1;
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        executor.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Map<String, Object> stats() {
+        long received = triggers.get();
+        long executed = flushes.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("windowMs", windowMs);
+        stats.put("triggers", received);
+        stats.put("flushes", executed);
+        stats.put("failures", failures.get());
+        stats.put("mergeRatio", executed == 0 ? 0D : (double) received / executed);
+        stats.put("lastBatchTriggers", lastBatchTriggers);
+        stats.put("lastFlushCostMs", lastFlushCostMs);
+        synchronized (lock) {
+            stats.put("pendingTriggers", pendingTriggers);
+        }
+        return stats;
+    }
+
+    private void flush() {
+        Batch batch;
+        synchronized (lock) {
+            batch = new Batch(pendingUserIds, pendingReasons, pendingTriggers);
+            pendingUserIds = new LinkedHashSet<>();
+            pendingReasons = new LinkedHashSet<>();
+            pendingTriggers = 0;
+            flushScheduled = false;
+        }
+        if (batch.triggers() == 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            sink.accept(batch);
+            flushes.incrementAndGet();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.warn("dashboard aggregate flush failed, name={}, triggers={}, users={}",
+                    name, batch.triggers(), batch.userIds().size(), e);
+        } finally {
+            lastFlushCostMs = System.currentTimeMillis() - start;
+            lastBatchTriggers = batch.triggers();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        // 停机前把窗口里还没发出去的触发补一次
+        flush();
+    }
+}
@@ -1,40 +1,161 @@
 package com.iptnet.consume.service.dashboard;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DashboardAggregateService {
 
+    // 一批合并了很多用户时只带前这么多个用户的最近订单，其余的前端按 userIds 自己去拉
+    private static final int MAX_RECENT_ORDER_USERS = 20;
+
     private final DashboardCacheService dashboardCacheService;
     private final DashboardEventPublisher dashboardEventPublisher;
+    private final DashboardEventStore dashboardEventStore;
+
+    @Value("${business.dashboard.aggregate-window-ms:500}")
+    private long aggregateWindowMs;
+
+    private DashboardAggregateCoalescer coalescer;
+    private Map<String, Object> lastPublished;
+    private long lastPublishedCursor;
+
+    @PostConstruct
+    public void init() {
+        coalescer = new DashboardAggregateCoalescer("rebuild", aggregateWindowMs,
+                batch -> rebuildAndPublish(batch.userIds(), batch.reason()));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        coalescer.close();
+    }
+
+    /**
+     * 合并窗口内的触发，N 个订单事件只重建一次
+     */
+    public void requestRebuild(Collection<Integer> userIds, String reason) {
+        coalescer.submit(userIds, reason);
+    }
+
+    public Map<String, Object> stats() {
+        return coalescer.stats();
+    }
 
     public void rebuildAndPublish(Integer userId, String reason) {
+        rebuildAndPublish(userId == null || userId <= 0 ? List.of() : List.of(userId), reason);
+    }
+
+    /**
+     * 重建后和上一次推送的状态逐路径比较，只推变化的部分（op=diff）；进程内第一次推送发全量 merge。
+     * 集群模式下如果上次推送之后别的节点也推过，本节点的基线已经不是前端的状态，同样改发全量。
+     * 触发用户的最近订单不参与比较，每次都带上：只有一个用户时和以前一样放 userId / recentOrders，
+     * 多个用户时放 recentOrdersByUser
+     */
+    public synchronized void rebuildAndPublish(Collection<Integer> userIds, String reason) {
         dashboardCacheService.refreshHomeCharts();
-        if (userId != null && userId > 0) {
-            dashboardCacheService.refreshRecentOrders(userId);
-        }
+
+        List<Integer> platformIds = dashboardCacheService.getPlatformIds();
+        List<Integer> bar = dashboardCacheService.getBarCounts();
+        List<HashMap<String, Object>> smooth = dashboardCacheService.getSmoothRows();
+        Map<String, List<HashMap<String, Object>>> lineByPlatform = dashboardCacheService.getAllLineRows();
+        Map<String, Object> state = flattenHomeState(platformIds, bar, smooth, lineByPlatform);
 
         Map<String, Object> payload = new LinkedHashMap<>();
         payload.put("reason", reason == null || reason.isBlank() ? "UNKNOWN" : reason);
         payload.put("ts", Instant.now().toString());
-        payload.put("platformIds", dashboardCacheService.getPlatformIds());
-        payload.put("bar", dashboardCacheService.getBarCounts());
-        payload.put("smooth", dashboardCacheService.getSmoothRows());
-        payload.put("lineByPlatform", dashboardCacheService.getAllLineRows());
-        if (userId != null && userId > 0) {
+        if (!userIds.isEmpty()) {
+            payload.put("userIds", List.copyOf(userIds));
+            putRecentOrders(payload, userIds);
+        }
+
+        if (lastPublished == null || dashboardEventStore.currentCursor() > lastPublishedCursor) {
+            payload.put("platformIds", platformIds);
+            payload.put("bar", bar);
+            payload.put("smooth", smooth);
+            payload.put("lineByPlatform", lineByPlatform);
+            lastPublishedCursor = dashboardEventPublisher.publishPatch("home", "merge", payload).cursor();
+            lastPublished = state;
+            log.debug("dashboard full state pushed, users={}, reason={}", userIds.size(), reason);
+            return;
+        }
+
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            if (!Objects.equals(lastPublished.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String path : lastPublished.keySet()) {
+            if (!state.containsKey(path)) {
+                removed.add(path);
+            }
+        }
+        lastPublished = state;
+        if (changed.isEmpty() && removed.isEmpty() && userIds.isEmpty()) {
+            log.debug("dashboard unchanged, skip push, reason={}", reason);
+            return;
+        }
+
+        payload.put("set", changed);
+        payload.put("remove", removed);
+        lastPublishedCursor = dashboardEventPublisher.publishPatch("home", "diff", payload).cursor();
+        log.debug("dashboard diff pushed, set={}, remove={}, reason={}", changed.size(), removed.size(), reason);
+    }
+
+    private void putRecentOrders(Map<String, Object> payload, Collection<Integer> userIds) {
+        if (userIds.size() == 1) {
+            Integer userId = userIds.iterator().next();
             payload.put("userId", userId);
             payload.put("recentOrders", dashboardCacheService.getRecentOrders(userId));
+            return;
         }
+        Map<String, Object> byUser = new LinkedHashMap<>();
+        for (Integer userId : userIds) {
+            if (byUser.size() >= MAX_RECENT_ORDER_USERS) {
+                break;
+            }
+            byUser.put(String.valueOf(userId), dashboardCacheService.getRecentOrders(userId));
+        }
+        payload.put("recentOrdersByUser", byUser);
+    }
 
-        dashboardEventPublisher.publishPatch("home", "merge", payload);
-        log.debug("dashboard aggregated and pushed, userId={}, reason={}", userId, reason);
+    /**
+     * 路径约定：platformIds、bar[下标]、smooth:省份id、line:平台id:品类
+     */
+    private Map<String, Object> flattenHomeState(List<Integer> platformIds,
+                                                 List<Integer> bar,
+                                                 List<HashMap<String, Object>> smooth,
+                                                 Map<String, List<HashMap<String, Object>>> lineByPlatform) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("platformIds", platformIds);
+        for (int i = 0; i < bar.size(); i++) {
+            state.put("bar[" + i + "]", bar.get(i));
+        }
+        for (HashMap<String, Object> row : smooth) {
+            state.put("smooth:" + row.get("province_id"), row);
+        }
+        for (Map.Entry<String, List<HashMap<String, Object>>> entry : lineByPlatform.entrySet()) {
+            for (HashMap<String, Object> row : entry.getValue()) {
+                state.put("line:" + entry.getKey() + ":" + row.get("category"), row);
+            }
+        }
+        return state;
     }
 }
@@ -2,12 +2,18 @@ package com.iptnet.consume.service.dashboard;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.iptnet.consume.mapper.ConsumeMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iptnet.consume.dto.OrderView;
 import com.iptnet.consume.mapper.PlatformDataMapper;
-import com.iptnet.consume.mapper.TransactionOrderMapper;
-import com.iptnet.consume.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -20,6 +26,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 @RequiredArgsConstructor
@@ -30,63 +41,103 @@ public class DashboardCacheService {
     private static final String KEY_HOME_BAR = "dash:v3:home:bar";
     private static final String KEY_HOME_SMOOTH = "dash:v3:home:smooth";
     private static final String KEY_HOME_LINE_PREFIX = "dash:v3:home:line:";
-    private static final String KEY_USER_RECENT_PREFIX = "dash:v3:user:recent30:";
-    private static final Duration USER_RECENT_TTL = Duration.ofHours(6);
+
+    // 首页快照组合体：一个 hash 存各部分的 JSON 原文 + 版本号，一次 HGETALL 取齐，不做反序列化
+    private static final String KEY_HOME_COMPOSITE = "dash:v3:home:composite";
+    private static final String KEY_HOME_COMPOSITE_LOCK = "dash:v3:home:composite:lock";
+    private static final String KEY_HOME_VERSION = "dash:v3:home:version";
+    private static final String FIELD_LINE_PREFIX = "line:";
+    private static final Duration COMPOSITE_LOCK_TTL = Duration.ofSeconds(10);
+    private static final long COMPOSITE_WAIT_MS = 2000L;
+    private static final long COMPOSITE_POLL_MS = 50L;
 
     private static final TypeReference<List<Integer>> LIST_INT = new TypeReference<>() {};
     private static final TypeReference<List<HashMap<String, Object>>> LIST_MAP = new TypeReference<>() {};
 
     private final StringRedisTemplate redis;
     private final ObjectMapper objectMapper;
-    private final ConsumeMapper consumeMapper;
-    private final TransactionOrderMapper transactionOrderMapper;
+    private final DashboardCounterService dashboardCounterService;
     private final PlatformDataMapper platformDataMapper;
-    private final UserMapper userMapper;
+    private final RecentOrdersCacheService recentOrdersCacheService;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Map<Object, Object>>> inFlightBuilds = new ConcurrentHashMap<>();
+    private final LongAdder snapshotHits = new LongAdder();
+    private final LongAdder snapshotBuilds = new LongAdder();
+    private final LongAdder snapshotCoalesced = new LongAdder();
+    private final LongAdder snapshotWaitedForPeer = new LongAdder();
+
+    @Value("${business.dashboard.l1-max-bytes:16777216}")
+    private long l1MaxBytes;
+
+    @Value("${business.dashboard.l1-ttl-ms:30000}")
+    private long l1TtlMs;
+
+    @Value("${business.dashboard.l1-version-check-ms:1000}")
+    private long l1VersionCheckMs;
+
+    /**
+     * L1：图表数据反序列化后的不可变对象，按 JSON 字节数估算权重；
+     * 本节点重建时直接清空，别的节点重建由 Redis 版本号发现（至多 l1VersionCheckMs 延迟），TTL 兜底。
+     * 每个条目记着读 Redis 之前看到的版本号，和当前版本号对不上就当未命中：重建前读到旧值、
+     * 在清空之后才放进来的条目不会被当成新值
+     */
+    private Cache<String, L1Entry> l1;
+    private final AtomicLong l1Version = new AtomicLong(-1L);
+    private final AtomicLong l1VersionCheckedAt = new AtomicLong();
+
+    private record L1Entry(Object value, int weight, long version) {}
+
+    @PostConstruct
+    public void initLocalCache() {
+        l1 = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1L << 20, l1MaxBytes))
+                .weigher((String key, L1Entry entry) -> entry.weight())
+                .expireAfterWrite(Duration.ofMillis(Math.max(1000L, l1TtlMs)))
+                .recordStats()
+                .build();
+    }
 
+    /**
+     * 启动时同步预热首页图表（只读计数，很快）；用户最近订单交给 {@link DashboardWarmupService} 在后台热
+     */
     public void warmupRequiredData() {
         long start = System.currentTimeMillis();
         List<Integer> platformIds = getPlatformIds();
         refreshHomeCharts(platformIds);
-
-        List<Integer> userIds = userMapper.listActiveUserIds();
-        for (Integer userId : userIds) {
-            if (userId != null && userId > 0) {
-                refreshRecentOrders(userId);
-            }
-        }
-        long cost = System.currentTimeMillis() - start;
-        log.info("dashboard cache warmup finished, platforms={}, users={}, costMs={}",
-                platformIds.size(), userIds.size(), cost);
+        log.info("dashboard chart warmup finished, platforms={}, costMs={}",
+                platformIds.size(), System.currentTimeMillis() - start);
     }
 
     public void refreshHomeCharts() {
         refreshHomeCharts(getPlatformIds());
     }
 
+    /**
+     * 图表由增量计数拼出，开销与订单表大小无关
+     */
     public void refreshHomeCharts(List<Integer> platformIds) {
-        List<Integer> safePlatformIds = normalizePlatformIds(platformIds);
-        writeJson(KEY_HOME_PLATFORM_IDS, safePlatformIds);
-        writeJson(KEY_HOME_BAR, fetchBarCountsFromDb(safePlatformIds));
-        writeJson(KEY_HOME_SMOOTH, safeListMap(consumeMapper.showSmoothByOriginal()));
-
-        for (Integer platformId : safePlatformIds) {
-            writeJson(lineKey(platformId), safeListMap(consumeMapper.showLineByPlatform(platformId)));
-        }
-    }
-
-    public void refreshRecentOrders(Integer userId) {
-        if (userId == null || userId <= 0) {
-            return;
-        }
-        List<HashMap<String, Object>> rows = transactionOrderMapper.selectRecentOrders(userId, 30, null);
-        saveRecentOrders(userId, rows);
+        writeHomeCharts(platformIds);
     }
 
-    public void saveRecentOrders(Integer userId, List<HashMap<String, Object>> rows) {
-        if (userId == null || userId <= 0) {
-            return;
-        }
-        writeJson(KEY_USER_RECENT_PREFIX + userId, safeListMap(rows), USER_RECENT_TTL);
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", snapshotHits.sum());
+        stats.put("builds", snapshotBuilds.sum());
+        stats.put("coalesced", snapshotCoalesced.sum());
+        stats.put("waitedForPeer", snapshotWaitedForPeer.sum());
+        stats.put("inFlight", inFlightBuilds.size());
+
+        CacheStats l1Stats = l1.stats();
+        Map<String, Object> local = new LinkedHashMap<>();
+        local.put("hits", l1Stats.hitCount());
+        local.put("misses", l1Stats.missCount());
+        local.put("hitRate", l1Stats.hitRate());
+        local.put("evictions", l1Stats.evictionCount());
+        local.put("entries", l1.estimatedSize());
+        local.put("weightBytes", l1.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+        local.put("version", l1Version.get());
+        stats.put("l1", local);
+        return stats;
     }
 
     public Map<String, Object> buildHomeSnapshot(Integer platformId, Integer userId) {
@@ -98,7 +149,7 @@ public class DashboardCacheService {
     }
 
     public List<Integer> getPlatformIds() {
-        List<Integer> cached = readJson(KEY_HOME_PLATFORM_IDS, LIST_INT);
+        List<Integer> cached = readChart(KEY_HOME_PLATFORM_IDS, LIST_INT);
         if (cached != null && !cached.isEmpty()) {
             return normalizePlatformIds(cached);
         }
@@ -110,21 +161,23 @@ public class DashboardCacheService {
     }
 
     public List<Integer> getBarCounts() {
-        List<Integer> cached = readJson(KEY_HOME_BAR, LIST_INT);
+        List<Integer> cached = readChart(KEY_HOME_BAR, LIST_INT);
         if (cached != null && !cached.isEmpty()) {
             return cached;
         }
-        List<Integer> fresh = fetchBarCountsFromDb(getPlatformIds());
+        dashboardCounterService.ensureReady();
+        List<Integer> fresh = dashboardCounterService.barCounts(getPlatformIds());
         writeJson(KEY_HOME_BAR, fresh);
         return fresh;
     }
 
     public List<HashMap<String, Object>> getSmoothRows() {
-        List<HashMap<String, Object>> cached = readJson(KEY_HOME_SMOOTH, LIST_MAP);
+        List<HashMap<String, Object>> cached = readChart(KEY_HOME_SMOOTH, LIST_MAP);
         if (cached != null) {
             return cached;
         }
-        List<HashMap<String, Object>> fresh = safeListMap(consumeMapper.showSmoothByOriginal());
+        dashboardCounterService.ensureReady();
+        List<HashMap<String, Object>> fresh = dashboardCounterService.smoothRows();
         writeJson(KEY_HOME_SMOOTH, fresh);
         return fresh;
     }
@@ -133,11 +186,12 @@ public class DashboardCacheService {
         Integer safePlatformId = normalizePlatformId(platformId, getPlatformIds());
         String key = lineKey(safePlatformId);
 
-        List<HashMap<String, Object>> cached = readJson(key, LIST_MAP);
+        List<HashMap<String, Object>> cached = readChart(key, LIST_MAP);
         if (cached != null) {
             return cached;
         }
-        List<HashMap<String, Object>> fresh = safeListMap(consumeMapper.showLineByPlatform(safePlatformId));
+        dashboardCounterService.ensureReady();
+        List<HashMap<String, Object>> fresh = dashboardCounterService.lineRows(safePlatformId);
         writeJson(key, fresh);
         return fresh;
     }
@@ -150,68 +204,270 @@ public class DashboardCacheService {
         return lineByPlatform;
     }
 
-    public List<HashMap<String, Object>> getRecentOrders(Integer userId) {
-        if (userId == null || userId <= 0) {
-            return List.of();
-        }
-        List<HashMap<String, Object>> cached = readJson(KEY_USER_RECENT_PREFIX + userId, LIST_MAP);
-        if (cached != null) {
-            return cached;
-        }
-        refreshRecentOrders(userId);
-        List<HashMap<String, Object>> fresh = readJson(KEY_USER_RECENT_PREFIX + userId, LIST_MAP);
-        return fresh == null ? List.of() : fresh;
+    public List<OrderView> getRecentOrders(Integer userId) {
+        return recentOrdersCacheService.window(userId, RecentOrdersCacheService.DEFAULT_DEPTH).rows();
     }
 
+    /**
+     * 首页快照直接由组合体拼出：各部分是缓存里的 JSON 原文（RawValue），响应时原样写出
+     */
     private Map<String, Object> buildHomePayload(Integer platformId, Integer userId, boolean includeSnapshotMeta) {
-        List<Integer> platformIds = getPlatformIds();
-        Integer safePlatformId = normalizePlatformId(platformId, platformIds);
+        Map<Object, Object> composite = loadHomeComposite();
+        Integer defaultLinePlatformId = parseInt(composite.get("linePlatformId"));
+        Integer safePlatformId = platformId != null && composite.containsKey(FIELD_LINE_PREFIX + platformId)
+                ? platformId
+                : defaultLinePlatformId;
 
         Map<String, Object> payload = new LinkedHashMap<>();
-        payload.put("platformIds", platformIds);
-        payload.put("bar", getBarCounts());
-        payload.put("smooth", getSmoothRows());
+        payload.put("platformIds", rawField(composite, "platformIds"));
+        payload.put("bar", rawField(composite, "bar"));
+        payload.put("smooth", rawField(composite, "smooth"));
         payload.put("linePlatformId", safePlatformId);
-        payload.put("line", getLineRows(safePlatformId));
-        payload.put("lineByPlatform", getAllLineRows());
+        payload.put("line", rawField(composite, FIELD_LINE_PREFIX + safePlatformId));
+        payload.put("lineByPlatform", rawField(composite, "lineByPlatform"));
         if (userId != null && userId > 0) {
             payload.put("recentOrders", getRecentOrders(userId));
         }
-        payload.put("generatedAt", Instant.now().toString());
+        payload.put("version", parseLong(composite.get("version")));
+        payload.put("generatedAt", String.valueOf(composite.get("generatedAt")));
         if (includeSnapshotMeta) {
             payload.put("source", "redis");
         }
         return payload;
     }
 
-    private List<Integer> fetchBarCountsFromDb(List<Integer> platformIds) {
-        List<Integer> fallback = new ArrayList<>(Collections.nCopies(platformIds.size(), 0));
+    /**
+     * 组合体缺失时只让一个请求去重建：本进程内并发请求共享同一个 future，
+     * 多节点之间用 Redis 锁，拿不到锁的节点等对方写完再读
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> loadHomeComposite() {
+        checkL1Version();
+        long readVersion = l1Version.get();
+        Object local = getL1(KEY_HOME_COMPOSITE, readVersion);
+        if (local != null) {
+            return (Map<Object, Object>) local;
+        }
+        Map<Object, Object> cached = redis.opsForHash().entries(KEY_HOME_COMPOSITE);
+        if (!cached.isEmpty()) {
+            snapshotHits.increment();
+            putCompositeL1(cached, readVersion);
+            return cached;
+        }
 
+        CompletableFuture<Map<Object, Object>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<Object, Object>> running = inFlightBuilds.putIfAbsent(KEY_HOME_COMPOSITE, mine);
+        if (running != null) {
+            snapshotCoalesced.increment();
+            return running.join();
+        }
         try {
-            List<String> rows = consumeMapper.showBarByPlatform();
-            if (rows == null || rows.isEmpty() || rows.getFirst() == null || rows.getFirst().isBlank()) {
-                return fallback;
+            Map<Object, Object> built = buildHomeCompositeOnce();
+            putCompositeL1(built, readVersion);
+            mine.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightBuilds.remove(KEY_HOME_COMPOSITE, mine);
+        }
+    }
+
+    private Map<Object, Object> buildHomeCompositeOnce() {
+        Map<Object, Object> cached = redis.opsForHash().entries(KEY_HOME_COMPOSITE);
+        if (!cached.isEmpty()) {
+            return cached;
+        }
+
+        String token = UUID.randomUUID().toString();
+        if (Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(KEY_HOME_COMPOSITE_LOCK, token, COMPOSITE_LOCK_TTL))) {
+            try {
+                snapshotBuilds.increment();
+                return writeHomeCharts(getPlatformIds());
+            } finally {
+                if (token.equals(redis.opsForValue().get(KEY_HOME_COMPOSITE_LOCK))) {
+                    redis.delete(KEY_HOME_COMPOSITE_LOCK);
+                }
             }
+        }
 
-            List<Integer> parsed = objectMapper.readValue(rows.getFirst(), LIST_INT);
-            if (parsed == null || parsed.isEmpty()) {
-                return fallback;
+        // 别的节点正在重建，等它写完
+        long deadline = System.currentTimeMillis() + COMPOSITE_WAIT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(COMPOSITE_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            cached = redis.opsForHash().entries(KEY_HOME_COMPOSITE);
+            if (!cached.isEmpty()) {
+                snapshotWaitedForPeer.increment();
+                return cached;
             }
+        }
+        log.warn("wait for dashboard home composite timed out, building locally");
+        snapshotBuilds.increment();
+        return writeHomeCharts(getPlatformIds());
+    }
 
-            if (parsed.size() < platformIds.size()) {
-                ArrayList<Integer> padded = new ArrayList<>(parsed);
-                while (padded.size() < platformIds.size()) {
-                    padded.add(0);
-                }
-                return padded;
+    /**
+     * 各分项 key 照旧写一份（重建 / 其它 scope 在用），同时整体替换组合体并递增版本号。
+     * 所有 key 在一个 MULTI/EXEC 里写完：一次往返，读方要么看到整套旧值、要么整套新值
+     */
+    private Map<Object, Object> writeHomeCharts(List<Integer> platformIds) {
+        List<Integer> safePlatformIds = normalizePlatformIds(platformIds);
+        dashboardCounterService.ensureReady();
+        List<Integer> bar = dashboardCounterService.barCounts(safePlatformIds);
+        List<HashMap<String, Object>> smooth = dashboardCounterService.smoothRows();
+        Map<String, List<HashMap<String, Object>>> lineByPlatform = new LinkedHashMap<>();
+        for (Integer platformId : safePlatformIds) {
+            lineByPlatform.put(String.valueOf(platformId), dashboardCounterService.lineRows(platformId));
+        }
+
+        Long version = redis.opsForValue().increment(KEY_HOME_VERSION);
+        Map<String, String> parts = new LinkedHashMap<>();
+        Map<Object, Object> composite = new LinkedHashMap<>();
+        try {
+            String platformIdsJson = objectMapper.writeValueAsString(safePlatformIds);
+            String barJson = objectMapper.writeValueAsString(bar);
+            String smoothJson = objectMapper.writeValueAsString(smooth);
+            parts.put(KEY_HOME_PLATFORM_IDS, platformIdsJson);
+            parts.put(KEY_HOME_BAR, barJson);
+            parts.put(KEY_HOME_SMOOTH, smoothJson);
+
+            composite.put("version", String.valueOf(version == null ? 0L : version));
+            composite.put("generatedAt", Instant.now().toString());
+            composite.put("linePlatformId", String.valueOf(normalizePlatformId(null, safePlatformIds)));
+            composite.put("platformIds", platformIdsJson);
+            composite.put("bar", barJson);
+            composite.put("smooth", smoothJson);
+            composite.put("lineByPlatform", objectMapper.writeValueAsString(lineByPlatform));
+            for (Map.Entry<String, List<HashMap<String, Object>>> entry : lineByPlatform.entrySet()) {
+                String lineJson = objectMapper.writeValueAsString(entry.getValue());
+                parts.put(KEY_HOME_LINE_PREFIX + entry.getKey(), lineJson);
+                composite.put(FIELD_LINE_PREFIX + entry.getKey(), lineJson);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Encode dashboard home charts failed", e);
+        }
+
+        redis.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                ops.opsForValue().multiSet(parts);
+                ops.delete(KEY_HOME_COMPOSITE);
+                ops.opsForHash().putAll(KEY_HOME_COMPOSITE, composite);
+                return ops.exec();
+            }
+        });
+
+        // 本节点刚重建，旧的 L1 全部作废；先换版本号再清空，清空之后才放进来的旧条目按版本号被拒掉
+        l1Version.set(version == null ? 0L : version);
+        l1.invalidateAll();
+        return composite;
+    }
+
+    private void putCompositeL1(Map<Object, Object> composite, long readVersion) {
+        int weight = 0;
+        for (Object value : composite.values()) {
+            weight += String.valueOf(value).length();
+        }
+        putL1(KEY_HOME_COMPOSITE, Map.copyOf(composite), weight, readVersion);
+    }
+
+    private Object getL1(String key, long currentVersion) {
+        L1Entry local = l1.getIfPresent(key);
+        if (local == null) {
+            return null;
+        }
+        if (local.version() != currentVersion) {
+            l1.asMap().remove(key, local);
+            return null;
+        }
+        return local.value();
+    }
+
+    /**
+     * readVersion 是读 Redis 之前的版本号；读的过程中本节点重建过（版本号变了）就不放，
+     * 检查和放入之间发生的重建由 getL1 的版本比较兜住
+     */
+    private void putL1(String key, Object value, int weight, long readVersion) {
+        if (l1Version.get() != readVersion) {
+            return;
+        }
+        l1.put(key, new L1Entry(value, weight, readVersion));
+    }
+
+    /**
+     * 图表类 key 先读 L1；未命中读 Redis 反序列化后放进 L1。返回值是共享对象，调用方不要修改
+     */
+    private <T> T readChart(String key, TypeReference<T> typeReference) {
+        checkL1Version();
+        long readVersion = l1Version.get();
+        Object local = getL1(key, readVersion);
+        if (local != null) {
+            @SuppressWarnings("unchecked")
+            T value = (T) local;
+            return value;
+        }
+        try {
+            String raw = redis.opsForValue().get(key);
+            if (raw == null || raw.isBlank()) {
+                return null;
             }
-            if (parsed.size() > platformIds.size()) {
-                return new ArrayList<>(parsed.subList(0, platformIds.size()));
+            T value = immutable(objectMapper.readValue(raw, typeReference));
+            putL1(key, value, raw.length(), readVersion);
+            return value;
+        } catch (Exception e) {
+            log.warn("read redis key={} failed", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 每隔 l1VersionCheckMs 最多一个线程去读一次 Redis 版本号，变了就清空 L1
+     */
+    private void checkL1Version() {
+        long now = System.currentTimeMillis();
+        long checkedAt = l1VersionCheckedAt.get();
+        if (now - checkedAt < l1VersionCheckMs || !l1VersionCheckedAt.compareAndSet(checkedAt, now)) {
+            return;
+        }
+        try {
+            String raw = redis.opsForValue().get(KEY_HOME_VERSION);
+            long version = raw == null ? 0L : Long.parseLong(raw);
+            long previous = l1Version.getAndSet(version);
+            if (previous != version) {
+                l1.invalidateAll();
             }
-            return parsed;
         } catch (Exception e) {
-            log.warn("load bar chart from db failed", e);
-            return fallback;
+            log.warn("check dashboard L1 version failed", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T immutable(T value) {
+        if (value instanceof List<?> list) {
+            return (T) Collections.unmodifiableList(list);
+        }
+        return value;
+    }
+
+    private RawValue rawField(Map<Object, Object> composite, String field) {
+        Object raw = composite.get(field);
+        return new RawValue(raw == null ? "[]" : String.valueOf(raw));
+    }
+
+    private long parseLong(Object raw) {
+        try {
+            return raw == null ? 0L : Long.parseLong(String.valueOf(raw));
+        } catch (Exception ignored) {
+            return 0L;
         }
     }
 
@@ -287,19 +543,6 @@ public class DashboardCacheService {
         return new ArrayList<>(List.of(1, 2, 3, 4, 5));
     }
 
-    private <T> T readJson(String key, TypeReference<T> typeReference) {
-        try {
-            String raw = redis.opsForValue().get(key);
-            if (raw == null || raw.isBlank()) {
-                return null;
-            }
-            return objectMapper.readValue(raw, typeReference);
-        } catch (Exception e) {
-            log.warn("read redis key={} failed", key, e);
-            return null;
-        }
-    }
-
     private void writeJson(String key, Object value) {
         writeJson(key, value, null);
     }
@@ -317,17 +560,6 @@ public class DashboardCacheService {
         }
     }
 
-    private List<HashMap<String, Object>> safeListMap(List<? extends Map<String, Object>> raw) {
-        if (raw == null || raw.isEmpty()) {
-            return List.of();
-        }
-        ArrayList<HashMap<String, Object>> list = new ArrayList<>(raw.size());
-        for (Map<String, Object> item : raw) {
-            list.add(item == null ? new HashMap<>() : new HashMap<>(item));
-        }
-        return list;
-    }
-
     private String lineKey(Integer platformId) {
         return KEY_HOME_LINE_PREFIX + platformId;
     }
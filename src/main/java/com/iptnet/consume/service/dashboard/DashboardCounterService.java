@@ -0,0 +1,437 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.iptnet.consume.dto.OrderTransitionEvent;
+import com.iptnet.consume.mapper.DashBoardMapper;
+import com.iptnet.consume.mapper.PlatformDataMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 看板增量计数：订单每次状态流转只对平台 / 省份 / (平台, 品类) 三组 Redis hash 做 ±1，
+ * 图表直接由计数拼出来，不再扫 consumption_order。
+ *
+ * <p>用户被禁用、绕过订单服务写库等情况计数会漂移，由 {@link #reconcile()} 定期按全表结果覆盖。</p>
+ *
+ * <p>对账期间 {@link #KEY_REBUILD} 标记存在，增量除了照常写计数，还会记进 {@link #KEY_PENDING}；
+ * 换 key 时在同一个 Lua 里 RENAME 并重放这段时间的增量，GROUP BY 快照到换 key 之间的流转不会丢。
+ * 所有 key 带同一个 hash tag，集群下落在同一个 slot。</p>
+ *
+ * <p>增量是事务提交后（AFTER_COMMIT）才写的，提交和写 Redis 之间有空档：一笔在标记之前已经提交、
+ * 已被快照数到，但增量在标记之后才到的流转，会被 pending 重放再算一次，计数偏多。这类重复只会出现在
+ * 标记前后很短的窗口里，不在这里消除，靠下一轮定期对账覆盖。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardCounterService {
+
+    private static final String KEY_PLATFORM = "dash:v4:{cnt}:platform";
+    private static final String KEY_PROVINCE = "dash:v4:{cnt}:province";
+    private static final String KEY_CATEGORY_PREFIX = "dash:v4:{cnt}:category:";
+    private static final String KEY_READY = "dash:v4:{cnt}:ready";
+    private static final String KEY_REBUILD = "dash:v4:{cnt}:rebuild";
+    private static final String KEY_PENDING = "dash:v4:{cnt}:pending";
+    private static final String TMP_SUFFIX = ":rebuild";
+    private static final String PENDING_SEP = "|";
+
+    private static final Duration REBUILD_TTL = Duration.ofMinutes(5);
+
+    /**
+     * KEYS[1]=rebuild 标记, KEYS[2]=pending, KEYS[3..]=计数 key；ARGV 按 (KEYS 下标, field, delta) 三个一组
+     */
+    private static final DefaultRedisScript<Long> APPLY_SCRIPT = new DefaultRedisScript<>("""
+            local rebuilding = redis.call('EXISTS', KEYS[1]) == 1
+            for i = 1, #ARGV, 3 do
+              local key = KEYS[tonumber(ARGV[i])]
+              redis.call('HINCRBY', key, ARGV[i + 1], ARGV[i + 2])
+              if rebuilding then
+                redis.call('HINCRBY', KEYS[2], key .. '|' .. ARGV[i + 1], ARGV[i + 2])
+              end
+            end
+            return 1
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> BEGIN_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+              redis.call('DEL', KEYS[2])
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS[1]=rebuild 标记, KEYS[2]=pending, KEYS[3]=ready, KEYS[4..]=计数 key；
+     * 临时 key 存在就 RENAME 覆盖，不存在说明该维度没有数据直接删掉，随后重放 pending
+     */
+    private static final DefaultRedisScript<Long> SWAP_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end
+            for i = 4, #KEYS do
+              local tmp = KEYS[i] .. ARGV[2]
+              if redis.call('EXISTS', tmp) == 1 then
+                redis.call('RENAME', tmp, KEYS[i])
+              else
+                redis.call('DEL', KEYS[i])
+              end
+            end
+            local pending = redis.call('HGETALL', KEYS[2])
+            for i = 1, #pending, 2 do
+              local sep = string.find(pending[i], ARGV[3], 1, true)
+              if sep then
+                redis.call('HINCRBY', string.sub(pending[i], 1, sep - 1), string.sub(pending[i], sep + 1), pending[i + 1])
+              end
+            end
+            redis.call('DEL', KEYS[2], KEYS[1])
+            redis.call('SET', KEYS[3], ARGV[4])
+            return 1
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> ABORT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              redis.call('DEL', KEYS[1], KEYS[2])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final DashBoardMapper dashBoardMapper;
+    private final PlatformDataMapper platformDataMapper;
+
+    private final Map<Integer, ProductDimension> productDimensions = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> cityProvinces = new ConcurrentHashMap<>();
+    private volatile Map<Integer, String> provinceNames = Map.of();
+    private volatile Map<Integer, String> platformNames = Map.of();
+
+    private record ProductDimension(int platformId, String category) {}
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderTransition(OrderTransitionEvent event) {
+        if (event == null || event.transitions() == null || event.transitions().isEmpty()) {
+            return;
+        }
+        try {
+            apply(event.transitions());
+        } catch (Exception e) {
+            // 订单已经提交，这里不能往外抛；清掉就绪标记，下次刷新图表前先全量对账
+            redis.delete(KEY_READY);
+            log.warn("apply dashboard counter delta failed, reason={}, transitions={}",
+                    event.reason(), event.transitions().size(), e);
+        }
+    }
+
+    /**
+     * 计数未初始化（首次启动 / 增量写失败）时先做一次全量对账；
+     * 本进程内靠锁内二次检查，跨实例靠 rebuild 标记，别的实例正在对账时直接读现有计数
+     */
+    public void ensureReady() {
+        if (isReady()) {
+            return;
+        }
+        synchronized (this) {
+            // 排队等锁的线程进来时前一个可能已经对账完了，不再重复扫表
+            if (!isReady()) {
+                reconcile();
+            }
+        }
+    }
+
+    /**
+     * @return 是否真正完成了对账；别的实例正在对账、或者本次超时丢了标记时返回 false
+     */
+    public synchronized boolean reconcile() {
+        long start = System.currentTimeMillis();
+        String token = UUID.randomUUID().toString();
+        Long begun = redis.execute(BEGIN_SCRIPT, List.of(KEY_REBUILD, KEY_PENDING),
+                token, String.valueOf(REBUILD_TTL.toMillis()));
+        if (begun == null || begun != 1L) {
+            log.info("dashboard counters reconcile skipped, another instance is rebuilding");
+            return false;
+        }
+
+        boolean swapped = false;
+        List<String> keys = new ArrayList<>();
+        try {
+            swapped = rebuild(token, keys);
+        } finally {
+            if (!swapped) {
+                redis.execute(ABORT_SCRIPT, List.of(KEY_REBUILD, KEY_PENDING), token);
+                List<String> tmpKeys = keys.stream().map(key -> key + TMP_SUFFIX).toList();
+                if (!tmpKeys.isEmpty()) {
+                    redis.delete(tmpKeys);
+                }
+            }
+        }
+        if (!swapped) {
+            log.warn("dashboard counters reconcile lost rebuild marker, costMs={}", System.currentTimeMillis() - start);
+            return false;
+        }
+
+        // 维度缓存顺带刷新，商品换品类 / 换平台后以这里为准
+        productDimensions.clear();
+        cityProvinces.clear();
+        provinceNames = Map.of();
+        platformNames = Map.of();
+
+        log.info("dashboard counters reconciled, keys={}, costMs={}", keys.size(), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * 快照必须在 rebuild 标记之后取：标记之前落到 Redis 的增量都已包含在快照里，之后的都进了 pending。
+     * 反过来不成立：标记之后才到的增量可能对应快照已经数到的提交，重放后会多算，见类注释
+     */
+    private boolean rebuild(String token, List<String> keys) {
+        Map<String, String> platformCounts = new HashMap<>();
+        for (HashMap<String, Object> row : dashBoardMapper.countOrdersByPlatform()) {
+            platformCounts.put(String.valueOf(row.get("platform_id")), String.valueOf(row.get("cnt")));
+        }
+
+        Map<String, String> provinceCounts = new HashMap<>();
+        for (HashMap<String, Object> row : dashBoardMapper.countOrdersByProvince()) {
+            provinceCounts.put(String.valueOf(row.get("province_id")), String.valueOf(row.get("cnt")));
+        }
+
+        Map<Integer, Map<String, String>> categoryCounts = new HashMap<>();
+        for (HashMap<String, Object> row : dashBoardMapper.countOrdersByPlatformCategory()) {
+            Integer platformId = parseInt(row.get("platform_id"));
+            if (platformId == null) continue;
+            categoryCounts.computeIfAbsent(platformId, k -> new HashMap<>())
+                    .put(String.valueOf(row.get("category")), String.valueOf(row.get("cnt")));
+        }
+
+        writeTmp(keys, KEY_PLATFORM, platformCounts);
+        writeTmp(keys, KEY_PROVINCE, provinceCounts);
+        Set<Integer> platformIds = new HashSet<>(categoryCounts.keySet());
+        platformIds.addAll(platformDataMapper.platformIds());
+        for (Integer platformId : platformIds) {
+            writeTmp(keys, categoryKey(platformId), categoryCounts.getOrDefault(platformId, Map.of()));
+        }
+
+        List<String> swapKeys = new ArrayList<>(keys.size() + 3);
+        swapKeys.add(KEY_REBUILD);
+        swapKeys.add(KEY_PENDING);
+        swapKeys.add(KEY_READY);
+        swapKeys.addAll(keys);
+        Long swapped = redis.execute(SWAP_SCRIPT, swapKeys,
+                token, TMP_SUFFIX, PENDING_SEP, String.valueOf(System.currentTimeMillis()));
+        return swapped != null && swapped == 1L;
+    }
+
+    private boolean isReady() {
+        return Boolean.TRUE.equals(redis.hasKey(KEY_READY));
+    }
+
+    public List<Integer> barCounts(List<Integer> platformIds) {
+        Map<Object, Object> counts = redis.opsForHash().entries(KEY_PLATFORM);
+        List<Integer> bar = new ArrayList<>(platformIds.size());
+        for (Integer platformId : platformIds) {
+            bar.add(Math.max(0, parseCount(counts.get(String.valueOf(platformId)))));
+        }
+        return bar;
+    }
+
+    public List<HashMap<String, Object>> smoothRows() {
+        Map<Integer, String> names = provinceNames();
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : redis.opsForHash().entries(KEY_PROVINCE).entrySet()) {
+            Integer provinceId = parseInt(entry.getKey());
+            int total = parseCount(entry.getValue());
+            if (provinceId == null || total <= 0) continue;
+
+            HashMap<String, Object> row = new HashMap<>();
+            row.put("province_id", provinceId);
+            row.put("province_name", names.getOrDefault(provinceId, ""));
+            row.put("order_total", total);
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparingInt((HashMap<String, Object> row) -> (Integer) row.get("order_total")).reversed());
+        return rows;
+    }
+
+    public List<HashMap<String, Object>> lineRows(Integer platformId) {
+        String platformName = platformNames().getOrDefault(platformId, "");
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : redis.opsForHash().entries(categoryKey(platformId)).entrySet()) {
+            int cnt = parseCount(entry.getValue());
+            if (cnt <= 0) continue;
+
+            HashMap<String, Object> row = new HashMap<>();
+            row.put("id", platformId);
+            row.put("platform_name", platformName);
+            row.put("category", String.valueOf(entry.getKey()));
+            row.put("cnt", cnt);
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparingInt((HashMap<String, Object> row) -> (Integer) row.get("cnt")).reversed());
+        return rows;
+    }
+
+    private void apply(List<OrderTransitionEvent.Transition> transitions) {
+        Map<String, Map<String, Long>> deltas = new LinkedHashMap<>();
+        for (OrderTransitionEvent.Transition transition : transitions) {
+            int delta = transition.countDelta();
+            if (delta == 0) continue;
+
+            ProductDimension product = productDimension(transition.productId());
+            if (product != null) {
+                addDelta(deltas, KEY_PLATFORM, String.valueOf(product.platformId()), delta);
+                addDelta(deltas, categoryKey(product.platformId()), product.category(), delta);
+            }
+            Integer provinceId = cityProvince(transition.cityId());
+            if (provinceId != null) {
+                addDelta(deltas, KEY_PROVINCE, String.valueOf(provinceId), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(deltas.size() + 2);
+        keys.add(KEY_REBUILD);
+        keys.add(KEY_PENDING);
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Long>> keyEntry : deltas.entrySet()) {
+            keys.add(keyEntry.getKey());
+            String keyIndex = String.valueOf(keys.size());
+            for (Map.Entry<String, Long> fieldEntry : keyEntry.getValue().entrySet()) {
+                if (fieldEntry.getValue() != 0L) {
+                    args.add(keyIndex);
+                    args.add(fieldEntry.getKey());
+                    args.add(String.valueOf(fieldEntry.getValue()));
+                }
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        redis.execute(APPLY_SCRIPT, keys, args.toArray());
+    }
+
+    private void addDelta(Map<String, Map<String, Long>> deltas, String key, String field, int delta) {
+        deltas.computeIfAbsent(key, k -> new HashMap<>()).merge(field, (long) delta, Long::sum);
+    }
+
+    private ProductDimension productDimension(Integer productId) {
+        if (productId == null || productId <= 0) {
+            return null;
+        }
+        ProductDimension cached = productDimensions.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        HashMap<String, Object> row = dashBoardMapper.selectProductDimension(productId);
+        Integer platformId = row == null ? null : parseInt(row.get("platform_id"));
+        if (platformId == null) {
+            return null;
+        }
+        ProductDimension dimension = new ProductDimension(platformId, String.valueOf(row.get("category")));
+        productDimensions.put(productId, dimension);
+        return dimension;
+    }
+
+    private Integer cityProvince(Integer cityId) {
+        if (cityId == null || cityId <= 0) {
+            return null;
+        }
+        Integer cached = cityProvinces.get(cityId);
+        if (cached != null) {
+            return cached;
+        }
+        Integer provinceId = dashBoardMapper.selectCityProvinceId(cityId);
+        if (provinceId != null) {
+            cityProvinces.put(cityId, provinceId);
+        }
+        return provinceId;
+    }
+
+    private Map<Integer, String> provinceNames() {
+        Map<Integer, String> names = provinceNames;
+        if (names.isEmpty()) {
+            names = loadNames(dashBoardMapper.selectProvinceNames());
+            provinceNames = names;
+        }
+        return names;
+    }
+
+    private Map<Integer, String> platformNames() {
+        Map<Integer, String> names = platformNames;
+        if (names.isEmpty()) {
+            names = loadNames(platformDataMapper.platformList());
+            platformNames = names;
+        }
+        return names;
+    }
+
+    private Map<Integer, String> loadNames(List<HashMap<String, Object>> rows) {
+        Map<Integer, String> names = new HashMap<>();
+        if (rows == null) {
+            return names;
+        }
+        for (HashMap<String, Object> row : rows) {
+            Integer id = parseInt(row.get("id"));
+            if (id != null) {
+                names.put(id, String.valueOf(row.getOrDefault("name", "")));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 先写临时 key，最后由 SWAP_SCRIPT 统一换上去，读方不会看到写了一半的 hash
+     */
+    private void writeTmp(List<String> keys, String key, Map<String, String> values) {
+        keys.add(key);
+        String tmpKey = key + TMP_SUFFIX;
+        redis.delete(tmpKey);
+        if (!values.isEmpty()) {
+            redis.opsForHash().putAll(tmpKey, values);
+        }
+    }
+
+    private String categoryKey(Integer platformId) {
+        return KEY_CATEGORY_PREFIX + platformId;
+    }
+
+    private int parseCount(Object raw) {
+        if (raw == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(raw));
+        } catch (Exception ignored) {
+            return 0;
+        }
+    }
+
+    private Integer parseInt(Object raw) {
+        if (raw == null) {
+            return null;
+        }
+        if (raw instanceof Number num) {
+            int v = num.intValue();
+            return v > 0 ? v : null;
+        }
+        try {
+            int v = Integer.parseInt(String.valueOf(raw));
+            return v > 0 ? v : null;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.iptnet.consume.dao.DashboardEvent;
+
+/**
+ * 看板事件总线：负责分配 cursor，并把事件送到每个节点的回放缓存和 SSE 连接上。
+ *
+ * <p>单机用 {@link LocalDashboardEventBus}；多节点部署用 {@link RedisDashboardEventBus}，
+ * cursor 由 Redis 全局递增，事件经 pub/sub 广播到所有节点，各节点各自维护回放缓存。</p>
+ */
+public interface DashboardEventBus {
+
+    DashboardEvent publish(String topic, String op, Object payload);
+}
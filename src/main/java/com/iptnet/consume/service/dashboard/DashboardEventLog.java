@@ -0,0 +1,314 @@
+package com.iptnet.consume.service.dashboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 看板事件的追加日志：按段（segment）写 mmap 文件，重启后 cursor 接着上次继续，/delta 还能回放重启前的事件。
+ *
+ * <p>段文件名是段内第一条事件的 cursor（20 位补零），每条记录为
+ * {@code [int 长度][long cursor][long 写入时间毫秒][事件 JSON]}。长度字段最后写，
+ * 进程中途挂掉只会留下长度为 0 的尾巴，启动扫描到 0 即认为段结束。</p>
+ *
+ * <p>段索引在内存里：段按起始 cursor 放在 TreeMap，段内每 {@link #INDEX_INTERVAL} 条记一个稀疏位置。
+ * 保留策略按时间和总字节数，只删整段，当前写入段不删。</p>
+ *
+ * <p>启动扫描时记下最后一处 cursor 断档（{@link #gapFloor()}），运行期没收到的事件重启后仍然按缺口处理。</p>
+ */
+public class DashboardEventLog implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DashboardEventLog.class);
+
+    private static final String SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 4 + 8 + 8;
+    private static final int INDEX_INTERVAL = 64;
+    private static final long RETENTION_CHECK_MS = 60_000L;
+
+    /** 回放时每条记录的回调 */
+    public interface RecordSink {
+        void accept(long cursor, byte[] json);
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final TreeMap<Long, Integer> sparseIndex = new TreeMap<>(); // cursor -> 记录起始位置
+        private int writePos;
+        private int records;
+        private long lastCursor;
+        private long lastWriteMs;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private long sizeBytes() {
+            return buffer.capacity();
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long retentionMs;
+    private final long maxTotalBytes;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private long lastRetentionCheckMs;
+    private long gapFloor;
+
+    public DashboardEventLog(Path dir, int segmentBytes, long retentionMs, long maxTotalBytes) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(1 << 20, segmentBytes);
+        this.retentionMs = retentionMs;
+        this.maxTotalBytes = maxTotalBytes;
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Open dashboard event log failed, dir=" + dir, e);
+        }
+        applyRetention(System.currentTimeMillis());
+    }
+
+    public synchronized void append(long cursor, byte[] json) {
+        int recordBytes = HEADER_BYTES + json.length;
+        if (recordBytes > segmentBytes) {
+            log.warn("dashboard event too large for log segment, cursor={}, bytes={}", cursor, json.length);
+            return;
+        }
+        if (active != null && cursor <= active.lastCursor) {
+            log.warn("dashboard event log cursor out of order, cursor={}, last={}", cursor, active.lastCursor);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (active == null || active.writePos + recordBytes > active.buffer.capacity()) {
+            roll(cursor);
+        }
+
+        Segment seg = active;
+        int pos = seg.writePos;
+        seg.buffer.putLong(pos + 4, cursor);
+        seg.buffer.putLong(pos + 12, now);
+        seg.buffer.put(pos + HEADER_BYTES, json);
+        seg.buffer.putInt(pos, json.length);
+
+        if (seg.records % INDEX_INTERVAL == 0) {
+            seg.sparseIndex.put(cursor, pos);
+        }
+        seg.writePos = pos + recordBytes;
+        seg.records += 1;
+        seg.lastCursor = cursor;
+        seg.lastWriteMs = now;
+
+        if (now - lastRetentionCheckMs >= RETENTION_CHECK_MS) {
+            applyRetention(now);
+        }
+    }
+
+    /**
+     * 读取 cursor > sinceCursor 的事件，最多 limit 条
+     */
+    public synchronized List<byte[]> readAfter(long sinceCursor, int limit) {
+        List<byte[]> res = new ArrayList<>();
+        Long startKey = segments.floorKey(sinceCursor + 1);
+        Map<Long, Segment> tail = startKey == null ? segments : segments.tailMap(startKey, true);
+        for (Segment seg : tail.values()) {
+            if (seg.lastCursor <= sinceCursor) {
+                continue;
+            }
+            Map.Entry<Long, Integer> hint = seg.sparseIndex.floorEntry(sinceCursor + 1);
+            int pos = hint == null ? 0 : hint.getValue();
+            while (pos < seg.writePos && res.size() < limit) {
+                int length = seg.buffer.getInt(pos);
+                long cursor = seg.buffer.getLong(pos + 4);
+                if (cursor > sinceCursor) {
+                    byte[] json = new byte[length];
+                    seg.buffer.get(pos + HEADER_BYTES, json);
+                    res.add(json);
+                }
+                pos += HEADER_BYTES + length;
+            }
+            if (res.size() >= limit) {
+                break;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 从最后 maxRecords 条左右开始按顺序回放，用于启动时把尾部装回内存环形缓存
+     */
+    public synchronized void replayTail(int maxRecords, RecordSink sink) {
+        List<Segment> from = new ArrayList<>();
+        int counted = 0;
+        for (Segment seg : segments.descendingMap().values()) {
+            from.add(0, seg);
+            counted += seg.records;
+            if (counted >= maxRecords) {
+                break;
+            }
+        }
+        for (Segment seg : from) {
+            int pos = 0;
+            while (pos < seg.writePos) {
+                int length = seg.buffer.getInt(pos);
+                byte[] json = new byte[length];
+                seg.buffer.get(pos + HEADER_BYTES, json);
+                sink.accept(seg.buffer.getLong(pos + 4), json);
+                pos += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    public synchronized long lastCursor() {
+        return active == null ? 0L : active.lastCursor;
+    }
+
+    public synchronized long oldestCursor() {
+        return segments.isEmpty() ? 0L : segments.firstKey();
+    }
+
+    /** 启动扫描发现的最后一个缺失 cursor，没有断档为 0 */
+    public synchronized long gapFloor() {
+        return gapFloor;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long totalBytes = 0;
+        long records = 0;
+        for (Segment seg : segments.values()) {
+            totalBytes += seg.sizeBytes();
+            records += seg.records;
+        }
+        return Map.of(
+                "segments", segments.size(),
+                "records", records,
+                "bytes", totalBytes,
+                "oldestCursor", oldestCursor(),
+                "lastCursor", lastCursor()
+        );
+    }
+
+    @Override
+    public synchronized void close() {
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            long baseCursor;
+            try {
+                String name = file.getFileName().toString();
+                baseCursor = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                log.warn("skip unknown file in dashboard event log dir, file={}", file);
+                continue;
+            }
+            Segment seg = new Segment(file, map(file, Files.size(file)));
+            scan(seg, active == null ? 0L : active.lastCursor);
+            if (seg.records == 0) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            segments.put(baseCursor, seg);
+            active = seg;
+        }
+        log.info("dashboard event log loaded, dir={}, segments={}, lastCursor={}, gapFloor={}",
+                dir, segments.size(), lastCursor(), gapFloor);
+    }
+
+    /** 启动时顺序扫描一个段，恢复写入位置、最后 cursor 和稀疏索引；previous 是上一段的最后 cursor */
+    private void scan(Segment seg, long previous) {
+        int pos = 0;
+        long last = previous;
+        int capacity = seg.buffer.capacity();
+        while (pos + HEADER_BYTES <= capacity) {
+            int length = seg.buffer.getInt(pos);
+            if (length <= 0 || pos + HEADER_BYTES + length > capacity) {
+                break;
+            }
+            long cursor = seg.buffer.getLong(pos + 4);
+            if (last > 0 && cursor > last + 1) {
+                gapFloor = cursor - 1;
+            }
+            last = cursor;
+            if (seg.records % INDEX_INTERVAL == 0) {
+                seg.sparseIndex.put(cursor, pos);
+            }
+            seg.records += 1;
+            seg.lastCursor = cursor;
+            seg.lastWriteMs = seg.buffer.getLong(pos + 12);
+            pos += HEADER_BYTES + length;
+        }
+        seg.writePos = pos;
+    }
+
+    private void roll(long baseCursor) {
+        if (active != null) {
+            active.buffer.force();
+        }
+        Path file = dir.resolve(String.format("%020d%s", baseCursor, SUFFIX));
+        try {
+            Segment seg = new Segment(file, map(file, segmentBytes));
+            segments.put(baseCursor, seg);
+            active = seg;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Create dashboard event log segment failed, file=" + file, e);
+        }
+    }
+
+    private MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void applyRetention(long now) {
+        lastRetentionCheckMs = now;
+        long totalBytes = 0;
+        for (Segment seg : segments.values()) {
+            totalBytes += seg.sizeBytes();
+        }
+        Iterator<Segment> it = segments.values().iterator();
+        while (it.hasNext()) {
+            Segment seg = it.next();
+            if (seg == active) {
+                break;
+            }
+            boolean expired = retentionMs > 0 && now - seg.lastWriteMs > retentionMs;
+            boolean overSize = maxTotalBytes > 0 && totalBytes > maxTotalBytes;
+            if (!expired && !overSize) {
+                break;
+            }
+            it.remove();
+            totalBytes -= seg.sizeBytes();
+            try {
+                Files.deleteIfExists(seg.path);
+            } catch (IOException e) {
+                log.warn("delete dashboard event log segment failed, file={}", seg.path, e);
+            }
+        }
+    }
+}
@@ -8,14 +8,9 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class DashboardEventPublisher {
 
-    private final DashboardEventStore eventStore;
-    private final DashboardStreamService streamService;
+    private final DashboardEventBus eventBus;
 
     public DashboardEvent publishPatch(String topic, String op, Object payload) {
-        long cursor = eventStore.nextCursor();
-        DashboardEvent event = DashboardEvent.patch(cursor, topic, op, payload);
-        eventStore.append(event);
-        streamService.publish(event);
-        return event;
+        return eventBus.publish(topic, op, payload);
     }
 }
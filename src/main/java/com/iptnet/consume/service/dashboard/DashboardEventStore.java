@@ -1,21 +1,65 @@
 package com.iptnet.consume.service.dashboard;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iptnet.consume.dao.DashboardEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
-public class DashboardEventStore {
+/**
+ * 定长环形事件缓存：只保存事件序列化后的字节，不再持有 payload 对象图。
+ *
+ * <p>元数据（cursor / 偏移 / 长度）放在定长数组里，事件字节写进一块环形字节区（可选堆外）。
+ * 追加、淘汰都是 O(1)，按 cursor 回放用二分查找。cursor 必须单调递增追加，由
+ * {@link DashboardEventBus} 的实现保证。</p>
+ *
+ * <p>配置了 {@link DashboardEventLog} 时每条事件同时落盘：启动时 cursor 从日志最后一条继续、
+ * 尾部装回环形缓存；比环形缓存更早的 cursor 从日志里回放。</p>
+ *
+ * <p>集群模式下订阅断开会丢事件，丢掉的最后一个 cursor 记作 gapFloor（日志启动扫描时也会按 cursor 断档恢复），
+ * {@link #oldestCursor()} 不会早于它，since 落在缺口之前的回放请求只能重新拉快照。</p>
+ */
+public class DashboardEventStore implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DashboardEventStore.class);
 
     private final AtomicLong cursorGen = new AtomicLong(1740000000000L); // 你也可以从当前时间毫秒起
-    private final NavigableMap<Long, DashboardEvent> store = new ConcurrentSkipListMap<>();
+    private final ObjectMapper objectMapper;
+    private final DashboardEventLog eventLog; // 可为空：只在内存里保留
+
     private final int maxKeep; // 最大保留事件数
+    private final long[] cursors;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final ByteBuffer data;
+
+    private int head;      // 最旧事件的槽位
+    private int size;
+    private int writePos;  // 字节区下一次写入的位置
+    private long gapFloor; // 不大于它的 cursor 有缺失，不能据此回放
+
+    public DashboardEventStore(int maxKeep, int maxBytes, boolean offHeap, ObjectMapper objectMapper) {
+        this(maxKeep, maxBytes, offHeap, objectMapper, null);
+    }
 
-    public DashboardEventStore(int maxKeep) {
+    public DashboardEventStore(int maxKeep, int maxBytes, boolean offHeap, ObjectMapper objectMapper,
+                               DashboardEventLog eventLog) {
         this.maxKeep = Math.max(1000, maxKeep);
+        this.objectMapper = objectMapper;
+        this.cursors = new long[this.maxKeep];
+        this.offsets = new int[this.maxKeep];
+        this.lengths = new int[this.maxKeep];
+        int capacity = Math.max(1 << 20, maxBytes);
+        this.data = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        this.eventLog = eventLog;
+        if (eventLog != null) {
+            restore(eventLog);
+        }
     }
 
     public long nextCursor() {
@@ -26,32 +70,188 @@ public class DashboardEventStore {
         return cursorGen.get();
     }
 
-    public DashboardEvent append(DashboardEvent evt) {
-        store.put(evt.cursor(), evt);
-        trimIfNeeded();
-        return evt;
+    /**
+     * @param json 已序列化好的事件，发布方可以把同一份字节同时交给 SSE 推送
+     */
+    public synchronized void append(long cursor, byte[] json) {
+        // 集群模式下 cursor 由全局序列分配，本地序列只跟随到最新值
+        cursorGen.accumulateAndGet(cursor, Math::max);
+        if (eventLog != null) {
+            try {
+                eventLog.append(cursor, json);
+            } catch (Exception e) {
+                // 落盘失败不影响实时推送，只是重启后这段回放不出来
+                log.warn("write dashboard event log failed, cursor={}", cursor, e);
+            }
+        }
+        appendToRing(cursor, json);
+    }
+
+    private void appendToRing(long cursor, byte[] json) {
+        int length = json.length;
+        if (length > data.capacity()) {
+            log.warn("dashboard event too large to keep, cursor={}, bytes={}", cursor, length);
+            return;
+        }
+        if (size > 0 && cursor <= cursors[slot(size - 1)]) {
+            log.warn("dashboard event cursor out of order, cursor={}, last={}", cursor, cursors[slot(size - 1)]);
+            return;
+        }
+
+        // 尾部放不下就从头写，尾部剩余的字节直接浪费掉
+        int start = writePos + length <= data.capacity() ? writePos : 0;
+        int end = start + length;
+        if (start == 0 && writePos > 0) {
+            // 绕回开头：writePos 之后的都是上一圈留下的最旧事件，先整段淘汰，
+            // 否则最旧事件不和 [0, end) 重叠，下面的循环会直接停下，把这一圈开头还活着的事件覆盖掉
+            while (size > 0 && offsets[head] >= writePos) {
+                evictOldest();
+            }
+        }
+        while (size > 0 && (size == maxKeep || overlapsOldest(start, end))) {
+            evictOldest();
+        }
+
+        ByteBuffer view = data.duplicate();
+        view.position(start);
+        view.put(json);
+
+        int slot = slot(size);
+        cursors[slot] = cursor;
+        offsets[slot] = start;
+        lengths[slot] = length;
+        size += 1;
+        writePos = end;
+    }
+
+    /**
+     * 记录 (…, lastMissing] 之间有事件没收到，早于它的 cursor 不再能完整回放
+     */
+    public synchronized void markGap(long lastMissing) {
+        if (lastMissing > gapFloor) {
+            gapFloor = lastMissing;
+        }
+    }
+
+    /**
+     * since 之后的事件是否都还在（环形缓存或日志里），否则调用方应让客户端重新拉快照
+     */
+    public synchronized boolean canReplayAfter(long sinceCursor) {
+        return sinceCursor <= currentCursor() && sinceCursor >= oldestCursor() - 1;
     }
 
     public List<DashboardEvent> readAfter(long sinceCursor, int limit) {
         int realLimit = Math.min(Math.max(limit, 1), 2000);
-        List<DashboardEvent> res = new ArrayList<>(realLimit);
-        for (var e : store.tailMap(sinceCursor + 1, true).entrySet()) {
-            res.add(e.getValue());
-            if (res.size() >= realLimit) break;
+        List<byte[]> raw = new ArrayList<>();
+        synchronized (this) {
+            if (eventLog != null && (size == 0 || sinceCursor < cursors[head] - 1)) {
+                // 比环形缓存还早（或重启后还没装回来）的部分从日志读
+                raw = eventLog.readAfter(sinceCursor, realLimit);
+            }
+        }
+        if (raw.isEmpty()) {
+            raw = readRing(sinceCursor, realLimit);
+        }
+
+        // 反序列化放到锁外做，不挡住追加
+        List<DashboardEvent> res = new ArrayList<>(raw.size());
+        for (byte[] bytes : raw) {
+            try {
+                res.add(objectMapper.readValue(bytes, DashboardEvent.class));
+            } catch (Exception e) {
+                log.warn("decode dashboard event failed, bytes={}", bytes.length, e);
+            }
         }
         return res;
     }
 
-    public long oldestCursor() {
-        var first = store.firstEntry();
-        return first == null ? currentCursor() : first.getKey();
+    private List<byte[]> readRing(long sinceCursor, int realLimit) {
+        List<byte[]> raw = new ArrayList<>();
+        synchronized (this) {
+            int from = firstIndexAfter(sinceCursor);
+            for (int i = from; i < size && raw.size() < realLimit; i++) {
+                int slot = slot(i);
+                byte[] copy = new byte[lengths[slot]];
+                data.get(offsets[slot], copy);
+                raw.add(copy);
+            }
+        }
+        return raw;
+    }
+
+    public synchronized long oldestCursor() {
+        long oldest;
+        if (eventLog != null && eventLog.oldestCursor() > 0) {
+            oldest = eventLog.oldestCursor();
+        } else {
+            oldest = size == 0 ? currentCursor() : cursors[head];
+        }
+        return Math.max(oldest, gapFloor + 1);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("events", size);
+        stats.put("maxEvents", maxKeep);
+        stats.put("bytes", data.capacity());
+        stats.put("oldestCursor", size == 0 ? currentCursor() : cursors[head]);
+        stats.put("currentCursor", currentCursor());
+        stats.put("gapFloor", gapFloor);
+        if (eventLog != null) {
+            stats.put("log", eventLog.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (eventLog != null) {
+            eventLog.close();
+        }
+    }
+
+    private void restore(DashboardEventLog eventLog) {
+        long lastCursor = eventLog.lastCursor();
+        if (lastCursor > cursorGen.get()) {
+            cursorGen.set(lastCursor);
+        }
+        gapFloor = eventLog.gapFloor();
+        eventLog.replayTail(maxKeep, this::appendToRing);
+        log.info("dashboard event store restored, events={}, cursor={}, gapFloor={}", size, cursorGen.get(), gapFloor);
     }
 
-    private void trimIfNeeded() {
-        while (store.size() > maxKeep) {
-            var first = store.firstEntry();
-            if (first == null) break;
-            store.remove(first.getKey());
+    /** 第一个 cursor > sinceCursor 的逻辑下标，没有则返回 size */
+    private int firstIndexAfter(long sinceCursor) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cursors[slot(mid)] <= sinceCursor) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
         }
+        return lo;
+    }
+
+    /** 最旧事件的字节是否落在即将写入的 [start, end) 区间里 */
+    private boolean overlapsOldest(int start, int end) {
+        int oldestStart = offsets[head];
+        int oldestEnd = oldestStart + lengths[head];
+        return oldestStart < end && start < oldestEnd;
+    }
+
+    private void evictOldest() {
+        head = (head + 1) % maxKeep;
+        size -= 1;
+    }
+
+    private int slot(int index) {
+        return (head + index) % maxKeep;
     }
 }
@@ -12,6 +12,10 @@ public class DashboardQueryService {
 
     private final DashboardCacheService dashboardCacheService;
 
+    public Map<String, Object> snapshotStats() {
+        return dashboardCacheService.snapshotStats();
+    }
+
     public Object snapshot(String scope,
                            Integer platformId,
                            String categoryName,
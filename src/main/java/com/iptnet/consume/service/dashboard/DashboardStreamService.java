@@ -1,29 +1,117 @@
 package com.iptnet.consume.service.dashboard;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iptnet.consume.dao.DashboardEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * SSE 推送：每个连接一个有界发送队列，由各自的虚拟线程发送，发布线程（MQ 消费线程）只负责入队。
+ * 慢客户端队列满时丢弃积压，改发一条 invalidate 让前端重新拉快照。
+ */
 public class DashboardStreamService {
     private static final Logger log = LoggerFactory.getLogger(DashboardStreamService.class);
 
-    private record Client(String id, Set<String> topics, SseEmitter emitter) {}
+    private record Frame(Set<ResponseBodyEmitter.DataWithMediaType> data, String type, long enqueuedAtNanos) {}
+
+    private final class Client {
+        private final String id;
+        private final Set<String> topics;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Frame> queue;
+        private volatile Thread sender;
+
+        private Client(String id, Set<String> topics, SseEmitter emitter) {
+            this.id = id;
+            this.topics = topics;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private synchronized void enqueue(Frame frame) {
+            if (queue.offer(frame)) {
+                return;
+            }
+            // 队列满：积压的 patch 已经没有意义，清空后只保留一条 invalidate
+            int dropped = queue.size();
+            queue.clear();
+            droppedFrames.addAndGet(dropped + 1L);
+            resyncs.incrementAndGet();
+            queue.offer(new Frame(encode(DashboardEvent.invalidate(eventStore.currentCursor(), "slow-consumer")),
+                    "invalidate", System.nanoTime()));
+            log.debug("dashboard SSE client too slow, dropped={}, clientId={}", dropped + 1, id);
+        }
+
+        private void drain() {
+            try {
+                while (clients.containsKey(id)) {
+                    Frame frame = queue.take();
+                    if (!send(frame)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean send(Frame frame) {
+            try {
+                emitter.send(frame.data());
+                long latencyNanos = System.nanoTime() - frame.enqueuedAtNanos();
+                sentFrames.incrementAndGet();
+                sendLatencyNanosTotal.addAndGet(latencyNanos);
+                sendLatencyNanosMax.accumulateAndGet(latencyNanos, Math::max);
+                return true;
+            } catch (Throwable ex) {
+                // SSE client disconnected (broken pipe / async request closed), remove it quietly.
+                removeClient(this);
+                if (ex instanceof Error error) {
+                    throw error;
+                }
+                if (!isDisconnectedClientError(ex)) {
+                    log.warn("Failed to send dashboard SSE event, clientId={}, type={}", id, frame.type(), ex);
+                }
+                return false;
+            }
+        }
+    }
 
     private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private final TopicIndex topicIndex = new TopicIndex();
     private final DashboardEventStore eventStore;
+    private final ObjectMapper objectMapper;
     private final long emitterTimeoutMs;
+    private final int queueCapacity;
+
+    private final AtomicLong enqueuedFrames = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong sendLatencyNanosTotal = new AtomicLong();
+    private final AtomicLong sendLatencyNanosMax = new AtomicLong();
 
-    public DashboardStreamService(DashboardEventStore eventStore, long emitterTimeoutMs) {
+    public DashboardStreamService(DashboardEventStore eventStore, ObjectMapper objectMapper,
+                                  long emitterTimeoutMs, int queueCapacity) {
         this.eventStore = eventStore;
+        this.objectMapper = objectMapper;
         this.emitterTimeoutMs = emitterTimeoutMs;
+        this.queueCapacity = Math.max(8, queueCapacity);
     }
 
     public SseEmitter openStream(Set<String> topics) {
@@ -31,49 +119,106 @@ public class DashboardStreamService {
         SseEmitter emitter = new SseEmitter(emitterTimeoutMs); // 0L = 不超时（但代理可能会断）
         Client c = new Client(id, topics, emitter);
         clients.put(id, c);
+        topicIndex.add(id, topics);
 
-        emitter.onCompletion(() -> clients.remove(id));
-        emitter.onTimeout(() -> clients.remove(id));
-        emitter.onError(e -> clients.remove(id));
+        emitter.onCompletion(() -> removeClient(c));
+        emitter.onTimeout(() -> removeClient(c));
+        emitter.onError(e -> removeClient(c));
 
         // 先发 hello（让前端知道连接建立 & 当前 cursor）
-        sendEventSafely(c, DashboardEvent.hello(eventStore.currentCursor()));
+        enqueue(c, encode(DashboardEvent.hello(eventStore.currentCursor())), "hello");
+        c.sender = Thread.ofVirtual().name("dashboard-sse-" + id).start(c::drain);
         return emitter;
     }
 
-    public void publish(DashboardEvent evt) {
-        // 广播给订阅匹配的客户端
-        for (Client c : clients.values()) {
-            if (TopicMatcher.match(c.topics(), evt.topic())) {
-                sendEventSafely(c, evt);
+    public void publish(DashboardEvent evt, byte[] json) {
+        // 事件只序列化一次，按订阅索引找到客户端后把同一份字节放进各自的发送队列
+        Set<String> clientIds = topicIndex.match(evt.topic());
+        if (clientIds.isEmpty()) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = encode(evt, json);
+        for (String clientId : clientIds) {
+            Client c = clients.get(clientId);
+            if (c != null) {
+                enqueue(c, frame, evt.type());
             }
         }
     }
 
+    /**
+     * 本机缓存的增量已不连续时，让所有连接重新拉快照
+     */
+    public void invalidateAll(long cursor, String reason) {
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = encode(DashboardEvent.invalidate(cursor, reason));
+        for (Client c : clients.values()) {
+            resyncs.incrementAndGet();
+            enqueue(c, frame, "invalidate");
+        }
+    }
+
     @Scheduled(fixedDelayString = "${dashboard.sse.heartbeat-ms:15000}")
     public void heartbeat() {
-        DashboardEvent hb = DashboardEvent.heartbeat(eventStore.currentCursor());
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = encode(DashboardEvent.heartbeat(eventStore.currentCursor()));
+        for (Client c : clients.values()) {
+            enqueue(c, frame, "heartbeat");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int maxDepth = 0;
+        long totalDepth = 0;
         for (Client c : clients.values()) {
-            sendEventSafely(c, hb);
+            int depth = c.queue.size();
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
         }
+        long sent = sentFrames.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clients", clients.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queueDepthTotal", totalDepth);
+        stats.put("queueDepthMax", maxDepth);
+        stats.put("enqueued", enqueuedFrames.get());
+        stats.put("sent", sent);
+        stats.put("dropped", droppedFrames.get());
+        stats.put("resyncs", resyncs.get());
+        stats.put("sendLatencyAvgMs", sent == 0 ? 0D : sendLatencyNanosTotal.get() / 1_000_000D / sent);
+        stats.put("sendLatencyMaxMs", sendLatencyNanosMax.get() / 1_000_000D);
+        return stats;
     }
 
-    private void sendEventSafely(Client c, DashboardEvent evt) {
+    /**
+     * 编码成完整的 SSE 帧（event/id/data），与 SseEmitter.event() 的输出格式一致
+     */
+    private Set<ResponseBodyEmitter.DataWithMediaType> encode(DashboardEvent evt) {
         try {
-            c.emitter().send(
-                    SseEmitter.event()
-                            .name(evt.type())
-                            .id(String.valueOf(evt.cursor()))
-                            .data(evt, MediaType.APPLICATION_JSON)
-            );
-        } catch (Throwable ex) {
-            // SSE client disconnected (broken pipe / async request closed), remove it quietly.
-            clients.remove(c.id());
-            if (ex instanceof Error error) {
-                throw error;
-            }
-            if (!isDisconnectedClientError(ex)) {
-                log.warn("Failed to send dashboard SSE event, clientId={}, type={}", c.id(), evt.type(), ex);
+            return encode(evt, objectMapper.writeValueAsBytes(evt));
+        } catch (Exception e) {
+            throw new IllegalStateException("Encode dashboard event failed, cursor=" + evt.cursor(), e);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> encode(DashboardEvent evt, byte[] json) {
+        byte[] prefix = ("event:" + evt.type() + "\nid:" + evt.cursor() + "\ndata:").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(prefix.length + json.length + 2);
+        out.writeBytes(prefix);
+        out.writeBytes(json);
+        out.writeBytes("\n\n".getBytes(StandardCharsets.UTF_8));
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(out.toByteArray(), MediaType.TEXT_PLAIN));
+    }
+
+    private void enqueue(Client c, Set<ResponseBodyEmitter.DataWithMediaType> data, String type) {
+        enqueuedFrames.incrementAndGet();
+        c.enqueue(new Frame(data, type, System.nanoTime()));
+    }
+
+    private void removeClient(Client c) {
+        if (clients.remove(c.id) != null) {
+            topicIndex.remove(c.id, c.topics);
+            Thread sender = c.sender;
+            if (sender != null && sender != Thread.currentThread()) {
+                sender.interrupt();
             }
         }
     }
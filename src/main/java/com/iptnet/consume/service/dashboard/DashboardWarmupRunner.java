@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 public class DashboardWarmupRunner implements ApplicationRunner {
 
     private final DashboardCacheService dashboardCacheService;
+    private final DashboardWarmupService dashboardWarmupService;
 
     @Override
     public void run(ApplicationArguments args) {
@@ -20,5 +21,7 @@ public class DashboardWarmupRunner implements ApplicationRunner {
         } catch (Exception e) {
             log.error("dashboard cache warmup failed", e);
         }
+        // 用户维度的预热在后台跑，应用此时已经可以对外服务
+        dashboardWarmupService.startAsync();
     }
 }
@@ -0,0 +1,220 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.iptnet.consume.mapper.UserMapper;
+import com.iptnet.consume.utils.ListUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 最近订单缓存预热：启动后在后台跑，不挡启动；最近登录的用户先热。
+ *
+ * <p>用户按 (last_login_time, user_id) 倒序分页，从未登录的排最后。每页切成几份，每份一条开窗查询，
+ * 在虚拟线程上并发执行，并发数由 Semaphore 控制在连接预算内；整页写完后把游标记到 Redis。
+ * 中途重启会从游标处继续；整轮跑完后在缓存有效期内再次启动直接跳过。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardWarmupService {
+
+    private static final String KEY_CHECKPOINT = "dash:v3:warmup:checkpoint";
+    private static final String KEY_COMPLETED = "dash:v3:warmup:completed";
+    // 与最近订单缓存的有效期一致，超过这个时间重新热一遍
+    private static final Duration CHECKPOINT_TTL = Duration.ofHours(6);
+    private static final LocalDateTime LOGIN_UPPER_BOUND = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final RecentOrdersCacheService recentOrdersCacheService;
+    private final UserMapper userMapper;
+    private final StringRedisTemplate redis;
+
+    @Value("${business.dashboard.warmup-parallelism:4}")
+    private int parallelism;
+
+    @Value("${business.dashboard.warmup-page-size:500}")
+    private int pageSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long total;
+    private volatile long startedAtMs;
+    private volatile long finishedAtMs;
+    private volatile String state = "idle";
+    private volatile String checkpoint = "";
+
+    /**
+     * 阶段一：有登录时间的用户，游标是上一页最后一个 (last_login_time, user_id)；阶段二：从未登录的用户，游标是 user_id
+     */
+    private record Cursor(int phase, LocalDateTime beforeLogin, long beforeUserId) {
+
+        static Cursor start() {
+            return new Cursor(1, LOGIN_UPPER_BOUND, Long.MAX_VALUE);
+        }
+
+        String encode() {
+            return phase + "|" + beforeLogin + "|" + beforeUserId;
+        }
+
+        static Cursor decode(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return null;
+            }
+            try {
+                String[] parts = raw.split("\\|");
+                return new Cursor(Integer.parseInt(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+    }
+
+    public void startAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("dashboard-warmup").start(() -> {
+            try {
+                run();
+            } catch (Exception e) {
+                state = "failed";
+                log.error("dashboard recent orders warmup failed, processed={}", processed.get(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long done = processed.get();
+        long end = finishedAtMs > 0 ? finishedAtMs : System.currentTimeMillis();
+        long costMs = startedAtMs == 0 ? 0 : end - startedAtMs;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("processed", done);
+        stats.put("failed", failed.get());
+        stats.put("total", total);
+        stats.put("progress", total == 0 ? 0D : Math.min(1D, (double) done / total));
+        stats.put("usersPerSec", costMs == 0 ? 0D : done * 1000D / costMs);
+        stats.put("parallelism", parallelism);
+        stats.put("checkpoint", checkpoint);
+        return stats;
+    }
+
+    private void run() throws InterruptedException {
+        if (Boolean.TRUE.equals(redis.hasKey(KEY_COMPLETED))) {
+            state = "skipped";
+            log.info("dashboard recent orders warmup skipped, last run still fresh");
+            return;
+        }
+
+        Cursor cursor = Cursor.decode(redis.opsForValue().get(KEY_CHECKPOINT));
+        boolean resumed = cursor != null;
+        if (cursor == null) {
+            cursor = Cursor.start();
+        }
+        state = "running";
+        startedAtMs = System.currentTimeMillis();
+        total = userMapper.countActiveUsers();
+        log.info("dashboard recent orders warmup started, users={}, parallelism={}, resumed={}",
+                total, parallelism, resumed);
+
+        int budget = Math.max(1, parallelism);
+        Semaphore connections = new Semaphore(budget);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (cursor != null) {
+                List<Integer> userIds = new ArrayList<>();
+                Cursor next = nextPage(cursor, userIds);
+                if (!userIds.isEmpty()) {
+                    warmPage(executor, connections, userIds);
+                }
+                if (next != null) {
+                    checkpoint = next.encode();
+                    redis.opsForValue().set(KEY_CHECKPOINT, checkpoint, CHECKPOINT_TTL);
+                }
+                cursor = next;
+            }
+        }
+
+        redis.delete(KEY_CHECKPOINT);
+        redis.opsForValue().set(KEY_COMPLETED, String.valueOf(System.currentTimeMillis()), CHECKPOINT_TTL);
+        finishedAtMs = System.currentTimeMillis();
+        state = "done";
+        log.info("dashboard recent orders warmup finished, processed={}, failed={}, costMs={}",
+                processed.get(), failed.get(), finishedAtMs - startedAtMs);
+    }
+
+    /**
+     * 取一页用户放进 userIds，返回下一页的游标；全部取完返回 null
+     */
+    private Cursor nextPage(Cursor cursor, List<Integer> userIds) {
+        int limit = Math.max(1, pageSize);
+        if (cursor.phase() == 1) {
+            List<HashMap<String, Object>> rows =
+                    userMapper.pageActiveUsersByLogin(cursor.beforeLogin(), cursor.beforeUserId(), limit);
+            if (rows.isEmpty()) {
+                return new Cursor(2, LOGIN_UPPER_BOUND, Long.MAX_VALUE);
+            }
+            for (HashMap<String, Object> row : rows) {
+                userIds.add(((Number) row.get("user_id")).intValue());
+            }
+            HashMap<String, Object> last = rows.getLast();
+            return new Cursor(1, (LocalDateTime) last.get("last_login_time"),
+                    ((Number) last.get("user_id")).longValue());
+        }
+
+        List<Integer> ids = userMapper.pageActiveUsersNeverLoggedIn(cursor.beforeUserId(), limit);
+        userIds.addAll(ids);
+        if (ids.size() < limit) {
+            return null;
+        }
+        return new Cursor(2, LOGIN_UPPER_BOUND, ids.getLast());
+    }
+
+    /**
+     * 一页用户切成 parallelism 份，每份一条开窗查询流式读出并批量写 Redis，各份在虚拟线程上并发
+     */
+    private void warmPage(ExecutorService executor, Semaphore connections, List<Integer> userIds)
+            throws InterruptedException {
+        int sliceSize = Math.max(1, (userIds.size() + parallelism - 1) / Math.max(1, parallelism));
+        List<Map.Entry<List<Integer>, Future<?>>> futures = new ArrayList<>();
+        for (List<Integer> slice : ListUtils.partition(userIds, sliceSize)) {
+            futures.add(Map.entry(slice, executor.submit(() -> {
+                connections.acquire();
+                try {
+                    recentOrdersCacheService.warmUsers(slice);
+                } finally {
+                    connections.release();
+                }
+                return null;
+            })));
+        }
+
+        for (Map.Entry<List<Integer>, Future<?>> entry : futures) {
+            try {
+                entry.getValue().get();
+                processed.addAndGet(entry.getKey().size());
+            } catch (ExecutionException e) {
+                failed.addAndGet(entry.getKey().size());
+                log.warn("warmup recent orders failed, users={}", entry.getKey().size(), e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dao.DashboardEvent;
+
+/**
+ * 单节点事件总线：cursor 取本地递增序列，事件直接写本机缓存并推给本机的 SSE 连接。
+ * 也是集群模式在本地 / 联调环境下的替身，行为和只有一个节点的集群一致。
+ */
+public class LocalDashboardEventBus implements DashboardEventBus {
+
+    private final DashboardEventStore eventStore;
+    private final DashboardStreamService streamService;
+    private final ObjectMapper objectMapper;
+
+    public LocalDashboardEventBus(DashboardEventStore eventStore, DashboardStreamService streamService,
+                                  ObjectMapper objectMapper) {
+        this.eventStore = eventStore;
+        this.streamService = streamService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 串行发布：环形缓存要求 cursor 按递增顺序追加；事件只序列化一次，缓存和 SSE 共用同一份字节
+     */
+    @Override
+    public synchronized DashboardEvent publish(String topic, String op, Object payload) {
+        long cursor = eventStore.nextCursor();
+        DashboardEvent event = DashboardEvent.patch(cursor, topic, op, payload);
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(event);
+        } catch (Exception e) {
+            throw new IllegalStateException("Encode dashboard event failed, cursor=" + cursor, e);
+        }
+        eventStore.append(cursor, json);
+        streamService.publish(event, json);
+        return event;
+    }
+}
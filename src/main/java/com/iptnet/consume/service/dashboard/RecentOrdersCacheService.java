@@ -0,0 +1,468 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dto.OrderTransitionEvent;
+import com.iptnet.consume.dto.OrderView;
+import com.iptnet.consume.mapper.TransactionOrderMapper;
+import com.iptnet.consume.utils.ListUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户最近订单的写穿缓存：每个用户一个 zset + 一个 hash，下单、支付、取消、超时提交后按订单号把最新行原地写进去，
+ * 读的时候不再回源做五表关联。
+ *
+ * <p>zset 的分数是下单时间毫秒，成员是补零到 19 位的订单 id：同一时刻下的单分数相同，ZREVRANGE 对同分成员按字典序倒排，
+ * 补零后字典序就是 id 顺序，整体和库里 ORDER BY created_at DESC, id DESC 一致。hash 以同一个成员为 field，
+ * 值为 {@code version|整行 JSON}，写穿时在 Lua 里比较 version，乱序到达的旧行不会盖掉新行。</p>
+ *
+ * <p>每个用户最多缓存 {@link #MAX_DEPTH} 条；meta 记录这份窗口是否已经是该用户的全部订单（exhaustive），
+ * 同时充当"已加载"标记。窗口不满且不是全部时，读方按需从库里补到 MAX_DEPTH 条。</p>
+ *
+ * <p>回源加载和流转回写会并发：回写不管窗口在不在都先递增用户的 gen，加载前记下 gen，
+ * 写入时 gen 变了就放弃这次写入，下次读再加载，避免用旧行盖掉刚提交的流转。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecentOrdersCacheService {
+
+    public static final int MAX_DEPTH = 500;
+    /** 首页快照和默认列表的条数，预热也只热这么深 */
+    public static final int DEFAULT_DEPTH = 30;
+
+    private static final String KEY_PREFIX = "dash:v4:user:recent:";
+    private static final Duration TTL = Duration.ofHours(6);
+    private static final int QUERY_BATCH = 1000;
+    private static final int WRITE_BATCH = 200;
+    private static final int UPSERT_BATCH = 500;
+
+    /** KEYS: z, h, meta；ARGV: depth。未加载返回 nil，否则返回 [exhaustive, zcard, 行 JSON...] */
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local exhaustive = redis.call('GET', KEYS[3])
+            if not exhaustive then
+                return false
+            end
+            local out = {exhaustive, tostring(redis.call('ZCARD', KEYS[1]))}
+            local ids = redis.call('ZREVRANGE', KEYS[1], 0, tonumber(ARGV[1]) - 1)
+            if #ids > 0 then
+                local rows = redis.call('HMGET', KEYS[2], unpack(ids))
+                for i = 1, #rows do
+                    out[#out + 1] = rows[i] or ''
+                end
+            end
+            return out
+            """, List.class);
+
+    /**
+     * KEYS: z, h, meta, gen；ARGV: 期望 gen, ttl 秒, exhaustive, 之后每三个一组 (成员, 分数, version|行 JSON)。
+     * gen 与加载前不一致说明中间有流转回写，放弃本次写入
+     */
+    private static final String LOAD_LUA = """
+            if (redis.call('GET', KEYS[4]) or '0') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('DEL', KEYS[1], KEYS[2])
+            for i = 4, #ARGV, 3 do
+                redis.call('ZADD', KEYS[1], ARGV[i + 1], ARGV[i])
+                redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 2])
+            end
+            redis.call('SET', KEYS[3], ARGV[3], 'EX', ARGV[2])
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return 1
+            """;
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(LOAD_LUA, Long.class);
+
+    /**
+     * KEYS: z, h, meta, gen；ARGV: 上限, ttl 秒, 之后每四个一组 (成员, 分数, version, version|行 JSON)。
+     * 缓存里已有更高 version 的行跳过；窗口不是全部订单时，按 (分数, 成员) 比窗口里最早一条还早的订单不补进来，
+     * 否则窗口中间会缺行；超过上限从最早的开始裁
+     */
+    private static final DefaultRedisScript<Long> UPSERT_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[4])
+            redis.call('EXPIRE', KEYS[4], ARGV[2])
+            local exhaustive = redis.call('GET', KEYS[3])
+            if not exhaustive then
+                return 0
+            end
+            local floorScore = nil
+            local floorMember = nil
+            if exhaustive == '0' then
+                local lowest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+                if #lowest > 0 then
+                    floorMember = lowest[1]
+                    floorScore = tonumber(lowest[2])
+                end
+            end
+            local applied = 0
+            for i = 3, #ARGV, 4 do
+                local member = ARGV[i]
+                local score = tonumber(ARGV[i + 1])
+                local old = redis.call('HGET', KEYS[2], member)
+                local stale = false
+                if old then
+                    local oldVersion = tonumber(string.match(old, '^(%d+)|') or '-1')
+                    stale = tonumber(ARGV[i + 2]) < oldVersion
+                end
+                local inWindow = old or floorScore == nil or score > floorScore
+                        or (score == floorScore and member >= floorMember)
+                if not stale and inWindow then
+                    redis.call('ZADD', KEYS[1], score, member)
+                    redis.call('HSET', KEYS[2], member, ARGV[i + 3])
+                    applied = applied + 1
+                end
+            end
+            local extra = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[1])
+            if extra > 0 then
+                local dropped = redis.call('ZRANGE', KEYS[1], 0, extra - 1)
+                redis.call('ZREMRANGEBYRANK', KEYS[1], 0, extra - 1)
+                redis.call('HDEL', KEYS[2], unpack(dropped))
+                redis.call('SET', KEYS[3], '0')
+            end
+            for i = 1, 3 do
+                redis.call('EXPIRE', KEYS[i], ARGV[2])
+            end
+            return applied
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final TransactionOrderMapper transactionOrderMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadsSkipped = new LongAdder();
+    private final LongAdder upserts = new LongAdder();
+    private final LongAdder upsertFailures = new LongAdder();
+
+    /**
+     * @param rows       按下单时间倒序，库里的原始状态，调用方自己换算有效状态
+     * @param exhaustive true 表示 rows 已是该用户的全部订单
+     */
+    public record Window(List<OrderView> rows, boolean exhaustive) {}
+
+    /**
+     * 取用户最近 depth 条（depth 不超过 MAX_DEPTH）；未加载或缓存的窗口不够深时从库里补
+     */
+    public Window window(Integer userId, int depth) {
+        if (userId == null || userId <= 0) {
+            return new Window(List.of(), true);
+        }
+        int safeDepth = Math.max(1, Math.min(MAX_DEPTH, depth));
+        Window cached = read(userId, safeDepth);
+        if (cached != null && (cached.exhaustive() || cached.rows().size() >= safeDepth)) {
+            hits.increment();
+            return cached;
+        }
+        // 超出默认深度的请求一次补满，后面再翻更深不用反复回源
+        int loadDepth = safeDepth <= DEFAULT_DEPTH ? DEFAULT_DEPTH : MAX_DEPTH;
+        List<OrderView> rows = load(userId, loadDepth);
+        return new Window(rows.size() > safeDepth ? rows.subList(0, safeDepth) : rows, rows.size() < loadDepth);
+    }
+
+    /**
+     * 订单提交后按订单号取最新整行写进对应用户的窗口；写缓存失败时把这些用户的窗口作废，下次读重新加载
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderTransition(OrderTransitionEvent event) {
+        if (event == null || event.transitions() == null || event.transitions().isEmpty()) {
+            return;
+        }
+        Set<String> orderNos = new LinkedHashSet<>();
+        Set<Integer> userIds = new LinkedHashSet<>();
+        for (OrderTransitionEvent.Transition transition : event.transitions()) {
+            if (transition.orderNo() != null && !transition.orderNo().isBlank()) {
+                orderNos.add(transition.orderNo());
+            }
+            if (transition.userId() != null && transition.userId() > 0) {
+                userIds.add(transition.userId());
+            }
+        }
+        try {
+            for (List<String> chunk : ListUtils.partition(new ArrayList<>(orderNos), UPSERT_BATCH)) {
+                upsert(groupByUser(transactionOrderMapper.selectOrderRowsByNos(chunk)));
+            }
+        } catch (Exception e) {
+            upsertFailures.increment();
+            evict(userIds);
+            log.warn("write through recent orders failed, reason={}, orders={}", event.reason(), orderNos.size(), e);
+        }
+    }
+
+    /**
+     * 预热：每批用户一条开窗查询流式读出，按用户分组后走 pipeline 写入，每个用户热 DEFAULT_DEPTH 条
+     */
+    public void warmUsers(Collection<Integer> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Integer> safeUserIds = userIds.stream()
+                .filter(Objects::nonNull)
+                .filter(id -> id > 0)
+                .distinct()
+                .toList();
+        for (List<Integer> chunk : ListUtils.partition(safeUserIds, QUERY_BATCH)) {
+            streamWindows(chunk);
+        }
+    }
+
+    /**
+     * 作废这些用户的窗口，同时递增 gen，让正在进行中的加载放弃写入；下次读时重新加载
+     */
+    public void evict(Collection<Integer> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        long ttlSeconds = TTL.toSeconds();
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Integer userId : userIds) {
+                conn.del(zsetKey(userId), hashKey(userId), metaKey(userId));
+                conn.incr(genKey(userId));
+                conn.expire(genKey(userId), ttlSeconds);
+            }
+            return null;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        stats.put("loadsSkipped", loadsSkipped.sum());
+        stats.put("upserts", upserts.sum());
+        stats.put("upsertFailures", upsertFailures.sum());
+        return stats;
+    }
+
+    private Window read(int userId, int depth) {
+        try {
+            List<?> raw = redis.execute(READ_SCRIPT,
+                    List.of(zsetKey(userId), hashKey(userId), metaKey(userId)), String.valueOf(depth));
+            if (raw == null || raw.size() < 2) {
+                return null;
+            }
+            List<OrderView> rows = new ArrayList<>(raw.size() - 2);
+            for (int i = 2; i < raw.size(); i++) {
+                String json = raw.get(i) == null ? "" : String.valueOf(raw.get(i));
+                if (json.isEmpty()) {
+                    // zset 和 hash 对不上，当作未加载
+                    return null;
+                }
+                rows.add(objectMapper.readValue(json.substring(json.indexOf('|') + 1), OrderView.class));
+            }
+            return new Window(rows, "1".equals(String.valueOf(raw.get(0))));
+        } catch (Exception e) {
+            log.warn("read recent orders cache failed, userId={}", userId, e);
+            return null;
+        }
+    }
+
+    private List<OrderView> load(int userId, int depth) {
+        String gen = currentGen(userId);
+        List<OrderView> rows =
+                transactionOrderMapper.selectRecentOrders(userId, depth, null, LocalDateTime.now());
+        try {
+            List<String> args = new ArrayList<>(3 + rows.size() * 3);
+            args.add(gen);
+            args.add(String.valueOf(TTL.toSeconds()));
+            args.add(rows.size() < depth ? "1" : "0");
+            appendRows(args, rows);
+            Long written = redis.execute(LOAD_SCRIPT, keys(userId), args.toArray());
+            if (written != null && written == 1L) {
+                loads.increment();
+            } else {
+                loadsSkipped.increment();
+            }
+        } catch (Exception e) {
+            log.warn("write recent orders cache failed, userId={}", userId, e);
+        }
+        return rows;
+    }
+
+    /**
+     * MyBatis Cursor 必须在同一个连接上读完，所以放进事务模板里执行；开查之前先一次取齐这批用户的 gen
+     */
+    private void streamWindows(List<Integer> userIds) {
+        List<String> gens = redis.opsForValue().multiGet(userIds.stream().map(this::genKey).toList());
+        Map<Integer, String> genByUser = new HashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            String gen = gens == null ? null : gens.get(i);
+            genByUser.put(userIds.get(i), gen == null ? "0" : gen);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Integer, List<OrderView>> batch = new LinkedHashMap<>();
+            Set<Integer> pending = new LinkedHashSet<>(userIds);
+            try (Cursor<OrderView> cursor =
+                         transactionOrderMapper.streamRecentOrdersByUsers(userIds, DEFAULT_DEPTH)) {
+                Integer currentUserId = null;
+                for (OrderView row : cursor) {
+                    Integer userId = row.userId();
+                    if (!userId.equals(currentUserId)) {
+                        if (batch.size() >= WRITE_BATCH) {
+                            putWindows(batch, genByUser);
+                            batch = new LinkedHashMap<>();
+                        }
+                        currentUserId = userId;
+                        pending.remove(userId);
+                    }
+                    batch.computeIfAbsent(userId, k -> new ArrayList<>()).add(row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Close recent orders cursor failed", e);
+            }
+            // 没有订单的用户也写一份空窗口（exhaustive），免得读的时候再回源
+            for (Integer userId : pending) {
+                batch.put(userId, List.of());
+            }
+            putWindows(batch, genByUser);
+        });
+    }
+
+    /**
+     * 多个用户的窗口一个 pipeline 发完，只付一次往返
+     */
+    private void putWindows(Map<Integer, List<OrderView>> rowsByUser, Map<Integer, String> genByUser) {
+        if (rowsByUser.isEmpty()) {
+            return;
+        }
+        String ttlSeconds = String.valueOf(TTL.toSeconds());
+        Map<Integer, String[]> scripts = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<OrderView>> entry : rowsByUser.entrySet()) {
+            List<String> keysAndArgs = new ArrayList<>(keys(entry.getKey()));
+            keysAndArgs.add(genByUser.getOrDefault(entry.getKey(), "0"));
+            keysAndArgs.add(ttlSeconds);
+            keysAndArgs.add(entry.getValue().size() < DEFAULT_DEPTH ? "1" : "0");
+            try {
+                appendRows(keysAndArgs, entry.getValue());
+            } catch (Exception e) {
+                log.warn("encode recent orders failed, userId={}", entry.getKey(), e);
+                continue;
+            }
+            scripts.put(entry.getKey(), keysAndArgs.toArray(String[]::new));
+        }
+        try {
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String[] keysAndArgs : scripts.values()) {
+                    conn.eval(LOAD_LUA, ReturnType.INTEGER, 4, keysAndArgs);
+                }
+                return null;
+            });
+            loads.add(scripts.size());
+        } catch (Exception e) {
+            log.warn("write recent orders batch failed, users={}", scripts.size(), e);
+        }
+    }
+
+    private void upsert(Map<Integer, List<OrderView>> rowsByUser) throws Exception {
+        String ttlSeconds = String.valueOf(TTL.toSeconds());
+        for (Map.Entry<Integer, List<OrderView>> entry : rowsByUser.entrySet()) {
+            List<String> args = new ArrayList<>(2 + entry.getValue().size() * 4);
+            args.add(String.valueOf(MAX_DEPTH));
+            args.add(ttlSeconds);
+            for (OrderView row : entry.getValue()) {
+                args.add(member(row));
+                args.add(String.valueOf(score(row)));
+                args.add(String.valueOf(version(row)));
+                args.add(value(row));
+            }
+            redis.execute(UPSERT_SCRIPT, keys(entry.getKey()), args.toArray());
+            upserts.add(entry.getValue().size());
+        }
+    }
+
+    private void appendRows(List<String> args, List<OrderView> rows) throws Exception {
+        for (OrderView row : rows) {
+            args.add(member(row));
+            args.add(String.valueOf(score(row)));
+            args.add(value(row));
+        }
+    }
+
+    /** 下单时间毫秒；同一时刻的订单靠成员的字典序排 */
+    private static long score(OrderView row) {
+        return row.coCreatedAt() == null
+                ? 0L
+                : row.coCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** 订单 id 补零到 19 位（long 的最大位数），字典序与数值序一致 */
+    private static String member(OrderView row) {
+        return String.format("%019d", row.coId() == null ? 0L : row.coId());
+    }
+
+    private static int version(OrderView row) {
+        return row.version() == null ? 0 : row.version();
+    }
+
+    private String value(OrderView row) throws Exception {
+        return version(row) + "|" + objectMapper.writeValueAsString(row);
+    }
+
+    private Map<Integer, List<OrderView>> groupByUser(List<OrderView> rows) {
+        Map<Integer, List<OrderView>> rowsByUser = new LinkedHashMap<>();
+        for (OrderView row : rows) {
+            if (row.userId() != null) {
+                rowsByUser.computeIfAbsent(row.userId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        return rowsByUser;
+    }
+
+    private String currentGen(int userId) {
+        String gen = redis.opsForValue().get(genKey(userId));
+        return gen == null ? "0" : gen;
+    }
+
+    private List<String> keys(int userId) {
+        return List.of(zsetKey(userId), hashKey(userId), metaKey(userId), genKey(userId));
+    }
+
+    // 同一用户的 key 带同一个 hash tag，集群模式下脚本里的多个 key 落在同一个 slot
+
+    private String zsetKey(int userId) {
+        return KEY_PREFIX + "{" + userId + "}:z";
+    }
+
+    private String hashKey(int userId) {
+        return KEY_PREFIX + "{" + userId + "}:h";
+    }
+
+    private String metaKey(int userId) {
+        return KEY_PREFIX + "{" + userId + "}:meta";
+    }
+
+    private String genKey(int userId) {
+        return KEY_PREFIX + "{" + userId + "}:gen";
+    }
+}
@@ -0,0 +1,198 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dao.DashboardEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 集群事件总线：Lua 里 INCR 全局序列并 PUBLISH，cursor 全局有序，且频道里的消息顺序与 cursor 顺序一致。
+ *
+ * <p>消息格式为 {@code cursor|事件 JSON}，JSON 里的 cursor 是占位的 0，各节点收到后换成真实 cursor
+ * 再编码一次，写本机回放缓存并推给本机 SSE 连接。pub/sub 不保证送达：节点发现 cursor 跳号时
+ * 在回放缓存里记下缺口（/delta 对缺口之前的 since 返回 resync），并给本机连接发 invalidate，让前端重新拉快照。</p>
+ *
+ * <p>监听容器用单线程派发（见 DashboardConfig），正常情况下回调本身就是有序的；即便偶尔乱序，
+ * 跳号的事件也先按 cursor 暂存 reorderWindowMs，缺的那条到了就一起按序处理，窗口过了还没到才按缺口处理。</p>
+ */
+public class RedisDashboardEventBus implements DashboardEventBus, MessageListener {
+    private static final Logger log = LoggerFactory.getLogger(RedisDashboardEventBus.class);
+
+    /** 分配 cursor 与广播在同一个脚本里完成，两个节点并发发布也不会乱序 */
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>("""
+            local cursor = redis.call('INCR', KEYS[1])
+            redis.call('PUBLISH', ARGV[1], cursor .. '|' .. ARGV[2])
+            return cursor
+            """, Long.class);
+
+    /** 全局序列不能落后于本机日志里恢复出来的 cursor */
+    private static final DefaultRedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>("""
+            local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local floor = tonumber(ARGV[1])
+            if current < floor then
+                redis.call('SET', KEYS[1], floor)
+                return floor
+            end
+            return current
+            """, Long.class);
+
+    private final DashboardEventStore eventStore;
+    private final DashboardStreamService streamService;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate redis;
+    private final String channel;
+    private final String sequenceKey;
+
+    private static final int MAX_HELD = 1000;
+
+    private final long reorderWindowMs;
+    // 跳号暂存：cursor -> 事件 JSON（cursor 仍是占位的 0）；heldSinceMs 是最早一条暂存的时间
+    private final TreeMap<Long, byte[]> held = new TreeMap<>();
+    private long heldSinceMs;
+    private long lastReceived;
+
+    public RedisDashboardEventBus(DashboardEventStore eventStore, DashboardStreamService streamService,
+                                  ObjectMapper objectMapper, StringRedisTemplate redis,
+                                  String channel, String sequenceKey, long reorderWindowMs) {
+        this.reorderWindowMs = Math.max(0L, reorderWindowMs);
+        this.eventStore = eventStore;
+        this.streamService = streamService;
+        this.objectMapper = objectMapper;
+        this.redis = redis;
+        this.channel = channel;
+        this.sequenceKey = sequenceKey;
+        Long seeded = redis.execute(SEED_SCRIPT, List.of(sequenceKey), String.valueOf(eventStore.currentCursor()));
+        this.lastReceived = eventStore.currentCursor();
+        log.info("dashboard cluster event bus ready, channel={}, globalCursor={}, localCursor={}",
+                channel, seeded, lastReceived);
+    }
+
+    @Override
+    public DashboardEvent publish(String topic, String op, Object payload) {
+        DashboardEvent template = DashboardEvent.patch(0L, topic, op, payload);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(template);
+        } catch (Exception e) {
+            throw new IllegalStateException("Encode dashboard event failed, topic=" + topic, e);
+        }
+        Long cursor = redis.execute(PUBLISH_SCRIPT, List.of(sequenceKey), channel, json);
+        if (cursor == null) {
+            throw new IllegalStateException("Publish dashboard event failed, topic=" + topic);
+        }
+        // 本机的投递走订阅回调，和其它节点一样按频道顺序处理
+        return new DashboardEvent(cursor, template.type(), template.topic(), template.op(), template.ts(),
+                template.payload());
+    }
+
+    @Override
+    public synchronized void onMessage(Message message, byte[] pattern) {
+        byte[] body = message.getBody();
+        int sep = indexOf(body, (byte) '|');
+        if (sep <= 0) {
+            log.warn("skip malformed dashboard cluster event, bytes={}", body.length);
+            return;
+        }
+        long cursor;
+        try {
+            cursor = Long.parseLong(new String(body, 0, sep, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            log.warn("skip malformed dashboard cluster event, bytes={}", body.length);
+            return;
+        }
+        if (cursor <= lastReceived) {
+            return;
+        }
+        byte[] json = Arrays.copyOfRange(body, sep + 1, body.length);
+        if (cursor > lastReceived + 1) {
+            // 先暂存，缺的那条可能只是晚到一步
+            if (held.isEmpty()) {
+                heldSinceMs = System.currentTimeMillis();
+            }
+            held.put(cursor, json);
+            if (held.size() > MAX_HELD) {
+                releaseHeld(true);
+            }
+            return;
+        }
+        handle(cursor, json);
+        releaseHeld(false);
+    }
+
+    /**
+     * 暂存超过 reorderWindowMs 还没补齐的，按缺口处理
+     */
+    @Scheduled(fixedDelayString = "${dashboard.cluster.reorder-window-ms:500}")
+    public void flushHeld() {
+        flushHeld(System.currentTimeMillis());
+    }
+
+    synchronized void flushHeld(long nowMs) {
+        if (!held.isEmpty() && nowMs - heldSinceMs >= reorderWindowMs) {
+            releaseHeld(true);
+        }
+    }
+
+    /**
+     * 按序放出暂存里已经连上的事件；force 时先跳过缺口，再放出后面连续的部分，直到暂存清空或再遇到缺口
+     */
+    private void releaseHeld(boolean force) {
+        while (!held.isEmpty()) {
+            Map.Entry<Long, byte[]> first = held.firstEntry();
+            long cursor = first.getKey();
+            if (cursor <= lastReceived) {
+                held.pollFirstEntry();
+                continue;
+            }
+            if (cursor > lastReceived + 1) {
+                if (!force) {
+                    break;
+                }
+                // 中间的事件没收到（订阅断过），本机回放缓存和连接上的增量都已经不完整
+                log.warn("dashboard cluster event gap, last={}, received={}", lastReceived, cursor);
+                eventStore.markGap(cursor - 1);
+                streamService.invalidateAll(cursor - 1, "cluster-gap");
+                force = false;
+            }
+            held.pollFirstEntry();
+            handle(cursor, first.getValue());
+        }
+        if (!held.isEmpty()) {
+            heldSinceMs = System.currentTimeMillis();
+        }
+    }
+
+    private void handle(long cursor, byte[] templateJson) {
+        lastReceived = cursor;
+        try {
+            DashboardEvent template = objectMapper.readValue(templateJson, DashboardEvent.class);
+            DashboardEvent event = new DashboardEvent(cursor, template.type(), template.topic(), template.op(),
+                    template.ts(), template.payload());
+            byte[] json = objectMapper.writeValueAsBytes(event);
+            eventStore.append(cursor, json);
+            streamService.publish(event, json);
+        } catch (Exception e) {
+            log.warn("handle dashboard cluster event failed, cursor={}, bytes={}", cursor, templateJson.length, e);
+        }
+    }
+
+    private int indexOf(byte[] body, byte target) {
+        for (int i = 0; i < body.length && i < 20; i++) {
+            if (body[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,94 @@
+package com.iptnet.consume.service.dashboard;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订阅索引：按 topic 直接查到订阅者，匹配规则与 {@link TopicMatcher#match} 一致。
+ *
+ * <p>订阅 "home" 同时匹配 "home.xxx" / "home:xxx"，所以查找时把事件 topic 在每个 '.' / ':' 处截断的前缀都查一遍；
+ * "xxx*" 通配订阅单独存，按事件 topic 的每个前缀查找。单次查找的开销只与 topic 长度有关，与连接数无关。</p>
+ */
+public class TopicIndex {
+
+    private static final String ALL = "all";
+
+    private final Map<String, Set<String>> exact = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> wildcard = new ConcurrentHashMap<>();
+
+    public void add(String clientId, Set<String> topics) {
+        for (String topic : topics) {
+            String token = normalize(topic);
+            if (token == null) continue;
+            if (token.endsWith("*")) {
+                addTo(wildcard, token.substring(0, token.length() - 1), clientId);
+            } else {
+                addTo(exact, token, clientId);
+            }
+        }
+    }
+
+    public void remove(String clientId, Set<String> topics) {
+        for (String topic : topics) {
+            String token = normalize(topic);
+            if (token == null) continue;
+            if (token.endsWith("*")) {
+                removeFrom(wildcard, token.substring(0, token.length() - 1), clientId);
+            } else {
+                removeFrom(exact, token, clientId);
+            }
+        }
+    }
+
+    public Set<String> match(String eventTopic) {
+        Set<String> result = new HashSet<>();
+        if (eventTopic == null || eventTopic.isBlank()) {
+            return result;
+        }
+        addAll(result, exact.get(ALL));
+        addAll(result, exact.get(eventTopic));
+        for (int i = 0; i < eventTopic.length(); i++) {
+            char c = eventTopic.charAt(i);
+            if (c == '.' || c == ':') {
+                addAll(result, exact.get(eventTopic.substring(0, i)));
+            }
+        }
+        if (!wildcard.isEmpty()) {
+            for (int i = 0; i <= eventTopic.length(); i++) {
+                addAll(result, wildcard.get(eventTopic.substring(0, i)));
+            }
+        }
+        return result;
+    }
+
+    private void addAll(Set<String> result, Set<String> clientIds) {
+        if (clientIds != null) {
+            result.addAll(clientIds);
+        }
+    }
+
+    // 增删都在 compute 里做，避免和“删空即移除”交错时把新订阅者加进已被移除的集合
+    private void addTo(Map<String, Set<String>> index, String key, String clientId) {
+        index.compute(key, (k, ids) -> {
+            Set<String> target = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            target.add(clientId);
+            return target;
+        });
+    }
+
+    private void removeFrom(Map<String, Set<String>> index, String key, String clientId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(clientId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private String normalize(String topic) {
+        if (topic == null || topic.isBlank()) {
+            return null;
+        }
+        return topic.trim();
+    }
+}
@@ -0,0 +1,46 @@
+package com.iptnet.consume.service.export;
+
+import com.iptnet.consume.dto.OrderExportFilter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public interface OrderExportService {
+
+    enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format of(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value.trim())) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("不支持的导出格式: " + value);
+        }
+    }
+
+    /**
+     * 占一个导出名额并返回写出响应体；名额满了直接抛 IllegalStateException。响应体跑完（含失败）释放名额，
+     * 异步请求结束时响应体还没开始跑（断开、超时）也会释放
+     */
+    StreamingResponseBody export(OrderExportFilter filter, Format format, boolean gzip);
+}
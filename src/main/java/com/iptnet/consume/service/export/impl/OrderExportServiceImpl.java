@@ -0,0 +1,215 @@
+package com.iptnet.consume.service.export.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dto.OrderExportFilter;
+import com.iptnet.consume.dto.OrderFeedRow;
+import com.iptnet.consume.mapper.OrderExportMapper;
+import com.iptnet.consume.service.export.OrderExportService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 订单流式导出：MyBatis Cursor 逐行读，边读边写响应，内存占用只和缓冲区有关、与导出行数无关。
+ *
+ * <p>写响应是阻塞 IO，客户端读得慢时 write 会卡住，连带 Cursor 停止往下读，这就是背压；
+ * 代价是导出期间一直占着一个数据库连接，所以同时进行的导出数用 Semaphore 限住。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExportServiceImpl implements OrderExportService {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // 每写这么多行主动 flush 一次，让数据尽快流到客户端，而不是全部攒在缓冲区里
+    private static final int FLUSH_EVERY_ROWS = 1000;
+    private static final String PERMIT_INTERCEPTOR_KEY = OrderExportServiceImpl.class.getName() + ".permit";
+    private static final int PERMIT_PENDING = 0;
+    private static final int PERMIT_RUNNING = 1;
+    private static final int PERMIT_RELEASED = 2;
+    private static final DateTimeFormatter CSV_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final List<String> CSV_HEADER = List.of(
+            "co_id", "co_order_no", "product_id", "p_brand", "category", "product_name", "pf_name", "amount",
+            "co_remark", "co_created_at", "c_id", "c_name", "c_code", "pr_id", "pr_name", "pr_type",
+            "user_id", "user_email", "user_name", "u_phone", "u_status");
+
+    private final OrderExportMapper orderExportMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${business.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * 名额在请求线程上占住，这样满了能直接返回错误；释放在响应体里做。响应体可能根本不会被执行
+     * （客户端提前断开、异步超时、执行器拒绝），所以再挂一个异步请求结束的回调：
+     * 那时响应体还没开始跑就由回调释放，已经开始跑的仍由响应体自己释放，名额不会被提前让出
+     */
+    @Override
+    public StreamingResponseBody export(OrderExportFilter filter, Format format, boolean gzip) {
+        if (!permits.tryAcquire()) {
+            throw new IllegalStateException("导出任务过多，请稍后再试");
+        }
+        AtomicInteger state = new AtomicInteger(PERMIT_PENDING);
+        releaseOnAsyncCompletion(state);
+        return out -> {
+            if (!state.compareAndSet(PERMIT_PENDING, PERMIT_RUNNING)) {
+                return;
+            }
+            long startMs = System.currentTimeMillis();
+            try {
+                long rows = write(filter, format, gzip, out);
+                log.info("order export finished, format={}, gzip={}, rows={}, costMs={}, filter={}",
+                        format, gzip, rows, System.currentTimeMillis() - startMs, filter);
+            } finally {
+                state.set(PERMIT_RELEASED);
+                permits.release();
+            }
+        };
+    }
+
+    private void releaseOnAsyncCompletion(AtomicInteger state) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(PERMIT_INTERCEPTOR_KEY,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        if (state.compareAndSet(PERMIT_PENDING, PERMIT_RELEASED)) {
+                            permits.release();
+                            log.warn("order export never started, permit released");
+                        }
+                    }
+                });
+    }
+
+    private long write(OrderExportFilter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzipOut == null ? out : gzipOut, StandardCharsets.UTF_8), BUFFER_BYTES);
+        if (format == Format.CSV) {
+            // BOM 让 Excel 按 UTF-8 打开中文
+            writer.write('\uFEFF');
+            writeCsvLine(writer, CSV_HEADER);
+        }
+
+        // Cursor 必须在同一个连接上读完，所以放进事务模板里执行
+        Long rows = transactionTemplate.execute(status -> {
+            long count = 0;
+            try (Cursor<OrderFeedRow> cursor = orderExportMapper.streamOrders(filter)) {
+                for (OrderFeedRow row : cursor) {
+                    if (format == Format.CSV) {
+                        writeCsvLine(writer, csvValues(row));
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                    if (++count % FLUSH_EVERY_ROWS == 0) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Write order export failed", e);
+            }
+            return count;
+        });
+
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+        return rows == null ? 0 : rows;
+    }
+
+    private static List<String> csvValues(OrderFeedRow row) {
+        return Arrays.asList(
+                str(row.coId()), row.coOrderNo(), str(row.productId()), row.pBrand(), row.category(),
+                row.productName(), row.pfName(), amount(row.amount()), row.coRemark(), time(row.coCreatedAt()),
+                str(row.cId()), row.cName(), row.cCode(), str(row.prId()), row.prName(), str(row.prType()),
+                str(row.userId()), row.userEmail(), row.userName(), row.uPhone(), str(row.uStatus()));
+    }
+
+    private static void writeCsvLine(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvField(writer, values.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * RFC 4180：含逗号、引号、换行的字段整体加引号，内部引号双写。
+     * 以 = + - @ 制表符、回车开头的值会被表格软件当公式执行（备注、用户名都是用户输入），先补一个 ' 再做引号处理
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String str(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String amount(BigDecimal value) {
+        return value == null ? null : value.toPlainString();
+    }
+
+    private static String time(LocalDateTime value) {
+        return value == null ? null : CSV_TIME.format(value);
+    }
+}
@@ -1,11 +1,16 @@
 package com.iptnet.consume.service.platform;
 
+import com.iptnet.consume.dto.OrderFeedPage;
+
 import java.util.HashMap;
 import java.util.List;
 
 public interface PlatformService {
 
-    List<HashMap<String, Object>> platformData(Integer platformId);
+    /**
+     * 平台订单明细分页：token 为空取最新一页，否则取 token 之后（更早）的一页；limit 为空用默认页大小
+     */
+    OrderFeedPage platformData(Integer platformId, String token, Integer limit);
 
     List<HashMap<String, Object>> platformList();
 
@@ -1,10 +1,15 @@
 package com.iptnet.consume.service.platform.impl;
 
+import com.iptnet.consume.dto.OrderFeedPage;
+import com.iptnet.consume.dto.OrderFeedRow;
 import com.iptnet.consume.mapper.PlatformDataMapper;
 import com.iptnet.consume.service.platform.PlatformService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 
@@ -14,10 +19,57 @@ public class PlatformServiceImpl  implements PlatformService {
     @Autowired
     PlatformDataMapper platformDataMapper;
 
+    @Value("${business.feed.page-size:200}")
+    private int defaultPageSize;
+
+    @Value("${business.feed.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * 续页 token：平台 id + 上一页最后一行的 co.id，Base64 编码后对前端不透明；带平台 id 防止拿别的平台的 token 来翻页
+     */
+    private record FeedToken(int platformId, long beforeId) {
+
+        String encode() {
+            String raw = platformId + ":" + beforeId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static FeedToken decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split(":");
+                return new FeedToken(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("cursor 无效");
+            }
+        }
+    }
 
     @Override
-    public List<HashMap<String, Object>> platformData(Integer platformId) {
-        return platformDataMapper.platformData(platformId);
+    public OrderFeedPage platformData(Integer platformId, String token, Integer limit) {
+        if (platformId == null || platformId <= 0 || platformDataMapper.countActivePlatform(platformId) == 0) {
+            throw new IllegalArgumentException("platformId 无效");
+        }
+        Long beforeId = null;
+        if (token != null && !token.isBlank()) {
+            FeedToken decoded = FeedToken.decode(token);
+            if (decoded.platformId() != platformId) {
+                throw new IllegalArgumentException("cursor 与平台不匹配");
+            }
+            beforeId = decoded.beforeId();
+        }
+        int size = limit == null ? defaultPageSize : limit;
+        size = Math.max(1, Math.min(size, maxPageSize));
+
+        // 多取一行判断是否还有下一页，不额外 count
+        List<OrderFeedRow> rows = platformDataMapper.pagePlatformOrders(platformId, beforeId, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+        String nextToken = hasMore ? new FeedToken(platformId, rows.getLast().coId()).encode() : null;
+        return new OrderFeedPage(rows, nextToken, hasMore);
     }
 
     @Override
@@ -2,6 +2,7 @@ package com.iptnet.consume.service.product.impl;
 
 import com.iptnet.consume.mapper.ProductMapper;
 import com.iptnet.consume.service.product.ProductService;
+import com.iptnet.consume.service.stock.StockReservationService;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ import java.util.List;
 public class ProductServiceImpl implements ProductService {
 
     private final ProductMapper productMapper;
+    private final StockReservationService stockReservationService;
 
 
     @Override
@@ -47,7 +49,9 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public Integer delete(Integer status, Integer productId) {
-        return productMapper.delete(status, productId);
+        Integer rows = productMapper.delete(status, productId);
+        stockReservationService.invalidate(productId);
+        return rows;
     }
 
     @Override
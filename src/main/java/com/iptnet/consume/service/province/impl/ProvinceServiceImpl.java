@@ -1,5 +1,6 @@
 package com.iptnet.consume.service.province.impl;
 
+import com.iptnet.consume.dto.OrderFeedRow;
 import com.iptnet.consume.mapper.ProvinceDataMapper;
 import com.iptnet.consume.service.province.ProvinceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +17,7 @@ public class ProvinceServiceImpl implements ProvinceService {
 
 
     @Override
-    public List<HashMap<String, Object>> provinceData(Integer provinceId, Integer cityId) {
+    public List<OrderFeedRow> provinceData(Integer provinceId, Integer cityId) {
         return provinceDataMapper.provinceData(provinceId,cityId);
     }
 
@@ -1,13 +1,21 @@
 package com.iptnet.consume.service.rocketmq.impl;
 
+import com.iptnet.consume.service.dashboard.DashboardAggregateCoalescer;
+import com.iptnet.consume.utils.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -19,6 +27,21 @@ public class MqProducer {
     private static final String DELAY_CLOSE_TOPIC = "delay_close_order_topic";
     private static final String DASHBOARD_AGGREGATE_TOPIC = "dashboard_aggregate_topic";
 
+    @Value("${business.dashboard.aggregate-window-ms:500}")
+    private long aggregateWindowMs;
+
+    private DashboardAggregateCoalescer aggregateCoalescer;
+
+    @PostConstruct
+    public void init() {
+        aggregateCoalescer = new DashboardAggregateCoalescer("mq", aggregateWindowMs, this::sendDashboardAggregateBatch);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        aggregateCoalescer.close();
+    }
+
     public void sendDelayCloseOrder(String orderNo) {
         Map<String, Object> map = new HashMap<>();
         map.put("orderNo", orderNo);
@@ -37,15 +60,66 @@ public class MqProducer {
         }
     }
 
+    /**
+     * 一次 checkout 的多个订单共用同一个 pay_deadline，合并成一条延时消息发送。
+     */
+    public void sendDelayCloseOrders(List<String> orderNos) {
+        if (orderNos == null || orderNos.isEmpty()) {
+            return;
+        }
+        if (orderNos.size() == 1) {
+            sendDelayCloseOrder(orderNos.getFirst());
+            return;
+        }
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("orderNos", new ArrayList<>(orderNos));
+
+        Message<Map<String, Object>> msg = MessageBuilder
+                .withPayload(map)
+                .setHeader("KEYS", String.join(" ", orderNos))
+                .build();
+
+        int delayLevel = 6; // about 2 minutes in default RocketMQ delay level config
+        try {
+            rocketMQTemplate.syncSend(DELAY_CLOSE_TOPIC, msg, 3000, delayLevel);
+        } catch (Exception e) {
+            // If MQ is unavailable, order timeout will still be handled by scheduled scanner.
+            log.warn("send batch delay close message failed, orders={}", orderNos.size(), e);
+        }
+    }
+
+    /**
+     * 订单事件触发看板重建：事务提交后进入合并窗口，窗口内的触发合成一条消息发送
+     */
     public void sendDashboardAggregate(Integer userId, String reason) {
+        sendDashboardAggregate(userId != null && userId > 0 ? List.of(userId) : List.of(), reason);
+    }
+
+    /**
+     * 一次流转涉及多个用户时（批量关单）带上全部用户，消费方只重算这些用户的看板
+     */
+    public void sendDashboardAggregate(Collection<Integer> userIds, String reason) {
+        List<Integer> safeUserIds = userIds == null ? List.of() : List.copyOf(userIds);
+        TransactionUtils.afterCommit(() -> aggregateCoalescer.submit(safeUserIds, reason));
+    }
+
+    public Map<String, Object> aggregateStats() {
+        return aggregateCoalescer.stats();
+    }
+
+    private void sendDashboardAggregateBatch(DashboardAggregateCoalescer.Batch batch) {
         Map<String, Object> payload = new HashMap<>();
-        payload.put("reason", reason == null || reason.isBlank() ? "ORDER_EVENT" : reason);
+        payload.put("reason", batch.reason());
         payload.put("ts", System.currentTimeMillis());
-        if (userId != null && userId > 0) {
-            payload.put("userId", userId);
+        payload.put("triggers", batch.triggers());
+        if (batch.userIds().size() == 1) {
+            payload.put("userId", batch.userIds().iterator().next());
+        } else if (!batch.userIds().isEmpty()) {
+            payload.put("userIds", new ArrayList<>(batch.userIds()));
         }
 
-        String key = (userId == null ? "global" : String.valueOf(userId)) + ":" + payload.get("ts");
+        String key = (batch.userIds().isEmpty() ? "global" : "users" + batch.userIds().size()) + ":" + payload.get("ts");
         Message<Map<String, Object>> msg = MessageBuilder
                 .withPayload(payload)
                 .setHeader("KEYS", key)
@@ -54,7 +128,7 @@ public class MqProducer {
         try {
             rocketMQTemplate.syncSend(DASHBOARD_AGGREGATE_TOPIC, msg, 2000);
         } catch (Exception e) {
-            log.warn("send dashboard aggregate message failed, userId={}, reason={}", userId, reason, e);
+            log.warn("send dashboard aggregate message failed, users={}, reason={}", batch.userIds().size(), batch.reason(), e);
         }
     }
 }
@@ -1,13 +1,15 @@
 package com.iptnet.consume.service.rocketmq.impl;
 
-import com.iptnet.consume.mapper.TransactionOrderMapper;
+import com.iptnet.consume.service.transactionOrder.TransactionOrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -16,56 +18,38 @@ import java.util.Map;
 @RocketMQMessageListener(topic = "delay_close_order_topic", consumerGroup = "test-consumer-group")
 public class RocketCloseOrders implements RocketMQListener<Map<String, Object>> {
 
-    private final TransactionOrderMapper transactionOrderMapper;
-    private final MqProducer mqProducer;
+    private final TransactionOrderService transactionOrderService;
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void onMessage(Map<String, Object> msg) {
-        String orderNo = String.valueOf(msg.get("orderNo"));
-        Map<String, Object> beforeMeta = transactionOrderMapper.selectOrderMeta(orderNo);
-        Integer userId = asNullableInt(beforeMeta == null ? null : beforeMeta.get("user_id"));
-        Integer productId = asNullableInt(beforeMeta == null ? null : beforeMeta.get("product_id"));
-        Integer quantity = asNullableInt(beforeMeta == null ? null : beforeMeta.get("quantity"));
-        int safeQuantity = quantity == null || quantity <= 0 ? 1 : quantity;
-
-        int rows = transactionOrderMapper.closeIfUnpaid(orderNo);
-        if (rows > 0) {
-            if (productId != null && productId > 0) {
-                transactionOrderMapper.releaseProductStock(productId, safeQuantity);
-            }
-            if (userId != null && userId > 0) {
-                transactionOrderMapper.insertOrderOperateLog(
-                        orderNo,
-                        userId,
-                        "TIMEOUT_CLOSE",
-                        1,
-                        3,
-                        "SYSTEM",
-                        "mq-delay",
-                        "Order timeout by delayed mq message, quantity=" + safeQuantity
-                );
-            }
-            log.info("timeout close order success, orderNo={}", orderNo);
-            mqProducer.sendDashboardAggregate(userId, "TIMEOUT_DELAY");
-        } else {
-            log.debug("timeout close order ignored, orderNo={}", orderNo);
+        List<String> orderNos = orderNos(msg);
+        if (orderNos.isEmpty()) {
+            return;
         }
+        // 延时消息关单在拆成共用关单路径之前一直按 SYSTEM 记操作日志，保持不变
+        int rows = transactionOrderService.closeTimedOutOrders(orderNos, "SYSTEM", "mq-delay");
+        log.info("timeout close by delayed message, orders={}, closed={}", orderNos.size(), rows);
     }
 
-    private Integer asNullableInt(Object value) {
-        if (value == null) {
-            return null;
+    /**
+     * 兼容单条 {"orderNo": "..."} 与 checkout 批量 {"orderNos": [...]} 两种消息格式
+     */
+    private List<String> orderNos(Map<String, Object> msg) {
+        if (msg == null) {
+            return List.of();
         }
-        if (value instanceof Number number) {
-            int parsed = number.intValue();
-            return parsed > 0 ? parsed : null;
+        List<String> result = new ArrayList<>();
+        if (msg.get("orderNos") instanceof Collection<?> batch) {
+            for (Object item : batch) {
+                if (item != null && !String.valueOf(item).isBlank()) {
+                    result.add(String.valueOf(item).trim());
+                }
+            }
         }
-        try {
-            int parsed = Integer.parseInt(String.valueOf(value));
-            return parsed > 0 ? parsed : null;
-        } catch (Exception ignored) {
-            return null;
+        Object single = msg.get("orderNo");
+        if (single != null && !String.valueOf(single).isBlank()) {
+            result.add(String.valueOf(single).trim());
         }
+        return result;
     }
 }
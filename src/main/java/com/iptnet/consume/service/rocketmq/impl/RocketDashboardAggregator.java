@@ -7,6 +7,9 @@ import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -19,9 +22,32 @@ public class RocketDashboardAggregator implements RocketMQListener<Map<String, O
 
     @Override
     public void onMessage(Map<String, Object> msg) {
-        Integer userId = asNullableInt(msg == null ? null : msg.get("userId"));
         String reason = msg == null ? "UNKNOWN" : String.valueOf(msg.getOrDefault("reason", "UNKNOWN"));
-        dashboardAggregateService.rebuildAndPublish(userId, reason);
+        // 多个实例各自发来的消息在这里再合并一次
+        dashboardAggregateService.requestRebuild(userIds(msg), reason);
+    }
+
+    /**
+     * 兼容单用户 {"userId": 1} 与合并后的 {"userIds": [1, 2]} 两种消息格式
+     */
+    private List<Integer> userIds(Map<String, Object> msg) {
+        if (msg == null) {
+            return List.of();
+        }
+        List<Integer> result = new ArrayList<>();
+        if (msg.get("userIds") instanceof Collection<?> batch) {
+            for (Object item : batch) {
+                Integer userId = asNullableInt(item);
+                if (userId != null) {
+                    result.add(userId);
+                }
+            }
+        }
+        Integer single = asNullableInt(msg.get("userId"));
+        if (single != null) {
+            result.add(single);
+        }
+        return result;
     }
 
     private Integer asNullableInt(Object value) {
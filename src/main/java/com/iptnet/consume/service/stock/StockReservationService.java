@@ -0,0 +1,28 @@
+package com.iptnet.consume.service.stock;
+
+import java.util.Map;
+
+public interface StockReservationService {
+
+    /**
+     * 按商品预占库存，任一商品不足则整体失败并抛出 "Insufficient stock: {productId}"
+     */
+    void reserve(Map<Integer, Integer> quantities);
+
+    /**
+     * 归还库存（取消 / 超时关单）
+     */
+    void release(Integer productId, int quantity);
+
+    void release(Map<Integer, Integer> quantities);
+
+    /**
+     * 把账本里累计的净变化量写回 product.stock，返回写回的商品数
+     */
+    int reconcile();
+
+    /**
+     * 商品上下架后丢弃账本，下次预占时按 product 表重新加载
+     */
+    void invalidate(Integer productId);
+}
@@ -0,0 +1,360 @@
+package com.iptnet.consume.service.stock.impl;
+
+import com.iptnet.consume.dto.StockSnapshot;
+import com.iptnet.consume.mapper.TransactionOrderMapper;
+import com.iptnet.consume.service.stock.StockReservationService;
+import com.iptnet.consume.utils.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis 库存账本：下单时用 Lua 原子预占，不再对 product 行加锁；
+ * 预占 / 归还产生的净变化量记在 delta hash 中，由 {@link #reconcile()} 异步写回 MySQL。
+ *
+ * <p>key 统一带 {ledger} hash tag，Redis Cluster 下脚本涉及的 key 落在同一个 slot。</p>
+ *
+ * <p>每次把 delta 切成 inflight 时分配一个批次 id，写回 MySQL 时在同一个事务里登记到
+ * stock_reconcile_batch，已登记的批次不会再写第二次。inflight 的每次切换都会递增 epoch，
+ * 加载账本时先记下 epoch 和批次 id、再一次性读出库存和该批次是否已写回，epoch 变了就重读，
+ * 这样账本既不会把已写回的 inflight 再加一遍，也不会漏掉刚清掉的那一批。</p>
+ *
+ * <p>归还库存时 Redis 报错，脚本可能其实已经执行（只是没收到回复），直接回写 MySQL 会和之后写回的
+ * delta 重复。所以每次归还带一个标记 key，脚本只在 SET NX 成功时生效；回写 MySQL 的那次归还
+ * 用同一个 id 登记到 stock_reconcile_batch，并记进待结算列表，由 {@link #reconcile()} 在 Redis 恢复后
+ * 结算：标记已存在说明脚本执行过，从 delta 里扣回这部分；不存在就占住标记，让迟到的脚本不再生效。
+ * 两种情况都删掉账本 key，下次按数据库重新加载。待结算列表只在进程内，进程重启会丢，靠人工核对兜底。</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final String KEY_LEDGER_PREFIX = "stock:{ledger}:product:";
+    private static final String KEY_DELTA = "stock:{ledger}:delta";
+    private static final String KEY_INFLIGHT = "stock:{ledger}:inflight";
+    private static final String KEY_INFLIGHT_BATCH = "stock:{ledger}:inflight:batch";
+    private static final String KEY_EPOCH = "stock:{ledger}:epoch";
+    private static final String KEY_RELEASE_PREFIX = "stock:{ledger}:release:";
+
+    private static final int LOAD_ATTEMPTS = 3;
+    private static final int BATCH_PRUNE_LIMIT = 500;
+    private static final Duration BATCH_RETENTION = Duration.ofDays(1);
+    private static final Duration RELEASE_MARKER_TTL = Duration.ofHours(1);
+
+    /** 账本未初始化返回 -1，库存不足返回 0，成功返回 1 */
+    private static final DefaultRedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local stock = redis.call('GET', KEYS[1])
+            if not stock then return -1 end
+            local qty = tonumber(ARGV[2])
+            if tonumber(stock) < qty then return 0 end
+            redis.call('DECRBY', KEYS[1], qty)
+            redis.call('HINCRBY', KEYS[2], ARGV[1], -qty)
+            return 1
+            """, Long.class);
+
+    /**
+     * 账本 = 数据库库存 + 尚未写回的净变化量；inflight 只在读库快照里还没写回时才算进去。
+     * 读库期间 inflight 发生过切换（epoch 变了）返回 -2，由调用方重读
+     */
+    private static final DefaultRedisScript<Long> INIT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end
+            if (redis.call('GET', KEYS[5]) or '0') ~= ARGV[3] then return -2 end
+            local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+            if ARGV[4] == '0' and redis.call('EXISTS', KEYS[4]) == 1 then
+              pending = pending + tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+            end
+            redis.call('SET', KEYS[1], tonumber(ARGV[2]) + pending)
+            return 1
+            """, Long.class);
+
+    /** 账本未加载时只记 delta，加载时会把它算进去；KEYS[3] 是这次归还的标记，已存在说明处理过 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if not redis.call('SET', KEYS[3], '1', 'NX', 'PX', ARGV[3]) then return 0 end
+            local qty = tonumber(ARGV[2])
+            if redis.call('EXISTS', KEYS[1]) == 1 then redis.call('INCRBY', KEYS[1], qty) end
+            redis.call('HINCRBY', KEYS[2], ARGV[1], qty)
+            return 1
+            """, Long.class);
+
+    /**
+     * 结算一次已回写 MySQL 的归还：KEYS[1]=标记, KEYS[2]=delta, KEYS[3]=账本；
+     * 标记已存在说明 RELEASE_SCRIPT 也执行过，从 delta 扣回，返回 1；否则占住标记，返回 0
+     */
+    private static final DefaultRedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>("""
+            local applied = 0
+            if not redis.call('SET', KEYS[1], '1', 'NX', 'PX', ARGV[3]) then
+              redis.call('HINCRBY', KEYS[2], ARGV[1], -tonumber(ARGV[2]))
+              applied = 1
+            end
+            redis.call('DEL', KEYS[3])
+            return applied
+            """, Long.class);
+
+    /**
+     * 把 delta 整体切换成 inflight 并分配批次 id，返回 [批次 id, 商品, 变化量, ...]；
+     * 上一轮遗留的 inflight 沿用原来的批次 id 优先处理
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+              if redis.call('EXISTS', KEYS[1]) == 0 then return {} end
+              redis.call('RENAME', KEYS[1], KEYS[2])
+              redis.call('SET', KEYS[3], ARGV[1])
+              redis.call('INCR', KEYS[4])
+            end
+            local batch = redis.call('GET', KEYS[3])
+            if not batch then
+              batch = ARGV[1]
+              redis.call('SET', KEYS[3], batch)
+              redis.call('INCR', KEYS[4])
+            end
+            local rows = redis.call('HGETALL', KEYS[2])
+            table.insert(rows, 1, batch)
+            return rows
+            """, List.class);
+
+    /** 批次已在 MySQL 提交后清掉 inflight；批次 id 对不上说明已被处理过，什么都不做 */
+    private static final DefaultRedisScript<Long> FINISH_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[2]) ~= ARGV[1] then return 0 end
+            redis.call('DEL', KEYS[1], KEYS[2])
+            redis.call('INCR', KEYS[3])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final TransactionOrderMapper transactionOrderMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${business.stock.ledger-enabled:true}")
+    private boolean ledgerEnabled;
+
+    /** 已回写 MySQL、等 Redis 恢复后结算的归还，key 是归还标记 */
+    private final Map<String, FallbackRelease> unsettled = new ConcurrentHashMap<>();
+
+    private record FallbackRelease(Integer productId, int quantity) {}
+
+    @Override
+    public void reserve(Map<Integer, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return;
+        }
+        // 固定按商品 id 顺序处理，和 MySQL 扣减保持一致的加锁顺序
+        Map<Integer, Integer> ordered = new TreeMap<>(quantities);
+
+        if (!ledgerEnabled) {
+            for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+                int stockRows = transactionOrderMapper.deductProductStock(entry.getKey(), entry.getValue());
+                if (stockRows != 1) {
+                    throw new RuntimeException("Insufficient stock: " + entry.getKey());
+                }
+            }
+            return;
+        }
+
+        Map<Integer, Integer> reserved = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+            if (!tryReserve(entry.getKey(), entry.getValue())) {
+                releaseNow(reserved);
+                throw new RuntimeException("Insufficient stock: " + entry.getKey());
+            }
+            reserved.put(entry.getKey(), entry.getValue());
+        }
+        // 订单事务回滚时把已预占的库存还回账本
+        TransactionUtils.afterRollback(() -> releaseNow(reserved));
+    }
+
+    @Override
+    public void release(Integer productId, int quantity) {
+        if (productId == null || productId <= 0 || quantity <= 0) {
+            return;
+        }
+        release(Map.of(productId, quantity));
+    }
+
+    @Override
+    public void release(Map<Integer, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> ordered = new TreeMap<>(quantities);
+        if (!ledgerEnabled) {
+            for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null || entry.getValue() <= 0) continue;
+                transactionOrderMapper.releaseProductStock(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        // 关单 / 取消提交成功后才归还，避免事务回滚后账本多出库存
+        TransactionUtils.afterCommit(() -> releaseNow(ordered));
+    }
+
+    @Override
+    public int reconcile() {
+        if (!ledgerEnabled) {
+            return 0;
+        }
+        settleFallbackReleases();
+        List<?> raw = redis.execute(DRAIN_SCRIPT,
+                List.of(KEY_DELTA, KEY_INFLIGHT, KEY_INFLIGHT_BATCH, KEY_EPOCH),
+                UUID.randomUUID().toString());
+        if (raw == null || raw.isEmpty()) {
+            return 0;
+        }
+
+        String batchId = String.valueOf(raw.getFirst());
+        Map<Integer, Integer> deltas = new TreeMap<>();
+        for (int i = 1; i + 1 < raw.size(); i += 2) {
+            int delta = Integer.parseInt(String.valueOf(raw.get(i + 1)));
+            if (delta != 0) {
+                deltas.put(Integer.parseInt(String.valueOf(raw.get(i))), delta);
+            }
+        }
+
+        // 整批在一个事务里写回；失败时 inflight 原样保留，下一轮用同一个批次 id 重试
+        Integer applied = transactionTemplate.execute(status -> {
+            if (transactionOrderMapper.insertStockBatch(batchId, deltas.size()) == 0) {
+                log.info("stock batch already applied, batchId={}", batchId);
+                return 0;
+            }
+            for (Map.Entry<Integer, Integer> entry : deltas.entrySet()) {
+                transactionOrderMapper.applyStockDelta(entry.getKey(), entry.getValue());
+            }
+            return deltas.size();
+        });
+        redis.execute(FINISH_SCRIPT, List.of(KEY_INFLIGHT, KEY_INFLIGHT_BATCH, KEY_EPOCH), batchId);
+        pruneBatches();
+        return applied == null ? 0 : applied;
+    }
+
+    @Override
+    public void invalidate(Integer productId) {
+        if (!ledgerEnabled || productId == null || productId <= 0) {
+            return;
+        }
+        redis.delete(ledgerKey(productId));
+    }
+
+    private boolean tryReserve(Integer productId, int quantity) {
+        List<String> keys = List.of(ledgerKey(productId), KEY_DELTA);
+        String[] args = {String.valueOf(productId), String.valueOf(quantity)};
+
+        Long result = redis.execute(RESERVE_SCRIPT, keys, args);
+        if (result != null && result == -1L) {
+            if (!loadLedger(productId)) {
+                return false;
+            }
+            result = redis.execute(RESERVE_SCRIPT, keys, args);
+        }
+        return result != null && result == 1L;
+    }
+
+    private boolean loadLedger(Integer productId) {
+        List<String> keys = List.of(ledgerKey(productId), KEY_DELTA, KEY_INFLIGHT, KEY_INFLIGHT_BATCH, KEY_EPOCH);
+        for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+            List<String> state = redis.opsForValue().multiGet(List.of(KEY_EPOCH, KEY_INFLIGHT_BATCH));
+            String epoch = state == null || state.get(0) == null ? "0" : state.get(0);
+            String batchId = state == null ? null : state.get(1);
+
+            StockSnapshot snapshot = transactionOrderMapper.selectStockSnapshot(productId, batchId);
+            if (snapshot == null || snapshot.stock() == null) {
+                // 商品不存在或已下架
+                return false;
+            }
+            Long result = redis.execute(INIT_SCRIPT, keys,
+                    String.valueOf(productId), String.valueOf(snapshot.stock()), epoch,
+                    Boolean.TRUE.equals(snapshot.batchApplied()) ? "1" : "0");
+            if (result == null || result != -2L) {
+                return true;
+            }
+        }
+        log.warn("load stock ledger kept racing with reconcile, productId={}", productId);
+        return false;
+    }
+
+    private void pruneBatches() {
+        try {
+            transactionOrderMapper.deleteStockBatchesBefore(LocalDateTime.now().minus(BATCH_RETENTION), BATCH_PRUNE_LIMIT);
+        } catch (Exception e) {
+            log.warn("prune stock reconcile batches failed", e);
+        }
+    }
+
+    private void releaseNow(Map<Integer, Integer> quantities) {
+        String releaseId = UUID.randomUUID().toString();
+        Map<String, FallbackRelease> failed = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() <= 0) continue;
+            String marker = KEY_RELEASE_PREFIX + releaseId + ":" + entry.getKey();
+            try {
+                redis.execute(RELEASE_SCRIPT,
+                        List.of(ledgerKey(entry.getKey()), KEY_DELTA, marker),
+                        String.valueOf(entry.getKey()), String.valueOf(entry.getValue()),
+                        String.valueOf(RELEASE_MARKER_TTL.toMillis()));
+            } catch (Exception e) {
+                failed.put(marker, new FallbackRelease(entry.getKey(), entry.getValue()));
+                log.warn("release stock to ledger failed, productId={}, quantity={}", entry.getKey(), entry.getValue(), e);
+            }
+        }
+        if (!failed.isEmpty()) {
+            releaseToDatabase(releaseId, failed);
+        }
+    }
+
+    /**
+     * Redis 不可用时直接回写 MySQL，保证库存不丢。可能在订单事务的 afterCommit 里被调用，
+     * 所以开一个新事务；批次 id 用归还 id，同一次归还不会写第二遍
+     */
+    private void releaseToDatabase(String releaseId, Map<String, FallbackRelease> releases) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNew.executeWithoutResult(status -> {
+            if (transactionOrderMapper.insertStockBatch("release:" + releaseId, releases.size()) == 0) {
+                return;
+            }
+            for (FallbackRelease release : releases.values()) {
+                transactionOrderMapper.releaseProductStock(release.productId(), release.quantity());
+            }
+        });
+        unsettled.putAll(releases);
+    }
+
+    private void settleFallbackReleases() {
+        for (Map.Entry<String, FallbackRelease> entry : unsettled.entrySet()) {
+            FallbackRelease release = entry.getValue();
+            try {
+                Long applied = redis.execute(SETTLE_SCRIPT,
+                        List.of(entry.getKey(), KEY_DELTA, ledgerKey(release.productId())),
+                        String.valueOf(release.productId()), String.valueOf(release.quantity()),
+                        String.valueOf(RELEASE_MARKER_TTL.toMillis()));
+                unsettled.remove(entry.getKey());
+                if (applied != null && applied == 1L) {
+                    log.info("fallback stock release had reached the ledger, compensated, productId={}, quantity={}",
+                            release.productId(), release.quantity());
+                }
+            } catch (Exception e) {
+                log.warn("settle fallback stock release failed, retry next round, productId={}",
+                        release.productId(), e);
+                return;
+            }
+        }
+    }
+
+    private String ledgerKey(Integer productId) {
+        return KEY_LEDGER_PREFIX + productId;
+    }
+}
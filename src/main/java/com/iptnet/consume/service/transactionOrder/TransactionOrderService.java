@@ -1,14 +1,16 @@
 package com.iptnet.consume.service.transactionOrder;
 
 import com.iptnet.consume.dto.OrderEvent;
+import com.iptnet.consume.dto.OrderView;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface TransactionOrderService {
 
-    List<HashMap<String, Object>> insertOrder(List<OrderEvent> orders);
+    List<OrderView> insertOrder(List<OrderEvent> orders);
 
     Integer deleteCartItem(Integer userId, Integer productId, Integer cityId);
 
@@ -16,15 +18,26 @@ public interface TransactionOrderService {
 
     void cartItem(Integer userId, Integer productId, Integer cityId, BigDecimal amount);
 
-    List<HashMap<String, Object>> updateOrder(List<OrderEvent> orders);
+    List<OrderView> updateOrder(List<OrderEvent> orders);
 
-    HashMap<String, Object> cancelOrder(Integer uid, String orderNo);
+    OrderView cancelOrder(Integer uid, String orderNo);
 
-    HashMap<String, Object> selectOneOrder(Integer uid, String orderNo);
+    OrderView selectOneOrder(Integer uid, String orderNo);
 
-    List<HashMap<String, Object>> selectAllOrders(Integer uid);
+    List<OrderView> selectAllOrders(Integer uid);
 
-    List<HashMap<String, Object>> selectRecentOrders(Integer uid, Integer limit, Integer status);
+    List<OrderView> selectRecentOrders(Integer uid, Integer limit, Integer status);
 
     int closeExpiredOrders();
+
+    /**
+     * @param operatorType 写进操作日志的操作方类型：时间轮为 JOB，延时消息为 SYSTEM
+     * @param operatorId   触发来源，如 timeout-wheel / mq-delay
+     */
+    int closeTimedOutOrders(List<String> orderNos, String operatorType, String operatorId);
+
+    /**
+     * 超时关单的累计量和吞吐，按触发来源分开，给看板 metrics 接口用
+     */
+    Map<String, Object> closeStats();
 }
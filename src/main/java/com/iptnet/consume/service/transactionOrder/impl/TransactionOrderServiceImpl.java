@@ -1,46 +1,79 @@
 package com.iptnet.consume.service.transactionOrder.impl;
 
 import com.iptnet.consume.dao.User;
+import com.iptnet.consume.dto.OrderCreateRow;
 import com.iptnet.consume.dto.OrderEvent;
+import com.iptnet.consume.dto.OrderMeta;
+import com.iptnet.consume.dto.OrderOperateLogRow;
+import com.iptnet.consume.dto.OrderTransitionEvent;
+import com.iptnet.consume.dto.OrderView;
+import com.iptnet.consume.job.OrderTimeoutWheel;
 import com.iptnet.consume.mapper.TransactionOrderMapper;
 import com.iptnet.consume.mapper.UserMapper;
-import com.iptnet.consume.service.dashboard.DashboardCacheService;
+import com.iptnet.consume.service.dashboard.RecentOrdersCacheService;
 import com.iptnet.consume.service.rocketmq.impl.MqProducer;
+import com.iptnet.consume.service.stock.StockReservationService;
 import com.iptnet.consume.service.transactionOrder.TransactionOrderService;
+import com.iptnet.consume.utils.ListUtils;
 import com.iptnet.consume.utils.SnowflakeIdGenerator;
 import com.iptnet.consume.utils.ThreadLocalUtil;
+import com.iptnet.consume.utils.TransactionUtils;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @RequiredArgsConstructor
 @Service
+@Slf4j
 public class TransactionOrderServiceImpl implements TransactionOrderService {
 
     private static final Set<String> SUPPORTED_PAY_METHODS = Set.of("MOCK", "ALIPAY", "WECHAT", "BANKCARD");
+    private static final int BATCH_INSERT_SIZE = 500;
+    private static final int CLOSE_BATCH_SIZE = 500;
 
     private final TransactionOrderMapper transactionOrderMapper;
     private final SnowflakeIdGenerator idGenerator;
     private final UserMapper userMapper;
     private final MqProducer mqProducer;
-    private final DashboardCacheService dashboardCacheService;
+    private final RecentOrdersCacheService recentOrdersCacheService;
+    private final StockReservationService stockReservationService;
+    private final OrderTimeoutWheel orderTimeoutWheel;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${business.order.payment-timeout-seconds:120}")
     private long paymentTimeoutSeconds;
 
+    // 超时关单统计：按触发来源（timeout-scan / timeout-wheel / mq-delay）累计关单数，扫描任务另记每轮吞吐
+    private final Map<String, LongAdder> closedBySource = new ConcurrentHashMap<>();
+    private final LongAdder scanRuns = new LongAdder();
+    private final LongAdder scanBatches = new LongAdder();
+    private volatile int lastScanRows;
+    private volatile long lastScanCostMs;
+    private volatile long lastScanRowsPerSec;
+    private volatile long maxScanRowsPerSec;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public List<HashMap<String, Object>> insertOrder(List<OrderEvent> orders) {
+    public List<OrderView> insertOrder(List<OrderEvent> orders) {
         if (orders == null || orders.isEmpty()) {
             throw new RuntimeException("No order to submit");
         }
@@ -48,7 +81,11 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
         Integer uid = currentUid();
         checkUserExists(uid);
 
-        List<String> createdOrderNos = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.now();
+        LocalDateTime payDeadline = createdAt.plusSeconds(Math.max(30L, paymentTimeoutSeconds));
+
+        List<OrderCreateRow> createRows = new ArrayList<>(orders.size());
+        Map<Integer, Integer> deductCounter = new TreeMap<>();
         for (OrderEvent order : orders) {
             Integer productId = order == null ? null : order.getProductId();
             Integer cityId = order == null ? null : order.getCityId();
@@ -67,18 +104,10 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             }
 
             int safeQuantity = normalizeQuantity(quantity);
-            int stockRows = transactionOrderMapper.deductProductStock(productId, safeQuantity);
-            if (stockRows != 1) {
-                throw new RuntimeException("Insufficient stock: " + productId);
-            }
-
-            String orderNo = String.valueOf(idGenerator.nextId());
-            LocalDateTime createdAt = LocalDateTime.now();
-            LocalDateTime payDeadline = createdAt.plusSeconds(Math.max(30L, paymentTimeoutSeconds));
-
-            int rows = transactionOrderMapper.insertOrder(
+            deductCounter.merge(productId, safeQuantity, Integer::sum);
+            createRows.add(new OrderCreateRow(
                     uid,
-                    orderNo,
+                    String.valueOf(idGenerator.nextId()),
                     productId,
                     cityId,
                     safeQuantity,
@@ -86,30 +115,48 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                     safeRemark(remark),
                     createdAt,
                     payDeadline
-            );
-            if (rows != 1) {
-                throw new RuntimeException("Create order failed: " + orderNo);
+            ));
+        }
+
+        stockReservationService.reserve(deductCounter);
+
+        for (List<OrderCreateRow> chunk : ListUtils.partition(createRows, BATCH_INSERT_SIZE)) {
+            int rows = transactionOrderMapper.insertOrders(chunk);
+            if (rows != chunk.size()) {
+                throw new RuntimeException("Create order failed: expected=" + chunk.size() + ", inserted=" + rows);
             }
+        }
 
-            transactionOrderMapper.insertOrderOperateLog(
-                    orderNo,
+        List<OrderOperateLogRow> logRows = new ArrayList<>(createRows.size());
+        List<String> createdOrderNos = new ArrayList<>(createRows.size());
+        List<OrderTransitionEvent.Transition> transitions = new ArrayList<>(createRows.size());
+        for (OrderCreateRow row : createRows) {
+            logRows.add(new OrderOperateLogRow(
+                    row.getOrderNo(),
                     uid,
                     "CREATE_ORDER",
                     null,
                     1,
                     "USER",
                     String.valueOf(uid),
-                    "Create order from cart checkout, quantity=" + safeQuantity
-            );
-
-            mqProducer.sendDelayCloseOrder(orderNo);
-            createdOrderNos.add(orderNo);
+                    "Create order from cart checkout, quantity=" + row.getQuantity()
+            ));
+            createdOrderNos.add(row.getOrderNo());
+            transitions.add(new OrderTransitionEvent.Transition(row.getOrderNo(), uid, row.getProductId(), row.getCityId(), null, 1));
         }
-
-        if (!createdOrderNos.isEmpty()) {
-            mqProducer.sendDashboardAggregate(uid, "CREATE_ORDER");
+        for (List<OrderOperateLogRow> chunk : ListUtils.partition(logRows, BATCH_INSERT_SIZE)) {
+            transactionOrderMapper.insertOrderOperateLogs(chunk);
         }
 
+        eventPublisher.publishEvent(new OrderTransitionEvent("CREATE_ORDER", transitions));
+        mqProducer.sendDelayCloseOrders(createdOrderNos);
+        mqProducer.sendDashboardAggregate(uid, "CREATE_ORDER");
+        TransactionUtils.afterCommit(() -> {
+            for (String orderNo : createdOrderNos) {
+                orderTimeoutWheel.schedule(orderNo, payDeadline);
+            }
+        });
+
         return transactionOrderMapper.selectOrdersByNos(uid, createdOrderNos);
     }
 
@@ -159,15 +206,14 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public List<HashMap<String, Object>> updateOrder(List<OrderEvent> orders) {
+    public List<OrderView> updateOrder(List<OrderEvent> orders) {
         if (orders == null || orders.isEmpty()) {
             throw new RuntimeException("No order selected for pay");
         }
 
-        closeExpiredOrders();
-
         Integer uid = currentUid();
         List<String> successOrderNos = new ArrayList<>();
+        List<OrderTransitionEvent.Transition> transitions = new ArrayList<>();
 
         for (OrderEvent order : orders) {
             String orderNo = order == null ? "" : safeTrim(order.getOrderNo());
@@ -175,17 +221,16 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                 throw new RuntimeException("Order no is empty");
             }
 
-            HashMap<String, Object> meta = transactionOrderMapper.selectOrderMeta(orderNo);
-            if (meta == null || meta.isEmpty()) {
+            OrderMeta meta = transactionOrderMapper.selectOrderMeta(orderNo);
+            if (meta == null) {
                 throw new RuntimeException("Order not found: " + orderNo);
             }
 
-            int orderUserId = asInt(meta.get("user_id"));
-            if (orderUserId != uid) {
+            if (!uid.equals(meta.userId())) {
                 throw new RuntimeException("No permission to pay this order: " + orderNo);
             }
 
-            int status = asInt(meta.get("status"));
+            int status = asInt(meta.status());
             if (status == 2) {
                 successOrderNos.add(orderNo);
                 continue;
@@ -201,14 +246,14 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             }
 
             LocalDateTime paidAt = LocalDateTime.now();
-            LocalDateTime payDeadline = asLocalDateTime(meta.get("pay_deadline"));
+            LocalDateTime payDeadline = meta.payDeadline();
             if (payDeadline != null && paidAt.isAfter(payDeadline)) {
                 int closeRows = transactionOrderMapper.closeIfUnpaid(orderNo);
                 if (closeRows == 1) {
-                    int productId = asInt(meta.get("product_id"));
-                    int quantity = normalizeQuantity(meta.get("quantity"));
+                    int productId = asInt(meta.productId());
+                    int quantity = normalizeQuantity(meta.quantity());
                     if (productId > 0) {
-                        transactionOrderMapper.releaseProductStock(productId, quantity);
+                        stockReservationService.release(productId, quantity);
                     }
                     transactionOrderMapper.insertOrderOperateLog(
                             orderNo,
@@ -220,6 +265,8 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                             "timeout-check",
                             "Order timeout during pay, quantity=" + quantity
                     );
+                    eventPublisher.publishEvent(new OrderTransitionEvent("TIMEOUT_CLOSE", List.of(
+                            new OrderTransitionEvent.Transition(orderNo, uid, productId, meta.cityId(), 1, 3))));
                     mqProducer.sendDashboardAggregate(uid, "TIMEOUT_CLOSE");
                 }
                 throw new RuntimeException("Order timeout: " + orderNo);
@@ -230,8 +277,8 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
 
             int payRows = transactionOrderMapper.payIfUnpaid(uid, orderNo, paymentMethod, paymentNo, paidAt);
             if (payRows != 1) {
-                HashMap<String, Object> latestMeta = transactionOrderMapper.selectOrderMeta(orderNo);
-                int latestStatus = latestMeta == null ? -1 : asInt(latestMeta.get("status"));
+                OrderMeta latestMeta = transactionOrderMapper.selectOrderMeta(orderNo);
+                int latestStatus = latestMeta == null ? -1 : asInt(latestMeta.status());
                 if (latestStatus == 2) {
                     successOrderNos.add(orderNo);
                     continue;
@@ -245,7 +292,7 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                 throw new RuntimeException("Order pay failed: " + orderNo);
             }
 
-            BigDecimal payAmount = asBigDecimal(meta.get("amount"));
+            BigDecimal payAmount = meta.amount() == null ? BigDecimal.ZERO : meta.amount();
             transactionOrderMapper.insertPaymentRecord(
                     paymentNo,
                     orderNo,
@@ -270,8 +317,13 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             );
 
             successOrderNos.add(orderNo);
+            transitions.add(new OrderTransitionEvent.Transition(
+                    orderNo, uid, meta.productId(), meta.cityId(), 1, 2));
         }
 
+        if (!transitions.isEmpty()) {
+            eventPublisher.publishEvent(new OrderTransitionEvent("PAY_ORDER", transitions));
+        }
         if (!successOrderNos.isEmpty()) {
             mqProducer.sendDashboardAggregate(uid, "PAY_ORDER");
         }
@@ -281,7 +333,7 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public HashMap<String, Object> cancelOrder(Integer uid, String orderNo) {
+    public OrderView cancelOrder(Integer uid, String orderNo) {
         checkUserExists(uid);
 
         String safeOrderNo = safeTrim(orderNo);
@@ -289,19 +341,16 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             throw new RuntimeException("Order no is empty");
         }
 
-        closeExpiredOrders();
-
-        HashMap<String, Object> meta = transactionOrderMapper.selectOrderMeta(safeOrderNo);
-        if (meta == null || meta.isEmpty()) {
+        OrderMeta meta = transactionOrderMapper.selectOrderMeta(safeOrderNo);
+        if (meta == null) {
             throw new RuntimeException("Order not found: " + safeOrderNo);
         }
 
-        int orderUserId = asInt(meta.get("user_id"));
-        if (orderUserId != uid) {
+        if (!uid.equals(meta.userId())) {
             throw new RuntimeException("No permission to cancel this order: " + safeOrderNo);
         }
 
-        int status = asInt(meta.get("status"));
+        int status = asInt(meta.status());
         if (status == 2) {
             throw new RuntimeException("Paid order cannot be canceled: " + safeOrderNo);
         }
@@ -309,8 +358,8 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             throw new RuntimeException("Order already timeout: " + safeOrderNo);
         }
         if (status == 4) {
-            HashMap<String, Object> alreadyCanceled = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
-            if (alreadyCanceled == null || alreadyCanceled.isEmpty()) {
+            OrderView alreadyCanceled = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
+            if (alreadyCanceled == null) {
                 throw new RuntimeException("Order not found");
             }
             return alreadyCanceled;
@@ -320,10 +369,15 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
         }
 
         LocalDateTime canceledAt = LocalDateTime.now();
+        LocalDateTime payDeadline = meta.payDeadline();
+        if (payDeadline != null && canceledAt.isAfter(payDeadline)) {
+            // 已过支付期限，交给时间轮关单，这里不再抢着改状态
+            throw new RuntimeException("Order already timeout: " + safeOrderNo);
+        }
         int cancelRows = transactionOrderMapper.cancelIfUnpaid(uid, safeOrderNo, canceledAt);
         if (cancelRows != 1) {
-            HashMap<String, Object> latestMeta = transactionOrderMapper.selectOrderMeta(safeOrderNo);
-            int latestStatus = latestMeta == null ? -1 : asInt(latestMeta.get("status"));
+            OrderMeta latestMeta = transactionOrderMapper.selectOrderMeta(safeOrderNo);
+            int latestStatus = latestMeta == null ? -1 : asInt(latestMeta.status());
             if (latestStatus == 2) {
                 throw new RuntimeException("Order already paid: " + safeOrderNo);
             }
@@ -331,8 +385,8 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                 throw new RuntimeException("Order already timeout: " + safeOrderNo);
             }
             if (latestStatus == 4) {
-                HashMap<String, Object> alreadyCanceled = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
-                if (alreadyCanceled == null || alreadyCanceled.isEmpty()) {
+                OrderView alreadyCanceled = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
+                if (alreadyCanceled == null) {
                     throw new RuntimeException("Order not found");
                 }
                 return alreadyCanceled;
@@ -340,10 +394,10 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             throw new RuntimeException("Cancel order failed: " + safeOrderNo);
         }
 
-        int productId = asInt(meta.get("product_id"));
-        int quantity = normalizeQuantity(meta.get("quantity"));
+        int productId = asInt(meta.productId());
+        int quantity = normalizeQuantity(meta.quantity());
         if (productId > 0) {
-            transactionOrderMapper.releaseProductStock(productId, quantity);
+            stockReservationService.release(productId, quantity);
         }
 
         transactionOrderMapper.insertOrderOperateLog(
@@ -356,19 +410,20 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
                 String.valueOf(uid),
                 "Cancel unpaid order, quantity=" + quantity
         );
+        eventPublisher.publishEvent(new OrderTransitionEvent("CANCEL_ORDER", List.of(
+                new OrderTransitionEvent.Transition(safeOrderNo, uid, productId, meta.cityId(), 1, 4))));
 
         mqProducer.sendDashboardAggregate(uid, "CANCEL_ORDER");
 
-        HashMap<String, Object> order = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
-        if (order == null || order.isEmpty()) {
+        OrderView order = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
+        if (order == null) {
             throw new RuntimeException("Order not found");
         }
         return order;
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public HashMap<String, Object> selectOneOrder(Integer uid, String orderNo) {
+    public OrderView selectOneOrder(Integer uid, String orderNo) {
         if (uid == null || uid <= 0) {
             throw new RuntimeException("Invalid user");
         }
@@ -377,98 +432,201 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
             throw new RuntimeException("Order no is empty");
         }
 
-        closeExpiredOrders();
-
-        HashMap<String, Object> order = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
-        if (order == null || order.isEmpty()) {
+        OrderView order = transactionOrderMapper.selectOneOrder(uid, safeOrderNo);
+        if (order == null) {
             throw new RuntimeException("Order not found");
         }
-        return order;
+        return order.withEffectiveStatus(LocalDateTime.now());
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public List<HashMap<String, Object>> selectAllOrders(Integer uid) {
+    public List<OrderView> selectAllOrders(Integer uid) {
         checkUserExists(uid);
-        closeExpiredOrders();
-        return transactionOrderMapper.selectAllOrders(uid);
+        return applyEffectiveStatus(transactionOrderMapper.selectAllOrders(uid));
     }
 
+    /**
+     * 从用户的最近订单窗口里取，不做五表关联：不带状态取前 limit 条；带状态在整个窗口（最多 500 条）里按有效状态筛，
+     * 只有用户订单比窗口多、窗口里又凑不够 limit 条时才回库查
+     */
     @Override
-    public List<HashMap<String, Object>> selectRecentOrders(Integer uid, Integer limit, Integer status) {
+    public List<OrderView> selectRecentOrders(Integer uid, Integer limit, Integer status) {
         checkUserExists(uid);
 
-        int safeLimit = limit == null ? 30 : Math.max(1, Math.min(500, limit));
+        int safeLimit = limit == null ? 30 : Math.max(1, Math.min(RecentOrdersCacheService.MAX_DEPTH, limit));
         Integer safeStatus = null;
         if (status != null && status >= 1 && status <= 4) {
             safeStatus = status;
         }
 
-        if (safeLimit == 30 && safeStatus == null) {
-            List<HashMap<String, Object>> cached = dashboardCacheService.getRecentOrders(uid);
-            if (cached != null && !cached.isEmpty()) {
-                return cached;
+        if (safeStatus == null) {
+            // 缓存里存库里的原始状态，读出时再按当前时间换算
+            return applyEffectiveStatus(recentOrdersCacheService.window(uid, safeLimit).rows());
+        }
+
+        RecentOrdersCacheService.Window window = recentOrdersCacheService.window(uid, RecentOrdersCacheService.MAX_DEPTH);
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderView> matched = new ArrayList<>(safeLimit);
+        for (OrderView row : window.rows()) {
+            OrderView effective = row.withEffectiveStatus(now);
+            if (safeStatus.equals(effective.status())) {
+                matched.add(effective);
+                if (matched.size() >= safeLimit) {
+                    break;
+                }
             }
         }
+        if (matched.size() >= safeLimit || window.exhaustive()) {
+            return matched;
+        }
+        return applyEffectiveStatus(transactionOrderMapper.selectRecentOrders(uid, safeLimit, safeStatus, now));
+    }
 
-        List<HashMap<String, Object>> rows = transactionOrderMapper.selectRecentOrders(uid, safeLimit, safeStatus);
-        if (safeLimit == 30 && safeStatus == null) {
-            dashboardCacheService.saveRecentOrders(uid, rows);
+    /**
+     * 已过 pay_deadline 但还没被后台关单的订单，对外按超时(3)展示，不在读请求里做任何写操作
+     */
+    private List<OrderView> applyEffectiveStatus(List<OrderView> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return rows;
         }
-        return rows;
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderView> res = new ArrayList<>(rows.size());
+        for (OrderView row : rows) {
+            res.add(row.withEffectiveStatus(now));
+        }
+        return res;
     }
 
+    /**
+     * 按批认领过期订单直到清空：每批一个独立事务，FOR UPDATE SKIP LOCKED 认领后按 id 一次性关单、
+     * 按商品汇总归还库存、批量写日志，多实例同时跑时互不等待。
+     */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int closeExpiredOrders() {
-        LocalDateTime now = LocalDateTime.now();
-        List<HashMap<String, Object>> expiredOrders = transactionOrderMapper.selectExpiredUnpaidOrders(now, 500);
-        if (expiredOrders == null || expiredOrders.isEmpty()) {
+        long start = System.currentTimeMillis();
+        int closedTotal = 0;
+        int batches = 0;
+
+        while (true) {
+            int[] result = transactionTemplate.execute(status -> {
+                List<OrderMeta> claimed =
+                        transactionOrderMapper.claimExpiredUnpaidOrders(LocalDateTime.now(), CLOSE_BATCH_SIZE);
+                return new int[]{claimed.size(),
+                        closeClaimedOrders(claimed, "JOB", "timeout-scan", "Order timeout by scheduled scan",
+                                "TIMEOUT_CLOSE")};
+            });
+            if (result == null || result[0] == 0) {
+                break;
+            }
+            batches += 1;
+            closedTotal += result[1];
+            if (result[0] < CLOSE_BATCH_SIZE) {
+                break;
+            }
+        }
+
+        scanRuns.increment();
+        if (closedTotal > 0) {
+            long costMs = Math.max(1L, System.currentTimeMillis() - start);
+            long rowsPerSec = closedTotal * 1000L / costMs;
+            scanBatches.add(batches);
+            closedBySource.computeIfAbsent("timeout-scan", k -> new LongAdder()).add(closedTotal);
+            lastScanRows = closedTotal;
+            lastScanCostMs = costMs;
+            lastScanRowsPerSec = rowsPerSec;
+            maxScanRowsPerSec = Math.max(maxScanRowsPerSec, rowsPerSec);
+            log.info("expired orders closed, rows={}, batches={}, costMs={}, rowsPerSec={}",
+                    closedTotal, batches, costMs, rowsPerSec);
+            mqProducer.sendDashboardAggregate(List.of(), "TIMEOUT_SCAN");
+        }
+        return closedTotal;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int closeTimedOutOrders(List<String> orderNos, String operatorType, String operatorId) {
+        if (orderNos == null || orderNos.isEmpty()) {
             return 0;
         }
+        // 只关仍未支付且确实过期的订单，重复触发或订单已支付时这里查不到
+        List<OrderMeta> expiredOrders =
+                transactionOrderMapper.selectExpiredUnpaidOrdersByNos(orderNos, LocalDateTime.now());
+        // 延迟关单（MQ 延迟消息 / 时间轮）沿用原来的 TIMEOUT_DELAY，和兜底扫描的 TIMEOUT_CLOSE 区分开
+        int closedRows = closeClaimedOrders(expiredOrders, operatorType, operatorId, "Order timeout by " + operatorId,
+                "TIMEOUT_DELAY");
+        if (closedRows > 0) {
+            Set<Integer> userIds = new LinkedHashSet<>();
+            for (OrderMeta orderMeta : expiredOrders) {
+                userIds.add(orderMeta.userId());
+            }
+            // 统计在事务提交后再记，回滚的那批不算
+            TransactionUtils.afterCommit(() ->
+                    closedBySource.computeIfAbsent(operatorId, k -> new LongAdder()).add(closedRows));
+            mqProducer.sendDashboardAggregate(userIds, "TIMEOUT_DELAY");
+        }
+        return closedRows;
+    }
 
-        Map<Integer, Integer> releaseCounter = new HashMap<>();
-        int closedRows = 0;
+    @Override
+    public Map<String, Object> closeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Long> closed = new TreeMap<>();
+        closedBySource.forEach((source, counter) -> closed.put(source, counter.sum()));
+        stats.put("closedBySource", closed);
+        stats.put("scanRuns", scanRuns.sum());
+        stats.put("scanBatches", scanBatches.sum());
+        stats.put("lastScanRows", lastScanRows);
+        stats.put("lastScanCostMs", lastScanCostMs);
+        stats.put("lastScanRowsPerSec", lastScanRowsPerSec);
+        stats.put("maxScanRowsPerSec", maxScanRowsPerSec);
+        return stats;
+    }
 
-        for (HashMap<String, Object> orderMeta : expiredOrders) {
-            if (orderMeta == null || orderMeta.isEmpty()) continue;
-            String orderNo = safeTrim(String.valueOf(orderMeta.get("order_no")));
-            if (orderNo.isEmpty()) continue;
+    /**
+     * claimedOrders 必须已在当前事务里加了行锁，这样按 id 关单的行数与认领行数一致
+     */
+    private int closeClaimedOrders(List<OrderMeta> claimedOrders, String operatorType, String operatorId, String detail,
+                                   String reason) {
+        if (claimedOrders == null || claimedOrders.isEmpty()) {
+            return 0;
+        }
 
-            int closeRows = transactionOrderMapper.closeIfUnpaid(orderNo);
-            if (closeRows != 1) {
-                continue;
-            }
+        List<Long> ids = new ArrayList<>(claimedOrders.size());
+        Map<Integer, Integer> releaseCounter = new HashMap<>();
+        List<OrderOperateLogRow> logRows = new ArrayList<>(claimedOrders.size());
+        List<OrderTransitionEvent.Transition> transitions = new ArrayList<>(claimedOrders.size());
 
-            closedRows += 1;
+        for (OrderMeta orderMeta : claimedOrders) {
+            ids.add(orderMeta.id());
 
-            int productId = asInt(orderMeta.get("product_id"));
-            int releaseQuantity = normalizeQuantity(orderMeta.get("quantity"));
+            int productId = asInt(orderMeta.productId());
+            int releaseQuantity = normalizeQuantity(orderMeta.quantity());
             if (productId > 0) {
                 releaseCounter.merge(productId, releaseQuantity, Integer::sum);
             }
 
-            int userId = asInt(orderMeta.get("user_id"));
-            transactionOrderMapper.insertOrderOperateLog(
-                    orderNo,
-                    userId,
+            logRows.add(new OrderOperateLogRow(
+                    orderMeta.orderNo(),
+                    orderMeta.userId(),
                     "TIMEOUT_CLOSE",
                     1,
                     3,
-                    "JOB",
-                    "timeout-scan",
-                    "Order timeout by scheduled scan, quantity=" + releaseQuantity
-            );
-        }
-
-        for (Map.Entry<Integer, Integer> entry : releaseCounter.entrySet()) {
-            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() <= 0) continue;
-            transactionOrderMapper.releaseProductStock(entry.getKey(), entry.getValue());
-        }
-
-        if (closedRows > 0) {
-            mqProducer.sendDashboardAggregate(null, "TIMEOUT_SCAN");
-        }
+                    operatorType,
+                    operatorId,
+                    detail + ", quantity=" + releaseQuantity
+            ));
+            transitions.add(new OrderTransitionEvent.Transition(
+                    orderMeta.orderNo(), orderMeta.userId(), productId, orderMeta.cityId(), 1, 3));
+        }
+
+        int closedRows = transactionOrderMapper.closeUnpaidByIds(ids);
+        if (closedRows != ids.size()) {
+            // 行锁保证不会发生；真发生了就整批回滚，交给下一轮重新认领
+            throw new RuntimeException("Close expired orders failed: claimed=" + ids.size() + ", closed=" + closedRows);
+        }
+        transactionOrderMapper.insertOrderOperateLogs(logRows);
+        stockReservationService.release(releaseCounter);
+        eventPublisher.publishEvent(new OrderTransitionEvent(reason, transitions));
         return closedRows;
     }
 
@@ -520,7 +678,7 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
         return value == null ? "" : value.trim();
     }
 
-    private int normalizeQuantity(Object raw) {
+    private int normalizeQuantity(Integer raw) {
         int quantity = asInt(raw);
         if (quantity <= 0) {
             return 1;
@@ -528,39 +686,7 @@ public class TransactionOrderServiceImpl implements TransactionOrderService {
         return Math.min(quantity, 10000);
     }
 
-    private int asInt(Object value) {
-        if (value == null) {
-            return 0;
-        }
-        if (value instanceof Number number) {
-            return number.intValue();
-        }
-        return Integer.parseInt(String.valueOf(value));
-    }
-
-    private BigDecimal asBigDecimal(Object value) {
-        if (value == null) {
-            return BigDecimal.ZERO;
-        }
-        if (value instanceof BigDecimal decimal) {
-            return decimal;
-        }
-        if (value instanceof Number number) {
-            return BigDecimal.valueOf(number.doubleValue());
-        }
-        return new BigDecimal(String.valueOf(value));
-    }
-
-    private LocalDateTime asLocalDateTime(Object value) {
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof LocalDateTime localDateTime) {
-            return localDateTime;
-        }
-        if (value instanceof java.sql.Timestamp timestamp) {
-            return timestamp.toLocalDateTime();
-        }
-        return LocalDateTime.parse(String.valueOf(value).replace(" ", "T"));
+    private int asInt(Integer value) {
+        return value == null ? 0 : value;
     }
 }
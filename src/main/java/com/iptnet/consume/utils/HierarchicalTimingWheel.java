@@ -0,0 +1,147 @@
+package com.iptnet.consume.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 分层时间轮（Kafka Purgatory 同款结构）。
+ *
+ * <p>第 0 层每格 tickMs，共 wheelSize 格；放不下的任务交给上一层（每格 = 下层一整圈），
+ * 上层的格子到期后再降级重新放入下层。只有非空格子进优先队列，
+ * 推进时钟的开销与到期格子数相关，而与任务总数无关。</p>
+ *
+ * <p>任务不支持取消：到期回调方需要自行保证幂等。</p>
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final PriorityQueue<Bucket<T>> queue = new PriorityQueue<>(Comparator.comparingLong(b -> b.expiration));
+    private final Level<T> root;
+    private int pending;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        this.root = new Level<>(tickMs, wheelSize, startMs, queue);
+    }
+
+    /**
+     * @return false 表示 deadline 已经落在当前格子之前，调用方应立即处理
+     */
+    public synchronized boolean schedule(T item, long deadlineMs) {
+        // 向上取整到格子边界：格子的到期时间是格子起点，不取整会提前最多一个 tick 触发
+        long alignedDeadline = deadlineMs + root.tickMs - 1;
+        if (!root.add(new Entry<>(item, alignedDeadline))) {
+            return false;
+        }
+        pending += 1;
+        return true;
+    }
+
+    /**
+     * 推进到 nowMs，返回所有已到期的任务
+     */
+    public synchronized List<T> advance(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        Bucket<T> bucket = queue.peek();
+        while (bucket != null && bucket.expiration <= nowMs) {
+            queue.poll();
+            root.advanceClock(bucket.expiration);
+            for (Entry<T> entry : bucket.flush()) {
+                // 上层格子里的任务在这里降级到下层；真正到期的返回给调用方
+                if (!root.add(entry)) {
+                    expired.add(entry.item);
+                    pending -= 1;
+                }
+            }
+            bucket = queue.peek();
+        }
+        root.advanceClock(nowMs);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return pending;
+    }
+
+    private record Entry<T>(T item, long deadlineMs) {}
+
+    private static final class Bucket<T> {
+        private long expiration = -1L;
+        private List<Entry<T>> entries = new ArrayList<>();
+
+        private void add(Entry<T> entry) {
+            entries.add(entry);
+        }
+
+        /** 返回 true 表示格子进入了新的一圈，需要重新放入优先队列 */
+        private boolean setExpiration(long expirationMs) {
+            if (expiration == expirationMs) {
+                return false;
+            }
+            expiration = expirationMs;
+            return true;
+        }
+
+        private List<Entry<T>> flush() {
+            List<Entry<T>> flushed = entries;
+            entries = new ArrayList<>();
+            expiration = -1L;
+            return flushed;
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket<T>[] buckets;
+        private final PriorityQueue<Bucket<T>> queue;
+        private long currentTime;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tickMs, int wheelSize, long startMs, PriorityQueue<Bucket<T>> queue) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.queue = queue;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        private boolean add(Entry<T> entry) {
+            long deadline = entry.deadlineMs();
+            if (deadline < currentTime + tickMs) {
+                return false;
+            }
+            if (deadline < currentTime + interval) {
+                long virtualId = deadline / tickMs;
+                Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(interval, wheelSize, currentTime, queue);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+}
@@ -19,4 +19,17 @@ public class ListUtils {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 按固定大小切分列表（返回子列表视图），用于多行 INSERT / IN 查询分批
+     */
+    public static <T> List<List<T>> partition(List<T> list, int size) {
+        if (list == null || list.isEmpty()) return Collections.emptyList();
+        int step = Math.max(1, size);
+        List<List<T>> parts = new ArrayList<>((list.size() + step - 1) / step);
+        for (int from = 0; from < list.size(); from += step) {
+            parts.add(list.subList(from, Math.min(list.size(), from + step)));
+        }
+        return parts;
+    }
+
 }
@@ -0,0 +1,90 @@
+package com.iptnet.consume.dto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单行映射成 HashMap 与映射成 {@link OrderView} 的对比，一次操作 = 映射 10k 行。
+ * 两边读同一批预先生成的列值，只比较结果对象本身的构造开销；
+ * 运行：mvn -Pbench test -Dbench.include=OrderViewMapping，分配量看 gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderViewMappingBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String[] COLUMNS = {
+            "co_id", "co_order_no", "user_id", "product_id", "city_id", "quantity", "city_name", "province_name",
+            "brand", "product_name", "category", "platform_name", "amount", "status", "co_remark", "co_created_at",
+            "co_updated_at", "version", "pay_deadline", "pay_time", "payment_method", "payment_no"
+    };
+
+    private Object[][] rows;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 0, 0);
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            LocalDateTime createdAt = base.plusSeconds(i);
+            boolean paid = i % 3 != 0;
+            rows[i] = new Object[]{
+                    (long) i + 1, "ORD" + (100000000L + i), i % 500 + 1, i % 200 + 1, i % 300 + 1, i % 5 + 1,
+                    "城市" + i % 300, "省份" + i % 34, "品牌" + i % 40, "商品" + i % 200, "品类" + i % 12,
+                    "平台" + i % 8, BigDecimal.valueOf(1999 + i % 1000, 2), paid ? 2 : 1, null, createdAt,
+                    createdAt.plusMinutes(1), paid ? 2 : 1, createdAt.plusMinutes(15),
+                    paid ? createdAt.plusMinutes(1) : null, paid ? "ALIPAY" : null, paid ? "PAY" + i : null
+            };
+        }
+    }
+
+    @Benchmark
+    public List<HashMap<String, Object>> hashMap() {
+        List<HashMap<String, Object>> result = new ArrayList<>();
+        for (Object[] row : rows) {
+            // 与 MyBatis 的 Map 结果一致：默认容量的 HashMap，非空列逐个 put
+            HashMap<String, Object> map = new HashMap<>();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (row[c] != null) {
+                    map.put(COLUMNS[c], row[c]);
+                }
+            }
+            result.add(map);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<OrderView> record() {
+        List<OrderView> result = new ArrayList<>();
+        for (Object[] row : rows) {
+            result.add(new OrderView(
+                    (Long) row[0], (String) row[1], (Integer) row[2], (Integer) row[3], (Integer) row[4],
+                    (Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
+                    (String) row[10], (String) row[11], (BigDecimal) row[12], (Integer) row[13], (String) row[14],
+                    (LocalDateTime) row[15], (LocalDateTime) row[16], (Integer) row[17], (LocalDateTime) row[18],
+                    (LocalDateTime) row[19], (String) row[20], (String) row[21]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,205 @@
+package com.iptnet.consume.service.analytics;
+
+import com.iptnet.consume.dto.OrderFact;
+import com.iptnet.consume.mapper.DashBoardMapper;
+import com.iptnet.consume.mapper.OrderFactMapper;
+import com.iptnet.consume.mapper.PlatformDataMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 列存聚合与 SQL 路径对拍：参照实现逐行套用 WHERE，再按 GROUP BY 做
+ * COUNT(*) / SUM(status = 2) / SUM(amount) / SUM(CASE WHEN status = 2 THEN amount END)
+ */
+class OrderFactStoreTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2026, 3, 1);
+    private static final String[] CATEGORIES = {"手机", "电脑", "食品", "服饰", ""};
+
+    private final OrderFactMapper orderFactMapper = mock(OrderFactMapper.class);
+    private final PlatformDataMapper platformDataMapper = mock(PlatformDataMapper.class);
+    private final DashBoardMapper dashBoardMapper = mock(DashBoardMapper.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private OrderFactStore store;
+    private List<OrderFact> facts;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        facts = randomFacts(new Random(7), 5000);
+
+        Cursor<OrderFact> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenAnswer(inv -> facts.iterator());
+        when(orderFactMapper.countFacts()).thenAnswer(inv -> (long) facts.size());
+        when(orderFactMapper.streamFacts()).thenReturn(cursor);
+        when(platformDataMapper.platformList()).thenReturn(names("平台", 4));
+        when(dashBoardMapper.selectProvinceNames()).thenReturn(names("省份", 6));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        store = new OrderFactStore(orderFactMapper, platformDataMapper, dashBoardMapper, transactionTemplate);
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "maxRows", 1_000_000L);
+        ReflectionTestUtils.setField(store, "lateMs", 300_000L);
+        store.sync();
+        assertThat(store.isReady()).isTrue();
+    }
+
+    @Test
+    void matchesSqlForEveryDimensionAndFilter() {
+        List<OrderFactStore.Filter> filters = List.of(
+                OrderFactStore.Filter.all(),
+                new OrderFactStore.Filter(2, null, null, null, null, null),
+                new OrderFactStore.Filter(null, 3, null, null, null, null),
+                new OrderFactStore.Filter(null, null, "电脑", null, FIRST_DAY.plusDays(3), FIRST_DAY.plusDays(12)),
+                new OrderFactStore.Filter(1, null, null, 2, null, null),
+                new OrderFactStore.Filter(null, 5, "手机", null, FIRST_DAY.plusDays(10), null),
+                new OrderFactStore.Filter(null, null, null, null, null, FIRST_DAY.plusDays(4)));
+
+        for (OrderFactStore.Filter filter : filters) {
+            for (OrderFactStore.Dimension dimension : OrderFactStore.Dimension.values()) {
+                assertMatchesSql(filter, dimension);
+            }
+        }
+    }
+
+    @Test
+    void rankDimensionsSortByPaidThenOrdersAndTimeDimensionsByKey() {
+        for (OrderFactStore.Dimension dimension : OrderFactStore.Dimension.values()) {
+            List<OrderFactStore.Group> groups = store.aggregate(OrderFactStore.Filter.all(), dimension);
+            if (dimension == OrderFactStore.Dimension.DAY || dimension == OrderFactStore.Dimension.STATUS) {
+                assertThat(groups).extracting(OrderFactStore.Group::key).isSorted();
+            } else {
+                assertThat(groups).isSortedAccordingTo((a, b) -> a.paidCents() != b.paidCents()
+                        ? Long.compare(b.paidCents(), a.paidCents())
+                        : Long.compare(b.orders(), a.orders()));
+            }
+        }
+    }
+
+    @Test
+    void incrementalSyncUpdatesExistingRowsAndAppendsNewOnes() {
+        LocalDateTime later = LocalDateTime.of(2026, 4, 1, 12, 0);
+        List<OrderFact> changes = new ArrayList<>();
+        // 未支付改成已支付、金额变化，再加两笔新单（一笔新品类）
+        for (int i = 0; i < facts.size(); i += 97) {
+            OrderFact old = facts.get(i);
+            changes.add(new OrderFact(old.id(), old.platformId(), old.category(), old.provinceId(), 2,
+                    old.amount().add(BigDecimal.ONE), old.createdAt(), later));
+        }
+        changes.add(fact(9_000_001L, 1, "图书", 2, 2, 1234, FIRST_DAY.plusDays(20), later));
+        changes.add(fact(9_000_002L, 4, "手机", 6, 1, 99, FIRST_DAY.plusDays(21), later));
+        when(orderFactMapper.selectFactsUpdatedAfter(any(), anyLong(), anyInt())).thenReturn(changes);
+
+        store.sync();
+
+        Map<Long, OrderFact> merged = new TreeMap<>();
+        facts.forEach(f -> merged.put(f.id(), f));
+        changes.forEach(f -> merged.put(f.id(), f));
+        facts = new ArrayList<>(merged.values());
+
+        assertThat(store.stats().get("rows")).isEqualTo(facts.size());
+        for (OrderFactStore.Dimension dimension : OrderFactStore.Dimension.values()) {
+            assertMatchesSql(OrderFactStore.Filter.all(), dimension);
+            assertMatchesSql(new OrderFactStore.Filter(null, null, "图书", null, null, null), dimension);
+        }
+    }
+
+    @Test
+    void unknownCategoryMatchesNothing() {
+        assertThat(store.aggregate(new OrderFactStore.Filter(null, null, "不存在", null, null, null),
+                OrderFactStore.Dimension.PLATFORM)).isEmpty();
+    }
+
+    private void assertMatchesSql(OrderFactStore.Filter filter, OrderFactStore.Dimension dimension) {
+        Map<String, List<Long>> actual = new TreeMap<>();
+        for (OrderFactStore.Group group : store.aggregate(filter, dimension)) {
+            actual.put(group.label(), List.of(group.orders(), group.paidOrders(), group.grossCents(),
+                    group.paidCents()));
+        }
+        assertThat(actual).as("%s by %s", filter, dimension).isEqualTo(sql(filter, dimension));
+    }
+
+    private Map<String, List<Long>> sql(OrderFactStore.Filter filter, OrderFactStore.Dimension dimension) {
+        Map<String, long[]> sums = new TreeMap<>();
+        for (OrderFact fact : facts) {
+            LocalDate day = fact.createdAt().toLocalDate();
+            if ((filter.platformId() != null && !filter.platformId().equals(fact.platformId()))
+                    || (filter.provinceId() != null && !filter.provinceId().equals(fact.provinceId()))
+                    || (filter.category() != null && !filter.category().equals(fact.category()))
+                    || (filter.status() != null && !filter.status().equals(fact.status()))
+                    || (filter.from() != null && day.isBefore(filter.from()))
+                    || (filter.to() != null && day.isAfter(filter.to()))) {
+                continue;
+            }
+            String label = switch (dimension) {
+                case PLATFORM -> "平台" + fact.platformId();
+                case PROVINCE -> "省份" + fact.provinceId();
+                case CATEGORY -> fact.category();
+                case DAY -> day.toString();
+                case STATUS -> String.valueOf(fact.status());
+            };
+            long cents = fact.amount().movePointRight(2).longValueExact();
+            long paid = fact.status() == 2 ? 1 : 0;
+            long[] sum = sums.computeIfAbsent(label, k -> new long[4]);
+            sum[0] += 1;
+            sum[1] += paid;
+            sum[2] += cents;
+            sum[3] += cents * paid;
+        }
+        Map<String, List<Long>> res = new TreeMap<>();
+        sums.forEach((label, sum) -> res.put(label, List.of(sum[0], sum[1], sum[2], sum[3])));
+        return res;
+    }
+
+    private static List<OrderFact> randomFacts(Random random, int count) {
+        List<OrderFact> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate day = FIRST_DAY.plusDays(random.nextInt(20));
+            LocalDateTime createdAt = day.atTime(random.nextInt(24), random.nextInt(60));
+            res.add(fact(i + 1L, 1 + random.nextInt(4), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    1 + random.nextInt(6), 1 + random.nextInt(4), 100 + random.nextInt(500_000), day, createdAt));
+        }
+        return res;
+    }
+
+    private static OrderFact fact(long id, int platformId, String category, int provinceId, int status, long cents,
+                                  LocalDate day, LocalDateTime updatedAt) {
+        LocalDateTime createdAt = updatedAt.toLocalDate().equals(day) ? updatedAt : day.atStartOfDay();
+        return new OrderFact(id, platformId, category, provinceId, status, BigDecimal.valueOf(cents, 2), createdAt,
+                updatedAt);
+    }
+
+    private static List<HashMap<String, Object>> names(String prefix, int count) {
+        List<HashMap<String, Object>> rows = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            HashMap<String, Object> row = new HashMap<>();
+            row.put("id", id);
+            row.put("name", prefix + id);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,199 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dao.DashboardEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DashboardEventLogTest {
+
+    private static final int SEGMENT_BYTES = 1 << 20;
+    // 每条记录 20 字节头 + 40000 字节，一个 1MB 段放 26 条
+    private static final int RECORD_BYTES = 40_000;
+    private static final int PER_SEGMENT = SEGMENT_BYTES / (RECORD_BYTES + 20);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rollsSegmentsAndRecoversAfterReopen() {
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long cursor = 1; cursor <= 60; cursor++) {
+                eventLog.append(cursor, record(cursor));
+            }
+            assertThat(eventLog.stats().get("segments")).isEqualTo(3);
+        }
+        assertThat(segmentFiles()).containsExactly(segmentName(1), segmentName(PER_SEGMENT + 1),
+                segmentName(2L * PER_SEGMENT + 1));
+
+        try (DashboardEventLog eventLog = open(0L)) {
+            assertThat(eventLog.lastCursor()).isEqualTo(60);
+            assertThat(eventLog.oldestCursor()).isEqualTo(1);
+            assertThat(eventLog.gapFloor()).isZero();
+            assertThat(cursors(eventLog.readAfter(0, 100))).containsExactlyElementsOf(range(1, 60));
+            // 跨段边界读
+            assertThat(cursors(eventLog.readAfter(PER_SEGMENT - 2, 5)))
+                    .containsExactlyElementsOf(range(PER_SEGMENT - 1, PER_SEGMENT + 3));
+
+            List<Long> tail = new ArrayList<>();
+            eventLog.replayTail(30, (cursor, json) -> tail.add(cursor));
+            assertThat(tail).containsExactlyElementsOf(range(PER_SEGMENT + 1, 60));
+
+            // 写入位置从扫描结果接着往后，旧 cursor 被拒绝
+            eventLog.append(61, record(61));
+            eventLog.append(50, record(50));
+            assertThat(eventLog.lastCursor()).isEqualTo(61);
+        }
+
+        try (DashboardEventLog eventLog = open(0L)) {
+            assertThat(cursors(eventLog.readAfter(58, 10))).containsExactly(59L, 60L, 61L);
+        }
+    }
+
+    @Test
+    void retentionDropsWholeOldSegmentsButKeepsActive() {
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long cursor = 1; cursor <= 4L * PER_SEGMENT; cursor++) {
+                eventLog.append(cursor, record(cursor));
+            }
+        }
+        assertThat(segmentFiles()).hasSize(4);
+
+        try (DashboardEventLog eventLog = open(2L * SEGMENT_BYTES)) {
+            assertThat(segmentFiles()).containsExactly(segmentName(2L * PER_SEGMENT + 1),
+                    segmentName(3L * PER_SEGMENT + 1));
+            assertThat(eventLog.oldestCursor()).isEqualTo(2L * PER_SEGMENT + 1);
+            assertThat(eventLog.lastCursor()).isEqualTo(4L * PER_SEGMENT);
+        }
+
+        try (DashboardEventLog eventLog = open(1L)) {
+            assertThat(segmentFiles()).containsExactly(segmentName(3L * PER_SEGMENT + 1));
+            assertThat(eventLog.lastCursor()).isEqualTo(4L * PER_SEGMENT);
+        }
+    }
+
+    @Test
+    void storeRestoresCursorAndTailFromLog() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        long base = 1_800_000_000_000L;
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long i = 1; i <= 30; i++) {
+                eventLog.append(base + i, objectMapper.writeValueAsBytes(DashboardEvent.heartbeat(base + i)));
+            }
+        }
+
+        try (DashboardEventStore store = new DashboardEventStore(1000, 1 << 20, false, objectMapper, open(0L))) {
+            assertThat(store.currentCursor()).isEqualTo(base + 30);
+            assertThat(store.size()).isEqualTo(30);
+            assertThat(store.oldestCursor()).isEqualTo(base + 1);
+            assertThat(store.canReplayAfter(base)).isTrue();
+            assertThat(store.readAfter(base + 27, 10)).extracting(DashboardEvent::cursor)
+                    .containsExactly(base + 28, base + 29, base + 30);
+            assertThat(store.nextCursor()).isEqualTo(base + 31);
+        }
+    }
+
+    @Test
+    void recoversGapInsideSegment() {
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long cursor = 1; cursor <= 10; cursor++) {
+                eventLog.append(cursor, record(cursor));
+            }
+            for (long cursor = 20; cursor <= 25; cursor++) {
+                eventLog.append(cursor, record(cursor));
+            }
+        }
+
+        try (DashboardEventLog eventLog = open(0L)) {
+            assertThat(eventLog.gapFloor()).isEqualTo(19);
+            assertThat(eventLog.lastCursor()).isEqualTo(25);
+        }
+    }
+
+    @Test
+    void recoversGapAtSegmentBoundary() {
+        long next = PER_SEGMENT + 100;
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long cursor = 1; cursor <= PER_SEGMENT; cursor++) {
+                eventLog.append(cursor, record(cursor));
+            }
+            // 上一段正好写满，断档落在新段的第一条
+            eventLog.append(next, record(next));
+        }
+        assertThat(segmentFiles()).containsExactly(segmentName(1), segmentName(next));
+
+        try (DashboardEventLog eventLog = open(0L)) {
+            assertThat(eventLog.gapFloor()).isEqualTo(next - 1);
+            assertThat(cursors(eventLog.readAfter(PER_SEGMENT - 1, 10))).containsExactly((long) PER_SEGMENT, next);
+        }
+    }
+
+    @Test
+    void storeRestoresCursorTailAndGapFromLog() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        long base = 1_800_000_000_000L;
+        try (DashboardEventLog eventLog = open(0L)) {
+            for (long i = 1; i <= 10; i++) {
+                eventLog.append(base + i, objectMapper.writeValueAsBytes(DashboardEvent.heartbeat(base + i)));
+            }
+            for (long i = 20; i <= 30; i++) {
+                eventLog.append(base + i, objectMapper.writeValueAsBytes(DashboardEvent.heartbeat(base + i)));
+            }
+        }
+
+        try (DashboardEventStore store = new DashboardEventStore(1000, 1 << 20, false, objectMapper, open(0L))) {
+            assertThat(store.currentCursor()).isEqualTo(base + 30);
+            assertThat(store.size()).isEqualTo(21);
+            assertThat(store.stats().get("gapFloor")).isEqualTo(base + 19);
+            assertThat(store.oldestCursor()).isEqualTo(base + 20);
+            assertThat(store.canReplayAfter(base + 5)).isFalse();
+            assertThat(store.canReplayAfter(base + 19)).isTrue();
+            assertThat(store.readAfter(base + 27, 10)).extracting(DashboardEvent::cursor)
+                    .containsExactly(base + 28, base + 29, base + 30);
+            assertThat(store.nextCursor()).isEqualTo(base + 31);
+        }
+    }
+
+    private DashboardEventLog open(long maxTotalBytes) {
+        return new DashboardEventLog(dir, SEGMENT_BYTES, 0L, maxTotalBytes);
+    }
+
+    private List<String> segmentFiles() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String segmentName(long baseCursor) {
+        return String.format("%020d.seg", baseCursor);
+    }
+
+    /** 记录开头 20 位是 cursor，后面补齐到固定长度 */
+    private static byte[] record(long cursor) {
+        String head = String.format("%020d", cursor);
+        return (head + "x".repeat(RECORD_BYTES - head.length())).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static List<Long> cursors(List<byte[]> records) {
+        return records.stream().map(r -> Long.parseLong(new String(r, 0, 20, StandardCharsets.US_ASCII))).toList();
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> res = new ArrayList<>();
+        for (long i = from; i <= to; i++) {
+            res.add(i);
+        }
+        return res;
+    }
+}
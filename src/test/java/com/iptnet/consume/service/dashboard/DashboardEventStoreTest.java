@@ -0,0 +1,170 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dao.DashboardEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DashboardEventStoreTest {
+
+    private static final int MAX_KEEP = 1000;
+    private static final int MAX_BYTES = 1 << 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void wrapAroundKeepsNewestMaxKeepEvents() throws Exception {
+        DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, false, objectMapper);
+        long base = store.currentCursor();
+        for (int i = 0; i < 2500; i++) {
+            long cursor = store.nextCursor();
+            store.append(cursor, event(cursor, ""));
+        }
+
+        assertThat(store.size()).isEqualTo(MAX_KEEP);
+        assertThat(store.currentCursor()).isEqualTo(base + 2500);
+        assertThat(store.oldestCursor()).isEqualTo(base + 1501);
+
+        List<DashboardEvent> all = store.readAfter(base, 2000);
+        assertThat(all).hasSize(MAX_KEEP);
+        assertThat(all.getFirst().cursor()).isEqualTo(base + 1501);
+        assertThat(all.getLast().cursor()).isEqualTo(base + 2500);
+        assertThat(all).extracting(DashboardEvent::cursor).isSorted();
+
+        // 槽位已经绕回数组开头，二分仍要按逻辑顺序找
+        assertThat(store.readAfter(base + 2490, 100)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 2491, base + 2492, base + 2493, base + 2494, base + 2495,
+                        base + 2496, base + 2497, base + 2498, base + 2499, base + 2500);
+        assertThat(store.readAfter(base + 1800, 3)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 1801, base + 1802, base + 1803);
+        assertThat(store.readAfter(base + 2500, 10)).isEmpty();
+
+        assertThat(store.canReplayAfter(base + 1499)).isFalse();
+        assertThat(store.canReplayAfter(base + 1500)).isTrue();
+        assertThat(store.canReplayAfter(base + 2500)).isTrue();
+    }
+
+    @Test
+    void byteLimitEvictsOldestWithoutCorruptingKeptEvents() throws Exception {
+        DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, false, objectMapper);
+        long base = store.currentCursor();
+        int eventBytes = 0;
+        for (int i = 0; i < 100; i++) {
+            long cursor = store.nextCursor();
+            byte[] json = event(cursor, fill(cursor, 50_000));
+            eventBytes = json.length;
+            store.append(cursor, json);
+        }
+
+        int size = store.size();
+        assertThat(size).isLessThanOrEqualTo(MAX_BYTES / eventBytes).isGreaterThan(MAX_BYTES / eventBytes / 2);
+        assertThat(store.oldestCursor()).isEqualTo(base + 100 - size + 1);
+
+        List<DashboardEvent> kept = store.readAfter(base, 2000);
+        assertThat(kept).hasSize(size);
+        for (int i = 0; i < kept.size(); i++) {
+            DashboardEvent event = kept.get(i);
+            assertThat(event.cursor()).isEqualTo(base + 100 - size + 1 + i);
+            assertThat(((Map<?, ?>) event.payload()).get("fill")).isEqualTo(fill(event.cursor(), 50_000));
+        }
+    }
+
+    @Test
+    void dropsOversizedAndOutOfOrderEvents() throws Exception {
+        DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, true, objectMapper);
+        long first = store.nextCursor();
+        store.append(first, event(first, "a"));
+        long second = store.nextCursor();
+        store.append(second, event(second, "b"));
+
+        long oversized = store.nextCursor();
+        store.append(oversized, event(oversized, fill(oversized, MAX_BYTES + 1)));
+        store.append(first, event(first, "again"));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.readAfter(first - 1, 10)).extracting(DashboardEvent::cursor).containsExactly(first, second);
+    }
+
+    @Test
+    void mixedSizesNeverReadBackOverwrittenEvents() throws Exception {
+        DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, false, objectMapper);
+        Random random = new Random(11);
+        long base = store.currentCursor();
+        for (int i = 1; i <= 3000; i++) {
+            long cursor = store.nextCursor();
+            // 大小差很多的事件混在一起，绕回开头时最旧事件在尾部、开头还是这一圈的活事件
+            int length = random.nextInt(10) == 0 ? 20_000 + random.nextInt(100_000) : 1 + random.nextInt(4000);
+            store.append(cursor, event(cursor, fill(cursor, length)));
+            if (i % 7 != 0) {
+                continue;
+            }
+            List<DashboardEvent> kept = store.readAfter(base, 2000);
+            assertThat(kept).hasSize(store.size());
+            assertThat(kept.getLast().cursor()).isEqualTo(cursor);
+            for (int k = 0; k < kept.size(); k++) {
+                DashboardEvent event = kept.get(k);
+                assertThat(event.cursor()).isEqualTo(cursor - kept.size() + 1 + k);
+                String payload = (String) ((Map<?, ?>) event.payload()).get("fill");
+                assertThat(payload).isEqualTo(fill(event.cursor(), payload.length()));
+            }
+        }
+    }
+
+    @Test
+    void restoreFromLogTailUsesSameEviction(@TempDir Path dir) throws Exception {
+        Random random = new Random(5);
+        long last = 1_800_000_000_000L;
+        try (DashboardEventLog eventLog = new DashboardEventLog(dir, 1 << 20, 0L, 0L)) {
+            for (int i = 0; i < 600; i++) {
+                last += 1;
+                int length = random.nextInt(10) == 0 ? 20_000 + random.nextInt(100_000) : 1 + random.nextInt(4000);
+                eventLog.append(last, event(last, fill(last, length)));
+            }
+        }
+
+        // 启动时尾部经 replayTail -> appendToRing 装回，同样要经过绕回淘汰
+        try (DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, false, objectMapper,
+                new DashboardEventLog(dir, 1 << 20, 0L, 0L))) {
+            List<DashboardEvent> kept = store.readAfter(last - store.size(), 2000);
+            assertThat(kept).hasSize(store.size());
+            assertThat(kept.getLast().cursor()).isEqualTo(last);
+            for (DashboardEvent event : kept) {
+                String payload = (String) ((Map<?, ?>) event.payload()).get("fill");
+                assertThat(payload).isEqualTo(fill(event.cursor(), payload.length()));
+            }
+        }
+    }
+
+    @Test
+    void gapHidesEarlierCursorsFromReplay() throws Exception {
+        DashboardEventStore store = new DashboardEventStore(MAX_KEEP, MAX_BYTES, false, objectMapper);
+        long base = store.currentCursor();
+        for (int i = 1; i <= 10; i++) {
+            store.append(base + i, event(base + i, ""));
+        }
+        store.markGap(base + 15);
+        store.append(base + 16, event(base + 16, ""));
+
+        assertThat(store.oldestCursor()).isEqualTo(base + 16);
+        assertThat(store.canReplayAfter(base + 5)).isFalse();
+        assertThat(store.canReplayAfter(base + 15)).isTrue();
+        // 更早的缺口不会把 gapFloor 往回拉
+        store.markGap(base + 3);
+        assertThat(store.stats().get("gapFloor")).isEqualTo(base + 15);
+    }
+
+    private byte[] event(long cursor, String fill) throws Exception {
+        return objectMapper.writeValueAsBytes(DashboardEvent.patch(cursor, "home", "merge", Map.of("fill", fill)));
+    }
+
+    private static String fill(long cursor, int length) {
+        return String.valueOf((char) ('a' + cursor % 26)).repeat(length);
+    }
+}
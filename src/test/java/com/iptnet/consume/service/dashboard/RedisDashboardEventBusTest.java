@@ -0,0 +1,128 @@
+package com.iptnet.consume.service.dashboard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iptnet.consume.dao.DashboardEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class RedisDashboardEventBusTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DashboardEventStore store;
+    private DashboardStreamService streamService;
+    private RedisDashboardEventBus bus;
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        store = new DashboardEventStore(1000, 1 << 20, false, objectMapper);
+        streamService = mock(DashboardStreamService.class);
+        bus = new RedisDashboardEventBus(store, streamService, objectMapper, mock(StringRedisTemplate.class),
+                "dash:test", "dash:test:seq", 500L);
+        base = store.currentCursor();
+    }
+
+    @Test
+    void contiguousEventsAreReplayable() throws Exception {
+        deliver(base + 1);
+        deliver(base + 2);
+
+        assertThat(store.canReplayAfter(base)).isTrue();
+        assertThat(store.readAfter(base, 10)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 1, base + 2);
+        verify(streamService, never()).invalidateAll(any(Long.class), anyString());
+    }
+
+    @Test
+    void outOfOrderDeliveryIsReorderedWithoutGap() throws Exception {
+        deliver(base + 2);
+        deliver(base + 3);
+        deliver(base + 1);
+
+        verify(streamService, never()).invalidateAll(any(Long.class), anyString());
+        assertThat(store.canReplayAfter(base)).isTrue();
+        assertThat(store.readAfter(base, 10)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 1, base + 2, base + 3);
+        // 窗口到期时暂存已经清空，不会再补报缺口
+        bus.flushHeld(System.currentTimeMillis() + 1000);
+        verify(streamService, never()).invalidateAll(any(Long.class), anyString());
+    }
+
+    @Test
+    void heldEventsWaitForReorderWindowBeforeGap() throws Exception {
+        deliver(base + 1);
+        deliver(base + 5);
+
+        bus.flushHeld(System.currentTimeMillis());
+        verify(streamService, never()).invalidateAll(any(Long.class), anyString());
+        assertThat(store.readAfter(base, 10)).extracting(DashboardEvent::cursor).containsExactly(base + 1);
+    }
+
+    @Test
+    void cursorGapForcesResyncForEarlierSince() throws Exception {
+        deliver(base + 1);
+        deliver(base + 5);
+        bus.flushHeld(System.currentTimeMillis() + 1000);
+
+        verify(streamService).invalidateAll(eq(base + 4), eq("cluster-gap"));
+        assertThat(store.oldestCursor()).isEqualTo(base + 5);
+        // 缺口之前的 since 回放不完整，必须重新拉快照
+        assertThat(store.canReplayAfter(base)).isFalse();
+        assertThat(store.canReplayAfter(base + 1)).isFalse();
+        assertThat(store.canReplayAfter(base + 3)).isFalse();
+        // 从缺口最后一个 cursor 往后是连续的
+        assertThat(store.canReplayAfter(base + 4)).isTrue();
+        assertThat(store.readAfter(base + 4, 10)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 5);
+    }
+
+    @Test
+    void gapReleasesHeldEventsUpToNextGap() throws Exception {
+        deliver(base + 1);
+        deliver(base + 4);
+        deliver(base + 3);
+        deliver(base + 8);
+        bus.flushHeld(System.currentTimeMillis() + 1000);
+
+        // 只越过第一个缺口，3、4 按序放出；8 前面的缺口重新计时
+        verify(streamService).invalidateAll(eq(base + 2), eq("cluster-gap"));
+        verify(streamService, never()).invalidateAll(eq(base + 7), anyString());
+        assertThat(store.readAfter(base + 2, 10)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 3, base + 4);
+
+        deliver(base + 5);
+        deliver(base + 7);
+        deliver(base + 6);
+        assertThat(store.readAfter(base + 4, 10)).extracting(DashboardEvent::cursor)
+                .containsExactly(base + 5, base + 6, base + 7, base + 8);
+    }
+
+    @Test
+    void duplicateAndStaleMessagesAreIgnored() throws Exception {
+        deliver(base + 1);
+        deliver(base + 1);
+        deliver(base);
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.canReplayAfter(base)).isTrue();
+    }
+
+    private void deliver(long cursor) throws Exception {
+        String json = objectMapper.writeValueAsString(DashboardEvent.patch(0L, "home", "merge", Map.of("n", cursor)));
+        byte[] body = (cursor + "|" + json).getBytes(StandardCharsets.UTF_8);
+        bus.onMessage(new DefaultMessage("dash:test".getBytes(StandardCharsets.UTF_8), body), null);
+    }
+}
@@ -0,0 +1,109 @@
+package com.iptnet.consume.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 10L;
+    private static final int WHEEL_SIZE = 8;
+    private static final long START = 1_000_005L;
+
+    @Test
+    void firesAtFirstTickBoundaryNotBeforeDeadline() {
+        // 8 格 * 10ms：80ms 以内在第 0 层，更远的要经过两到三层逐级降级
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, START);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long deadline = START + 1 + random.nextInt(20_000);
+            deadlines.add(deadline);
+            assertThat(wheel.schedule(deadline, deadline)).isTrue();
+        }
+        assertThat(wheel.size()).isEqualTo(deadlines.size());
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long now = START; now <= START + 20_020; now++) {
+            for (Long deadline : wheel.advance(now)) {
+                firedAt.putIfAbsent(deadline, now);
+            }
+        }
+
+        assertThat(wheel.size()).isZero();
+        for (Long deadline : deadlines) {
+            assertThat(firedAt.get(deadline)).as("deadline %d", deadline).isEqualTo(ceilToTick(deadline));
+        }
+    }
+
+    @Test
+    void cascadedEntryStaysPendingUntilDeadline() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0L);
+        // 500 落在第 1 层（每格 80ms）的 [480, 560) 格子里，480 时降级回第 0 层
+        assertThat(wheel.schedule("far", 500)).isTrue();
+
+        assertThat(wheel.advance(480)).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(499)).isEmpty();
+        assertThat(wheel.advance(500)).containsExactly("far");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void singleLargeAdvanceReturnsExpiredInDeadlineOrder() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0L);
+        long[] deadlines = {5000, 30, 4999, 500, 81, 79, 640, 12_345, 1};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expired = wheel.advance(20_000);
+
+        assertThat(expired).containsExactlyInAnyOrder(5000L, 30L, 4999L, 500L, 81L, 79L, 640L, 12_345L, 1L);
+        assertThat(expired).isSortedAccordingTo((a, b) -> Long.compare(ceilToTick(a), ceilToTick(b)));
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void partialAdvanceOnlyReturnsDueEntries() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0L);
+        for (long deadline : new long[]{15, 95, 700, 9000}) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        assertThat(wheel.advance(100)).containsExactly(15L, 95L);
+        assertThat(wheel.advance(8999)).containsExactly(700L);
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(9000)).containsExactly(9000L);
+    }
+
+    @Test
+    void rejectsDeadlineInCurrentTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, WHEEL_SIZE, 0L);
+        wheel.advance(1000);
+
+        assertThat(wheel.schedule("past", 995)).isFalse();
+        assertThat(wheel.schedule("now", 1000)).isFalse();
+        assertThat(wheel.schedule("next", 1001)).isTrue();
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsNonPositiveConfig() {
+        assertThatThrownBy(() -> new HierarchicalTimingWheel<>(0, WHEEL_SIZE, 0L))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HierarchicalTimingWheel<>(TICK, 0, 0L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long ceilToTick(long deadline) {
+        return Math.ceilDiv(deadline, TICK) * TICK;
+    }
+}
@@ -17,9 +17,16 @@ export interface DashboardEventPayload {
   linePlatformId?: number;
   line?: CategoryPieItem[];
   lineByPlatform?: Record<string, CategoryPieItem[]>;
+  // 触发这次推送的用户：一个时带 userId / recentOrders，多个时带 recentOrdersByUser
+  userId?: number;
+  userIds?: number[];
   recentOrders?: MqOrderRecord[];
+  recentOrdersByUser?: Record<string, MqOrderRecord[]>;
   reason?: string;
   ts?: string;
+  // op=diff：只带变化的路径，bar[i] / smooth:{provinceId} / line:{platformId}:{category}
+  set?: Record<string, unknown>;
+  remove?: string[];
 }
 
 export interface HomeSnapshotPayload extends DashboardEventPayload {
@@ -41,6 +48,14 @@ export interface DashboardEvent {
   payload: DashboardEventPayload;
 }
 
+export interface DashboardDeltaData {
+  events: DashboardEvent[];
+  nextCursor: string;
+  hasMore: boolean;
+  // since 已超出服务端保留范围，只能重新拉快照
+  resync: boolean;
+}
+
 export interface DashboardStreamOptions {
   topics?: string;
   token?: string;
@@ -96,6 +111,21 @@ export async function getDashboardSnapshot(params?: {
   return res.data;
 }
 
+export async function getDashboardDelta(params: {
+  since: number;
+  topics?: string;
+  limit?: number;
+}): Promise<DashboardApiResponse<DashboardDeltaData>> {
+  const res = await request.get<DashboardApiResponse<DashboardDeltaData>>('/api/v1/dashboard/delta', {
+    params: {
+      since: params.since,
+      topics: params.topics || 'home',
+      limit: params.limit || 500,
+    },
+  });
+  return res.data;
+}
+
 export function createDashboardStream(options: DashboardStreamOptions): EventSource {
   const source = new EventSource(buildStreamUrl(options.topics || 'home', options.token));
   const handle = (evt: MessageEvent<string>) => {
@@ -107,6 +137,7 @@ export function createDashboardStream(options: DashboardStreamOptions): EventSou
   source.addEventListener('patch', handle as EventListener);
   source.addEventListener('hello', handle as EventListener);
   source.addEventListener('heartbeat', handle as EventListener);
+  source.addEventListener('invalidate', handle as EventListener);
   source.onopen = () => options.onOpen?.();
   source.onerror = (err) => options.onError?.(err);
 
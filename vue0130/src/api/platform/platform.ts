@@ -38,9 +38,16 @@ export interface PlatformApiResult<T = unknown> {
   data: T;
 }
 
+export interface PlatformFeedPage {
+  rows: PlatformRecord[];
+  nextToken: string | null;
+  hasMore: boolean;
+}
+
 interface GetPlatformDataOptions {
   forceRefresh?: boolean;
   cacheTtlMs?: number;
+  maxRows?: number;
 }
 
 interface PlatformDataCacheEntry {
@@ -49,6 +56,9 @@ interface PlatformDataCacheEntry {
 }
 
 const DEFAULT_PLATFORM_DATA_CACHE_TTL_MS = 2 * 60 * 1000;
+// 图表只需要最近一段订单，按页拉到这个行数就停
+const DEFAULT_PLATFORM_DATA_MAX_ROWS = 2000;
+const PLATFORM_DATA_PAGE_SIZE = 500;
 const platformDataCache = new Map<number, PlatformDataCacheEntry>();
 const platformDataInFlight = new Map<number, Promise<PlatformApiResult<PlatformRecord[]>>>();
 
@@ -94,10 +104,9 @@ export async function getPlatformData(
     if (pending) return pending;
   }
 
-  const req = request
-    .get<PlatformApiResult<PlatformRecord[]>>(`/platform/${id}`)
-    .then((res) => {
-      const payload = res.data;
+  const maxRows = Math.max(1, Number(options.maxRows ?? DEFAULT_PLATFORM_DATA_MAX_ROWS));
+  const req = loadPlatformRows(id, maxRows)
+    .then((payload) => {
       if (ttlMs > 0 && payload?.code === 200) {
         platformDataCache.set(id, {
           expiresAt: Date.now() + ttlMs,
@@ -114,6 +123,32 @@ export async function getPlatformData(
   return req;
 }
 
+export async function getPlatformDataPage(
+  platformId: number,
+  cursor?: string | null,
+  limit = PLATFORM_DATA_PAGE_SIZE
+): Promise<PlatformApiResult<PlatformFeedPage>> {
+  const res = await request.get<PlatformApiResult<PlatformFeedPage>>(`/platform/${platformId}`, {
+    params: { cursor: cursor || undefined, limit },
+  });
+  return res.data;
+}
+
+async function loadPlatformRows(platformId: number, maxRows: number): Promise<PlatformApiResult<PlatformRecord[]>> {
+  const rows: PlatformRecord[] = [];
+  let cursor: string | null = null;
+  while (rows.length < maxRows) {
+    const page = await getPlatformDataPage(platformId, cursor, Math.min(PLATFORM_DATA_PAGE_SIZE, maxRows - rows.length));
+    if (page.code !== 200) {
+      return { code: page.code, msg: page.msg, data: rows };
+    }
+    rows.push(...(page.data?.rows ?? []));
+    if (!page.data?.hasMore || !page.data.nextToken) break;
+    cursor = page.data.nextToken;
+  }
+  return { code: 200, msg: 'success', data: rows };
+}
+
 export async function getPlatformList(): Promise<PlatformApiResult<PlatformListItem[]>> {
   const res = await request.get<PlatformApiResult<PlatformListItem[]>>('/platform/list');
   return res.data;